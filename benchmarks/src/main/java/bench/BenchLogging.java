@@ -0,0 +1,18 @@
+package bench;
+
+import utils.LoggerUtil;
+import utils.RotatingLogHandler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// The code under test logs as it goes; keep that off the console and out of the working directory.
+final class BenchLogging {
+    private BenchLogging() {
+    }
+
+    static void toFile() throws IOException {
+        LoggerUtil.configure(new LoggerUtil.Settings(Path.of("target", "benchmark.log"), 10L << 20, 1, false,
+                8192, RotatingLogHandler.OverflowPolicy.DROP));
+    }
+}
@@ -0,0 +1,125 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import utils.CollectionJournal;
+import utils.CollectionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Lookups and appends against a collection already holding `entries` items, in memory and
+// with the on-disk journal (each journaled add waits for its fsync). Journaled collections are
+// preloaded from a snapshot written once per trial, not by `entries` fsynced adds per iteration.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class CollectionManagerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"memory", "journal"})
+    public String storage;
+
+    private List<String> content;
+    private List<String> additions;
+    private CollectionManager manager;
+    // snapshot of the preloaded entries that each journaled iteration starts from
+    private Path seed;
+    private Path directory;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        BenchLogging.toFile();
+        List<String> all = Corpus.sentences(entries * 2);
+        content = all.subList(0, entries);
+        additions = all.subList(entries, entries * 2);
+        if (storage.equals("journal")) seed = writeSeed();
+    }
+
+    // The journal is written without waiting for each record, synced once, then compacted away.
+    private Path writeSeed() throws IOException {
+        Path dir = Files.createTempDirectory("collection-seed");
+        // addEntry skips duplicates; the snapshot must hold what the in-memory fill would
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(content));
+        try (CollectionJournal journal = CollectionJournal.open(dir)) {
+            long seq = 0;
+            for (String entry : distinct) seq = journal.append(CollectionJournal.Op.ADD, 0, entry);
+            journal.awaitDurable(seq);
+            journal.writeSnapshot(distinct, journal.rotate());
+        }
+        return dir;
+    }
+
+    // a fresh collection per iteration so appends do not pile up across the run
+    @Setup(Level.Iteration)
+    public void fill() throws IOException {
+        if (storage.equals("journal")) {
+            directory = Files.createTempDirectory("collection-bench");
+            try (Stream<Path> files = Files.list(seed)) {
+                for (Path file : files.toList()) {
+                    Files.copy(file, directory.resolve(file.getFileName()), StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+            manager = new CollectionManager(directory);
+        } else {
+            manager = new CollectionManager();
+            for (String entry : content) manager.addEntry(entry);
+        }
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        manager.close();
+        delete(directory);
+        directory = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSeed() throws IOException {
+        delete(seed);
+        seed = null;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(file);
+        }
+    }
+
+    // duplicates are ignored by addEntry, so each call appends a counter to stay a real insert
+    @Benchmark
+    public void addEntry() {
+        int n = next++;
+        manager.addEntry(additions.get(n % additions.size()) + n);
+    }
+
+    @Benchmark
+    public boolean containsPresent() {
+        return manager.contains(content.get(next++ % content.size()));
+    }
+
+    @Benchmark
+    public boolean containsAbsent() {
+        return manager.contains(additions.get(next++ % additions.size()));
+    }
+
+    @Benchmark
+    public String getEntry() {
+        return manager.getEntry(next++ % entries);
+    }
+}
@@ -0,0 +1,164 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Deterministic English-like text: Zipf-distributed words from a synthetic vocabulary, sentences
+// of 6-24 words, a few sentences per line, and the occasional email, URL and date so every
+// built-in pattern has something to find. The same seed and size always give the same bytes.
+public final class Corpus {
+    public static final long DEFAULT_SEED = 42;
+
+    private static final int VOCABULARY = 20_000;
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ne", "ta", "ri", "so", "vu", "pe", "da", "in", "or", "an", "el", "st", "th",
+            "er", "on", "re", "at", "en", "ed", "nd", "ha", "es", "ou", "ing", "ion", "ver", "com"
+    };
+    private static final String[] DOMAINS = {"example.com", "mail.org", "dataflow.io", "corp.net"};
+
+    private final SplittableRandom random;
+    private final String[] words;
+    private final double[] cumulative;
+
+    public Corpus(long seed) {
+        this.random = new SplittableRandom(seed);
+        this.words = new String[VOCABULARY];
+        this.cumulative = new double[VOCABULARY];
+        double total = 0;
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = word(i);
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < VOCABULARY; i++) cumulative[i] /= total;
+    }
+
+    // "16KB", "1MB", "256MB", or a plain byte count
+    public static long parseSize(String size) {
+        String upper = size.trim().toUpperCase();
+        if (upper.endsWith("GB")) return Long.parseLong(upper.substring(0, upper.length() - 2)) << 30;
+        if (upper.endsWith("MB")) return Long.parseLong(upper.substring(0, upper.length() - 2)) << 20;
+        if (upper.endsWith("KB")) return Long.parseLong(upper.substring(0, upper.length() - 2)) << 10;
+        return Long.parseLong(upper);
+    }
+
+    public static String text(String size) {
+        long bytes = parseSize(size);
+        if (bytes > Integer.MAX_VALUE - 1024) throw new IllegalArgumentException("Too large to hold in a String: " + size);
+        StringBuilder text = new StringBuilder((int) bytes + 1024);
+        try {
+            new Corpus(DEFAULT_SEED).write(text, bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return text.toString();
+    }
+
+    // Generated once per seed and size and reused by later runs; the text is ASCII, so chars == bytes.
+    public static Path file(String size) throws IOException {
+        long bytes = parseSize(size);
+        Path dir = Path.of(System.getProperty("bench.corpus.dir", "target/corpus"));
+        Path file = dir.resolve("corpus-" + DEFAULT_SEED + "-" + bytes + ".txt");
+        if (Files.exists(file)) return file;
+
+        Files.createDirectories(dir);
+        Path partial = Files.createTempFile(dir, "corpus", ".partial");
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(partial, StandardCharsets.US_ASCII), 1 << 16)) {
+            new Corpus(DEFAULT_SEED).write(out, bytes);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    // Distinct-ish short entries, as a user would add to the collection.
+    public static List<String> sentences(int count) {
+        Corpus corpus = new Corpus(DEFAULT_SEED);
+        List<String> sentences = new ArrayList<>(count);
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sentence.setLength(0);
+            corpus.sentence(sentence);
+            sentences.add(sentence.append(" #").append(i).toString());
+        }
+        return sentences;
+    }
+
+    public void write(Appendable out, long bytes) throws IOException {
+        StringBuilder line = new StringBuilder(512);
+        long written = 0;
+        while (written < bytes) {
+            line.setLength(0);
+            int sentences = 1 + random.nextInt(4);
+            for (int s = 0; s < sentences; s++) {
+                if (s > 0) line.append(' ');
+                sentence(line);
+            }
+            line.append('\n');
+            // a blank line now and then, so "Remove Empty Lines" has work to do
+            if (random.nextInt(12) == 0) line.append('\n');
+            int take = (int) Math.min(line.length(), bytes - written);
+            out.append(line, 0, take);
+            written += take;
+        }
+    }
+
+    private void sentence(StringBuilder out) {
+        int length = 6 + random.nextInt(19);
+        for (int w = 0; w < length; w++) {
+            if (w > 0) out.append(random.nextInt(15) == 0 ? ", " : " ");
+            int roll = random.nextInt(400);
+            if (roll == 0) {
+                out.append(nextWord()).append('.').append(nextWord()).append('@').append(pick(DOMAINS));
+            } else if (roll == 1) {
+                out.append("https://www.").append(pick(DOMAINS)).append('/').append(nextWord());
+            } else if (roll == 2) {
+                out.append(1 + random.nextInt(12)).append('/').append(1 + random.nextInt(28)).append('/')
+                        .append(1990 + random.nextInt(40));
+            } else {
+                String word = nextWord();
+                if (w == 0) {
+                    out.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                } else {
+                    out.append(word);
+                }
+            }
+        }
+        int end = random.nextInt(10);
+        out.append(end == 0 ? '!' : end == 1 ? '?' : '.');
+    }
+
+    private String nextWord() {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) low = mid + 1;
+            else high = mid;
+        }
+        return words[low];
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // word i is the base-30 spelling of i in syllables, so the vocabulary needs no randomness
+    private static String word(int index) {
+        StringBuilder word = new StringBuilder();
+        int n = index + 1;
+        while (n > 0) {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        }
+        return word.toString();
+    }
+}
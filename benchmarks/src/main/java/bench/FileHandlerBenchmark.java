@@ -0,0 +1,40 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import utils.FileHandlerUtil;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Reads a generated corpus file from disk; after the first iteration it is normally in the page cache.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class FileHandlerBenchmark {
+
+    @Param({"16KB", "1MB", "32MB", "256MB"})
+    public String size;
+
+    private final FileHandlerUtil fileHandler = new FileHandlerUtil();
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchLogging.toFile();
+        path = Corpus.file(size).toString();
+    }
+
+    @Benchmark
+    public String readFile() throws IOException {
+        return fileHandler.readFile(path);
+    }
+
+    @Benchmark
+    public List<String> batchProcessFile() throws IOException {
+        return fileHandler.batchProcessFile(path, line -> !line.trim().isEmpty(), line -> line.trim().toLowerCase());
+    }
+}
@@ -0,0 +1,33 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import processor.TextSummarizer;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class SummarizerBenchmark {
+
+    @Param({"16KB", "1MB", "32MB", "256MB"})
+    public String size;
+
+    @Param({"5"})
+    public int sentences;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = Corpus.text(size);
+    }
+
+    @Benchmark
+    public String summarizeText() {
+        return TextSummarizer.summarizeText(text, sentences);
+    }
+}
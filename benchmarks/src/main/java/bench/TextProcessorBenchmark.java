@@ -0,0 +1,75 @@
+package bench;
+
+import model.PatternCache;
+import model.TextProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class TextProcessorBenchmark {
+    private static final String EMAIL = "[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}";
+    private static final String DATES = "(0?[1-9]|1[0-2])[-/.](0?[1-9]|[12][0-9]|3[01])[-/.](\\d{4})";
+
+    @Param({"16KB", "1MB", "32MB", "256MB"})
+    public String size;
+
+    private TextProcessor processor;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchLogging.toFile();
+        processor = new TextProcessor(new PatternCache(PatternCache.DEFAULT_MAX_SIZE));
+        text = Corpus.text(size);
+    }
+
+    @Benchmark
+    public List<String> searchEmail() {
+        return processor.search(text, EMAIL);
+    }
+
+    @Benchmark
+    public List<String> searchDates() {
+        return processor.search(text, DATES);
+    }
+
+    @Benchmark
+    public long countEmail() {
+        return processor.count(text, EMAIL);
+    }
+
+    @Benchmark
+    public List<String> searchEmailFirst1000() {
+        return processor.search(text, EMAIL, 1000);
+    }
+
+    // plain-text term, answered without the regex engine
+    @Benchmark
+    public List<String> searchLiteral() {
+        return processor.search(text, "example");
+    }
+
+    @Benchmark
+    public String replaceRegex() {
+        return processor.replace(text, DATES, "<date>");
+    }
+
+    @Benchmark
+    public String replaceLiteral() {
+        return processor.replace(text, "example.com", "example.org");
+    }
+
+    @Benchmark
+    public Map<String, Long> analyzeWordFrequency() {
+        return processor.analyzeWordFrequency(text);
+    }
+}
@@ -1,5 +1,10 @@
 public class Main {
     public static void main(String[] args) {
+        // any arguments mean a headless CLI run; the UI classes are then never loaded
+        if (args.length > 0) {
+            cli.TextProcessorCli.main(args);
+            return;
+        }
         ui.TextProcessorApp.launch(ui.TextProcessorApp.class);//to launch the application
     }
-}
\ No newline at end of file
+}
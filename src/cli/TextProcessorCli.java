@@ -0,0 +1,395 @@
+package cli;
+
+import controller.TextProcessorController;
+import exceptions.InvalidRegexPatternException;
+import exceptions.NoPatternSelectedException;
+import model.SpaceSavingSketch;
+import model.WordEstimate;
+import utils.LoggerUtil;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Headless entry point: runs one controller operation over files or stdin and writes the result
+// to stdout. Nothing here touches JavaFX, so it starts on a plain JRE and can be called once per
+// file from shell scripts and pipelines.
+public final class TextProcessorCli {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILURE = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final String USAGE = """
+            Usage: text-processor <command> [options] [file...]
+
+            Commands:
+              extract   (-p Email|URL|Dates | -e REGEX) [--offsets]
+                        print every match on its own line (--offsets: start<TAB>end<TAB>match)
+              replace   -e REGEX -r REPLACEMENT
+                        copy the input with every match replaced
+              cleanup   [--trim-lower] [--remove-empty] [--upper]
+                        transform the input line by line
+              frequency [--top K]
+                        word<TAB>count, most frequent first (--top: counted in bounded memory,
+                        exact unless the input has more than max(1000, 10K) distinct words)
+              summarize [-n SENTENCES]
+                        the highest-scoring sentences (default 3), in their original order
+
+            With no file, or with "-", input is read from stdin. Several files are read one after
+            another; frequency and summarize treat them as one text.
+            Exit status: 0 on success, 1 if an operation failed, 2 for a usage error.
+            """;
+
+    private TextProcessorCli() {
+    }
+
+    public static void main(String[] args) {
+        // keep the log out of the working directory and off stderr unless asked for
+        if (System.getProperty(LoggerUtil.Settings.FILE_PROPERTY) == null) {
+            System.setProperty(LoggerUtil.Settings.FILE_PROPERTY,
+                    Path.of(System.getProperty("java.io.tmpdir"), "text-processor-cli.log").toString());
+        }
+        if (System.getProperty(LoggerUtil.Settings.CONSOLE_PROPERTY) == null) {
+            System.setProperty(LoggerUtil.Settings.CONSOLE_PROPERTY, "false");
+        }
+        int status = run(args, new FileInputStream(FileDescriptor.in), new FileOutputStream(FileDescriptor.out), System.err);
+        System.exit(status);
+    }
+
+    // Separate from main so it can be driven without exiting the JVM; stdout is flushed but not closed.
+    public static int run(String[] args, InputStream stdin, OutputStream stdout, PrintStream stderr) {
+        if (args.length == 0) {
+            stderr.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (args[0].equals("-h") || args[0].equals("--help") || args[0].equals("help")) {
+            PrintStream out = new PrintStream(stdout, true, StandardCharsets.UTF_8);
+            out.print(USAGE);
+            out.flush();
+            return EXIT_OK;
+        }
+
+        Writer out = new OutputWriter(Channels.newWriter(Channels.newChannel(stdout), StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), IO_BUFFER_SIZE));
+        try {
+            Options options = Options.parse(args);
+            Command command = new Command(new TextProcessorController(), options, stdin, out);
+            command.run();
+            out.flush();
+            return EXIT_OK;
+        } catch (UsageException | NoPatternSelectedException e) {
+            stderr.println("text-processor: " + e.getMessage());
+            stderr.println("Run 'text-processor --help' for usage.");
+            return EXIT_USAGE;
+        } catch (Exception e) {
+            // the reader of our pipe went away (e.g. "| head"): stop quietly, like other filters do
+            if (isClosedOutput(e)) return EXIT_FAILURE;
+            stderr.println("text-processor: " + e.getMessage() + describeCause(e));
+            return e instanceof InvalidRegexPatternException ? EXIT_USAGE : EXIT_FAILURE;
+        }
+    }
+
+    private static boolean isClosedOutput(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ClosedOutputException) return true;
+        }
+        return false;
+    }
+
+    // first line only: regex syntax errors append the pattern and a caret on the following lines
+    private static String describeCause(Exception e) {
+        Throwable cause = e.getCause();
+        if (cause == null || cause.getMessage() == null) return "";
+        String detail = cause.getMessage().lines().findFirst().orElse("");
+        return (e.getMessage() != null && e.getMessage().endsWith(".") ? " " : ": ") + detail;
+    }
+
+    private static final class UsageException extends Exception {
+        UsageException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class ClosedOutputException extends UncheckedIOException {
+        ClosedOutputException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    // Turns write failures on stdout into ClosedOutputException, however deep in the controller they happen.
+    private static final class OutputWriter extends FilterWriter {
+        OutputWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) {
+            try {
+                out.write(c);
+            } catch (IOException e) {
+                throw new ClosedOutputException(e);
+            }
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            try {
+                out.write(buffer, offset, length);
+            } catch (IOException e) {
+                throw new ClosedOutputException(e);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            try {
+                out.write(text, offset, length);
+            } catch (IOException e) {
+                throw new ClosedOutputException(e);
+            }
+        }
+
+        @Override
+        public void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new ClosedOutputException(e);
+            }
+        }
+    }
+
+    // Flags take at most one value; anything not starting with '-' (or a lone "-") is an input.
+    private record Options(String command, Map<String, String> values, List<String> flags, List<String> inputs) {
+        private static final Map<String, String> ALIASES = Map.of(
+                "-p", "--pattern", "-e", "--regex", "-r", "--replacement", "-n", "--sentences");
+        private static final List<String> VALUED = List.of("--pattern", "--regex", "--replacement", "--sentences", "--top");
+
+        static Options parse(String[] args) throws UsageException {
+            Map<String, String> values = new HashMap<>();
+            List<String> flags = new ArrayList<>();
+            List<String> inputs = new ArrayList<>();
+            boolean onlyInputs = false;
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (onlyInputs || arg.equals("-") || !arg.startsWith("-")) {
+                    inputs.add(arg);
+                } else if (arg.equals("--")) {
+                    onlyInputs = true;
+                } else {
+                    String name = ALIASES.getOrDefault(arg, arg);
+                    if (VALUED.contains(name)) {
+                        if (i + 1 >= args.length) throw new UsageException(arg + " needs a value");
+                        values.put(name, args[++i]);
+                    } else {
+                        flags.add(name);
+                    }
+                }
+            }
+            return new Options(args[0], values, flags, inputs);
+        }
+
+        int intValue(String name, int defaultValue) throws UsageException {
+            String value = values.get(name);
+            if (value == null) return defaultValue;
+            try {
+                int parsed = Integer.parseInt(value);
+                if (parsed > 0) return parsed;
+            } catch (NumberFormatException ignored) {
+                // reported below
+            }
+            throw new UsageException(name + " must be a positive number: " + value);
+        }
+
+        void allow(List<String> names) throws UsageException {
+            for (String name : values.keySet()) {
+                if (!names.contains(name)) throw new UsageException(command + " does not take " + name);
+            }
+            for (String flag : flags) {
+                if (!names.contains(flag)) throw new UsageException(command + " does not take " + flag);
+            }
+        }
+    }
+
+    private static final class Command {
+        private final TextProcessorController controller;
+        private final Options options;
+        private final InputStream stdin;
+        private final Writer out;
+
+        Command(TextProcessorController controller, Options options, InputStream stdin, Writer out) {
+            this.controller = controller;
+            this.options = options;
+            this.stdin = stdin;
+            this.out = out;
+        }
+
+        void run() throws UsageException, NoPatternSelectedException, IOException {
+            switch (options.command()) {
+                case "extract" -> extract();
+                case "replace" -> replace();
+                case "cleanup" -> cleanup();
+                case "frequency" -> frequency();
+                case "summarize" -> summarize();
+                default -> throw new UsageException("unknown command '" + options.command() + "'");
+            }
+        }
+
+        private void extract() throws UsageException, NoPatternSelectedException, IOException {
+            options.allow(List.of("--pattern", "--regex", "--offsets"));
+            String selected = options.values().get("--pattern");
+            String custom = options.values().get("--regex");
+            boolean offsets = options.flags().contains("--offsets");
+            boolean prefix = inputs().size() > 1;
+            for (String input : inputs()) {
+                try (ReadableByteChannel channel = open(input)) {
+                    controller.searchStream(channel, selected, custom, match -> {
+                        try {
+                            if (prefix) out.append(input).append(':');
+                            if (offsets) {
+                                out.append(Long.toString(match.charStart())).append('\t')
+                                        .append(Long.toString(match.charEnd())).append('\t');
+                            }
+                            out.append(match.value()).append('\n');
+                        } catch (IOException e) {
+                            throw new ClosedOutputException(e);
+                        }
+                    });
+                }
+            }
+        }
+
+        private void replace() throws UsageException, IOException {
+            options.allow(List.of("--regex", "--replacement"));
+            String regex = required("--regex");
+            String replacement = required("--replacement");
+            for (String input : inputs()) {
+                try (ReadableByteChannel channel = open(input)) {
+                    controller.replaceStream(channel, out, regex, replacement);
+                }
+            }
+        }
+
+        private void cleanup() throws UsageException, IOException {
+            options.allow(List.of("--trim-lower", "--remove-empty", "--upper"));
+            // same options as the cleanup menu in the app
+            Predicate<String> filter = options.flags().contains("--remove-empty") ? line -> !line.trim().isEmpty() : line -> true;
+            Function<String, String> transformer = Function.identity();
+            if (options.flags().contains("--trim-lower")) transformer = transformer.andThen(line -> line.trim().toLowerCase());
+            if (options.flags().contains("--upper")) transformer = transformer.andThen(String::toUpperCase);
+            for (String input : inputs()) {
+                try (ReadableByteChannel channel = open(input);
+                     BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                             .onMalformedInput(CodingErrorAction.REPLACE)
+                             .onUnmappableCharacter(CodingErrorAction.REPLACE), IO_BUFFER_SIZE), IO_BUFFER_SIZE)) {
+                    controller.batchProcessStream(reader, out, filter, transformer);
+                }
+            }
+        }
+
+        private void frequency() throws UsageException, IOException {
+            options.allow(List.of("--top"));
+            if (options.values().containsKey("--top")) {
+                topFrequency(options.intValue("--top", 0));
+                return;
+            }
+            Map<String, Long> counts = new HashMap<>();
+            for (String input : inputs()) {
+                try (ReadableByteChannel channel = open(input)) {
+                    controller.wordFrequencyStream(channel).forEach((word, count) -> counts.merge(word, count, Long::sum));
+                }
+            }
+            List<Map.Entry<String, Long>> sorted = new ArrayList<>(counts.entrySet());
+            sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            for (Map.Entry<String, Long> entry : sorted) {
+                out.append(entry.getKey()).append('\t').append(Long.toString(entry.getValue())).append('\n');
+            }
+        }
+
+        // Only a sketch per input is kept, so the vocabulary of large inputs never has to fit in memory.
+        private void topFrequency(int top) throws IOException {
+            int capacity = TextProcessorController.sketchCapacityFor(top);
+            SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+            for (String input : inputs()) {
+                try (ReadableByteChannel channel = open(input)) {
+                    sketch = sketch.merge(controller.sketchWordFrequencyStream(channel, capacity));
+                }
+            }
+            for (WordEstimate entry : sketch.topK(top)) {
+                out.append(entry.word()).append('\t').append(Long.toString(entry.count())).append('\n');
+            }
+        }
+
+        private void summarize() throws UsageException, IOException {
+            options.allow(List.of("--sentences"));
+            int sentences = options.intValue("--sentences", 3);
+            StringBuilder text = new StringBuilder();
+            for (String input : inputs()) {
+                try (ReadableByteChannel channel = open(input)) {
+                    if (!text.isEmpty()) text.append('\n');
+                    text.append(new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            out.append(controller.summarizeText(text.toString(), sentences)).append('\n');
+        }
+
+        private List<String> inputs() {
+            return options.inputs().isEmpty() ? List.of("-") : options.inputs();
+        }
+
+        private String required(String name) throws UsageException {
+            String value = options.values().get(name);
+            if (value == null) throw new UsageException(options.command() + " needs " + name);
+            return value;
+        }
+
+        // stdin is wrapped so closing the channel after one input leaves it open for the caller
+        private ReadableByteChannel open(String input) throws IOException {
+            if (input.equals("-")) {
+                return Channels.newChannel(new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        return stdin.read();
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        return stdin.read(buffer, offset, length);
+                    }
+                });
+            }
+            try {
+                return FileChannel.open(Path.of(input), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                throw new IOException(input + ": no such file");
+            } catch (AccessDeniedException e) {
+                throw new IOException(input + ": permission denied");
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package controller;
+
+import model.BatchResult;
+import model.FileMatch;
+import model.MultiPatternExtractor;
+import model.ReplacementRuleSet;
+import model.TrigramIndex;
+import model.WordEstimate;
+import utils.CollectionManager;
+import utils.PagedTextFile;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Runs TextProcessorController operations on a dedicated executor so callers (the JavaFX
+// thread in particular) never block. Starting an operation cancels the previous call of the
+// same operation still in flight, so a new search replaces the old one while a batch run
+// keeps going; cancelling or timing out a future interrupts its worker. Collection writes are
+// the exception: they run one at a time in the order they were made and are never cancelled.
+// Failures complete the future exceptionally with the controller's own exceptions (see unwrap()).
+public class AsyncTextProcessorController implements AutoCloseable {
+    private final TextProcessorController controller;
+    private final ExecutorService executor;
+    // latest call of each operation, by method name
+    private final Map<String, CompletableFuture<?>> running = new ConcurrentHashMap<>();
+    private volatile Duration timeout;
+    // the last collection write queued; the next one starts when it has finished
+    private CompletableFuture<?> collectionWrites = CompletableFuture.completedFuture(null);
+
+    public AsyncTextProcessorController(TextProcessorController controller) {
+        this(controller, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AsyncTextProcessorController(TextProcessorController controller, int threads) {
+        this.controller = controller;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "text-processor-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // null disables the timeout
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public CompletableFuture<List<String>> findMatches(String input, String selectedPattern, String customPattern) {
+        return submit("findMatches", progress -> controller.findMatches(input, selectedPattern, customPattern), null);
+    }
+
+    public CompletableFuture<List<String>> findMatches(String input, String selectedPattern, String customPattern, int limit) {
+        return submit("findMatches", progress -> controller.findMatches(input, selectedPattern, customPattern, limit), null);
+    }
+
+    public CompletableFuture<Long> countMatches(String input, String selectedPattern, String customPattern) {
+        return submit("countMatches", progress -> controller.countMatches(input, selectedPattern, customPattern), null);
+    }
+
+    public CompletableFuture<List<TrigramIndex.Hit>> searchIndexed(String selectedPattern, String customPattern) {
+        return submit("searchIndexed", progress -> controller.searchIndexed(selectedPattern, customPattern), null);
+    }
+
+    public CompletableFuture<List<MultiPatternExtractor.Match>> extractAll(String input, Set<String> patternNames) {
+        return submit("extractAll", progress -> controller.extractAll(input, patternNames), null);
+    }
+
+    public CompletableFuture<Long> searchFile(String path, String selectedPattern, String customPattern, Consumer<FileMatch> onMatch) {
+        return submit("searchFile", progress -> controller.searchFile(path, selectedPattern, customPattern, onMatch), null);
+    }
+
+    public CompletableFuture<String> replaceText(String input, String regex, String replacement) {
+        return submit("replaceText", progress -> controller.replaceText(input, regex, replacement), null);
+    }
+
+    public CompletableFuture<Void> addEntry(CollectionManager collection, String content) {
+        return writeCollection(() -> {
+            controller.addEntry(collection, content);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> updateEntry(CollectionManager collection, int index, String content) {
+        return writeCollection(() -> controller.updateEntry(collection, index, content));
+    }
+
+    public CompletableFuture<Boolean> deleteEntry(CollectionManager collection, int index) {
+        return writeCollection(() -> controller.deleteEntry(collection, index));
+    }
+
+    public CompletableFuture<Boolean> replaceInEntry(CollectionManager collection, int index, String regex, String replacement) {
+        return submit("replaceInEntry", progress -> controller.replaceInEntry(collection, index, regex, replacement), null);
+    }
+
+    public CompletableFuture<String> replaceAndWriteToFile(String input, String regex, String replacement, String outputPath) {
+        return submit("replaceAndWriteToFile", progress -> controller.replaceAndWriteToFile(input, regex, replacement, outputPath), null);
+    }
+
+    public CompletableFuture<Long> replaceFile(String inputPath, String outputPath, String regex, String replacement) {
+        return submit("replaceFile", progress -> controller.replaceFile(inputPath, outputPath, regex, replacement), null);
+    }
+
+    public CompletableFuture<String> applyRules(String input, ReplacementRuleSet rules) {
+        return submit("applyRules", progress -> controller.applyRules(input, rules), null);
+    }
+
+    public CompletableFuture<Long> applyRulesToFile(String inputPath, String outputPath, ReplacementRuleSet rules) {
+        return submit("applyRulesToFile", progress -> controller.applyRulesToFile(inputPath, outputPath, rules), null);
+    }
+
+    public CompletableFuture<Map<String, Long>> wordFrequency(String input) {
+        return submit("wordFrequency", progress -> controller.wordFrequency(input), null);
+    }
+
+    public CompletableFuture<Map<String, Long>> wordFrequencyFile(String path) {
+        return submit("wordFrequencyFile", progress -> controller.wordFrequencyFile(path), null);
+    }
+
+    public CompletableFuture<List<WordEstimate>> topWordFrequency(String input, int k) {
+        return submit("topWordFrequency", progress -> controller.topWordFrequency(input, k), null);
+    }
+
+    public CompletableFuture<List<WordEstimate>> topWordFrequencyFile(String path, int k) {
+        return submit("topWordFrequencyFile", progress -> controller.topWordFrequencyFile(path, k), null);
+    }
+
+    public CompletableFuture<String> readFile(String path) {
+        return submit("readFile", progress -> controller.readFile(path), null);
+    }
+
+    // Reads the file and indexes it under its path in place of the previously uploaded file.
+    public CompletableFuture<String> readAndIndexFile(String path) {
+        return submit("readAndIndexFile", progress -> {
+            String content = controller.readFile(path);
+            controller.indexUpload(path, content);
+            return content;
+        }, null);
+    }
+
+    public CompletableFuture<PagedTextFile> openPagedFile(String path, DoubleConsumer onProgress) {
+        return submit("openPagedFile", progress -> controller.openPagedFile(path, progress), onProgress);
+    }
+
+    public CompletableFuture<List<String>> batchProcessFile(String path, Predicate<String> filter, Function<String, String> transformer) {
+        return submit("batchProcessFile", progress -> controller.batchProcessFileParallel(path, filter, transformer), null);
+    }
+
+    public CompletableFuture<BatchResult> batchProcessToFile(String inputPath, String outputPath, Predicate<String> filter,
+                                                             Function<String, String> transformer, int previewLines,
+                                                             DoubleConsumer onProgress) {
+        return submit("batchProcessToFile", progress -> controller.batchProcessToFile(inputPath, outputPath, filter, transformer, previewLines, progress), onProgress);
+    }
+
+    public CompletableFuture<String> summarizeText(String text, int numSentences) {
+        return submit("summarizeText", progress -> controller.summarizeText(text, numSentences), null);
+    }
+
+    public CompletableFuture<JobRunner.Report> runJob(JobRunner.Spec spec, JobRunner.Listener listener, DoubleConsumer onProgress) {
+        return submit("runJob", progress -> controller.runJob(spec, new JobRunner.Listener() {
+            @Override
+            public void onFileResult(JobRunner.FileResult result) {
+                listener.onFileResult(result);
+            }
+
+            @Override
+            public void onProgress(JobRunner.Progress jobProgress) {
+                listener.onProgress(jobProgress);
+                progress.accept((double) jobProgress.completed() / Math.max(1, jobProgress.total()));
+            }
+        }), onProgress);
+    }
+
+    // operation is the method name, e.g. "searchFile"
+    public void cancel(String operation) {
+        CompletableFuture<?> future = running.remove(operation);
+        if (future != null) future.cancel(true);
+    }
+
+    public void cancelAll() {
+        for (String operation : List.copyOf(running.keySet())) cancel(operation);
+    }
+
+    // Strips the CompletionException/ExecutionException wrappers added by CompletableFuture.
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        executor.shutdownNow();
+    }
+
+    // Positions in later writes refer to the collection as earlier ones left it, so writes are
+    // chained rather than submitted side by side, and cancelling them could drop a change the user made.
+    private synchronized <T> CompletableFuture<T> writeCollection(Callable<T> write) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        collectionWrites = collectionWrites.handle((value, error) -> null).thenRunAsync(() -> {
+            try {
+                result.complete(write.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, executor).whenComplete((value, error) -> {
+            // only if the executor refused the write
+            if (error != null) result.completeExceptionally(error);
+        });
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface Operation<T> {
+        T run(DoubleConsumer progress) throws Exception;
+    }
+
+    private <T> CompletableFuture<T> submit(String name, Operation<T> operation, DoubleConsumer onProgress) {
+        DoubleConsumer progress = onProgress != null ? onProgress : fraction -> { };
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                progress.accept(0.0);
+                T value = operation.run(progress);
+                progress.accept(1.0);
+                // a result that arrives after cancellation has no owner left to close it
+                if (!result.complete(value) && value instanceof AutoCloseable closeable) {
+                    closeable.close();
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                task.cancel(true);
+            }
+            running.remove(name, result);
+        });
+
+        Duration limit = timeout;
+        if (limit != null) {
+            result.orTimeout(limit.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        CompletableFuture<?> previous = running.put(name, result);
+        if (previous != null) previous.cancel(true);
+        return result;
+    }
+}
@@ -0,0 +1,268 @@
+package controller;
+
+import model.BatchResult;
+import model.PatternCache;
+import model.ReplacementRuleSet;
+import model.TextProcessor;
+import model.WordCountTable;
+import model.WordFrequencyEngine;
+import processor.TextSummarizer;
+import utils.FileHandlerUtil;
+import utils.LoggerUtil;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Runs one operation over every file under a directory, several files at a time on virtual threads.
+public class JobRunner {
+
+    public enum Operation { CLEANUP, EXTRACT, REPLACE, FREQUENCY, SUMMARIZE }
+
+    // REPLACE uses rules when set, otherwise the single regex/replacement pair
+    public record Spec(Path root, String glob, Operation operation, int concurrency,
+                       String regex, String replacement, ReplacementRuleSet rules,
+                       Predicate<String> filter, Function<String, String> transformer,
+                       int numSentences, Path outputDir) {
+
+        // upper bound; FREQUENCY and SUMMARIZE are CPU-bound and never run more files than there are cores
+        public static final int DEFAULT_CONCURRENCY = 64;
+
+        public static Spec cleanup(Path root, String glob, Predicate<String> filter, Function<String, String> transformer, Path outputDir) {
+            return new Spec(root, glob, Operation.CLEANUP, DEFAULT_CONCURRENCY, null, null, null, filter, transformer, 0, outputDir);
+        }
+
+        // matches go to <outputDir>/<relative path>.matches, one "charStart<TAB>charEnd<TAB>text" line each
+        public static Spec extract(Path root, String glob, String regex, Path outputDir) {
+            return new Spec(root, glob, Operation.EXTRACT, DEFAULT_CONCURRENCY, regex, null, null, null, null, 0, outputDir);
+        }
+
+        public static Spec replace(Path root, String glob, String regex, String replacement, Path outputDir) {
+            return new Spec(root, glob, Operation.REPLACE, DEFAULT_CONCURRENCY, regex, replacement, null, null, null, 0, outputDir);
+        }
+
+        public static Spec replace(Path root, String glob, ReplacementRuleSet rules, Path outputDir) {
+            return new Spec(root, glob, Operation.REPLACE, DEFAULT_CONCURRENCY, null, null, rules, null, null, 0, outputDir);
+        }
+
+        public static Spec frequency(Path root, String glob) {
+            return new Spec(root, glob, Operation.FREQUENCY, DEFAULT_CONCURRENCY, null, null, null, null, null, 0, null);
+        }
+
+        public static Spec summarize(Path root, String glob, int numSentences) {
+            return new Spec(root, glob, Operation.SUMMARIZE, DEFAULT_CONCURRENCY, null, null, null, null, null, numSentences, null);
+        }
+
+        public Spec withConcurrency(int concurrency) {
+            return new Spec(root, glob, operation, concurrency, regex, replacement, rules, filter, transformer, numSentences, outputDir);
+        }
+    }
+
+    // output is a short per-file description (line/match/word counts) or the summary text
+    public record FileResult(Path path, boolean success, long bytes, long elapsedNanos, String output, Throwable error) {
+    }
+
+    public record Progress(int completed, int failed, int total, long bytes, long elapsedNanos) {
+        public double filesPerSecond() {
+            return elapsedNanos == 0 ? 0 : completed * 1e9 / elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / 1e6 / (elapsedNanos / 1e9);
+        }
+    }
+
+    public record Report(Progress progress, List<FileResult> results, Map<String, Long> corpusFrequency) {
+    }
+
+    // Callbacks arrive on worker threads, possibly concurrently.
+    public interface Listener {
+        default void onFileResult(FileResult result) {
+        }
+
+        default void onProgress(Progress progress) {
+        }
+    }
+
+    // SUMMARIZE holds whole files in memory: the decoded text, the sentence copies and their term ids
+    private static final int SUMMARIZE_BYTES_PER_FILE_BYTE = 6;
+
+    private final TextProcessor processor;
+    private final FileHandlerUtil fileHandler;
+    private final PatternCache patternCache;
+    private final WordFrequencyEngine frequencyEngine = new WordFrequencyEngine();
+
+    public JobRunner(TextProcessor processor, FileHandlerUtil fileHandler, PatternCache patternCache) {
+        this.processor = processor;
+        this.fileHandler = fileHandler;
+        this.patternCache = patternCache;
+    }
+
+    public Report run(Spec spec, Listener listener) throws IOException, InterruptedException {
+        if (spec.concurrency() < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + spec.concurrency());
+        }
+        List<Path> files = listFiles(spec.root(), spec.glob());
+        Map<String, Long> corpus = spec.operation() == Operation.FREQUENCY ? new ConcurrentHashMap<>() : null;
+        List<FileResult> results = Collections.synchronizedList(new ArrayList<>(files.size()));
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        Semaphore permits = new Semaphore(workers(spec));
+        // in KiB, so a heap of any size fits the int permit count
+        int budgetKb = memoryBudgetKb();
+        Semaphore memory = new Semaphore(budgetKb);
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : files) {
+                permits.acquire();
+                int needKb = spec.operation() == Operation.SUMMARIZE ? footprintKb(file, budgetKb) : 0;
+                try {
+                    memory.acquire(needKb);
+                } catch (InterruptedException e) {
+                    permits.release();
+                    throw e;
+                }
+                executor.submit(() -> {
+                    try {
+                        FileResult result = process(spec, file, corpus);
+                        results.add(result);
+                        if (!result.success()) failed.incrementAndGet();
+                        bytes.addAndGet(result.bytes());
+                        int done = completed.incrementAndGet();
+                        listener.onFileResult(result);
+                        listener.onProgress(new Progress(done, failed.get(), files.size(), bytes.get(), System.nanoTime() - start));
+                    } finally {
+                        memory.release(needKb);
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        Progress progress = new Progress(completed.get(), failed.get(), files.size(), bytes.get(), System.nanoTime() - start);
+        LoggerUtil.logInfo(() -> String.format("Job %s on %s: %d files (%d failed), %.1f files/s, %.1f MB/s",
+                spec.operation(), spec.root(), progress.completed(), progress.failed(),
+                progress.filesPerSecond(), progress.megabytesPerSecond()));
+        return new Report(progress, List.copyOf(results), corpus);
+    }
+
+    private FileResult process(Spec spec, Path file, Map<String, Long> corpus) {
+        long start = System.nanoTime();
+        long size = 0;
+        try {
+            size = Files.size(file);
+            String output = switch (spec.operation()) {
+                case CLEANUP -> {
+                    BatchResult batch = fileHandler.batchProcessToFile(file.toString(), outputFor(spec, file).toString(),
+                            spec.filter(), spec.transformer(), 0);
+                    yield batch.linesWritten() + " lines written";
+                }
+                case EXTRACT -> {
+                    Path target = outputFor(spec, file, ".matches");
+                    yield extract(spec, file, target) + " matches written to " + target;
+                }
+                case REPLACE -> {
+                    Path target = outputFor(spec, file);
+                    ReplacementRuleSet rules = spec.rules() != null ? spec.rules()
+                            : ReplacementRuleSet.single(patternCache.get(spec.regex()), spec.replacement());
+                    long replaced = fileHandler.replaceFile(file.toString(), target.toString(), rules,
+                            FileHandlerUtil.DEFAULT_CHUNK_SIZE, FileHandlerUtil.DEFAULT_MAX_MATCH_LENGTH);
+                    yield replaced + " replacements written to " + target;
+                }
+                case FREQUENCY -> {
+                    WordCountTable table;
+                    try (FileChannel in = FileChannel.open(file)) {
+                        table = fileHandler.countWords(in, frequencyEngine);
+                    }
+                    table.forEach((word, count) -> corpus.merge(word, (long) count, Long::sum));
+                    yield table.size() + " distinct words";
+                }
+                case SUMMARIZE -> TextSummarizer.summarizeText(Files.readString(file), spec.numSentences());
+            };
+            return new FileResult(file, true, size, System.nanoTime() - start, output, null);
+        } catch (Exception e) {
+            LoggerUtil.logError("Job " + spec.operation() + " failed for " + file, e);
+            return new FileResult(file, false, size, System.nanoTime() - start, null, e);
+        }
+    }
+
+    private long extract(Spec spec, Path file, Path target) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            return fileHandler.searchFile(file.toString(), patternCache.get(spec.regex()),
+                    FileHandlerUtil.DEFAULT_CHUNK_SIZE, FileHandlerUtil.DEFAULT_MAX_MATCH_LENGTH, match -> {
+                        try {
+                            out.append(Long.toString(match.charStart())).append('\t')
+                                    .append(Long.toString(match.charEnd())).append('\t')
+                                    .append(match.value()).append('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static int workers(Spec spec) {
+        return switch (spec.operation()) {
+            case FREQUENCY, SUMMARIZE -> Math.min(spec.concurrency(), Runtime.getRuntime().availableProcessors());
+            default -> spec.concurrency();
+        };
+    }
+
+    private static int memoryBudgetKb() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2 / 1024);
+    }
+
+    // a file bigger than the whole budget still runs, just alone
+    private static int footprintKb(Path file, int budgetKb) {
+        try {
+            return (int) Math.min(budgetKb, Files.size(file) * SUMMARIZE_BYTES_PER_FILE_BYTE / 1024 + 1);
+        } catch (IOException e) {
+            // process() reports the failure
+            return 0;
+        }
+    }
+
+    private static Path outputFor(Spec spec, Path file) throws IOException {
+        return outputFor(spec, file, "");
+    }
+
+    private static Path outputFor(Spec spec, Path file, String suffix) throws IOException {
+        if (spec.outputDir() == null) {
+            throw new IOException("No output directory configured for " + spec.operation());
+        }
+        Path root = Files.isDirectory(spec.root()) ? spec.root() : spec.root().getParent();
+        Path target = spec.outputDir().resolve(root.relativize(file).toString() + suffix);
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+
+    private static List<Path> listFiles(Path root, String glob) throws IOException {
+        if (Files.isRegularFile(root)) {
+            return List.of(root);
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + (glob == null || glob.isEmpty() ? "**" : glob));
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(root.relativize(path)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
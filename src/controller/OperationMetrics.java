@@ -0,0 +1,226 @@
+package controller;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+// Call counts, error counts, characters processed and latency histograms per controller
+// operation. While disabled, measure() costs one volatile read on top of the operation itself.
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    public record Snapshot(String operation, long calls, long errors, long chars,
+                           long p50Nanos, long p99Nanos, long maxNanos) {
+    }
+
+    public static final String OBJECT_NAME = "textprocessor:type=OperationMetrics";
+
+    private final Map<String, Stats> operations = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    public OperationMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public <T, E extends Exception> T measure(String operation, long chars, Operation<T, E> body) throws E {
+        return measure(operation, chars, body, null);
+    }
+
+    // charsOfResult adds what the operation produced, for calls whose size is only known afterwards.
+    public <T, E extends Exception> T measure(String operation, long chars, Operation<T, E> body,
+                                              ToLongFunction<T> charsOfResult) throws E {
+        if (!enabled) return body.run();
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = body.run();
+            failed = false;
+            if (charsOfResult != null && result != null) chars += charsOfResult.applyAsLong(result);
+            return result;
+        } finally {
+            stats(operation).record(System.nanoTime() - started, chars, failed);
+        }
+    }
+
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : operations.entrySet()) {
+            snapshots.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        snapshots.sort((a, b) -> a.operation().compareTo(b.operation()));
+        return snapshots;
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts() {
+        return collect(Snapshot::calls);
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        return collect(Snapshot::errors);
+    }
+
+    @Override
+    public Map<String, Long> getCharsProcessed() {
+        return collect(Snapshot::chars);
+    }
+
+    @Override
+    public Map<String, Long> getP50Micros() {
+        return collect(s -> TimeUnit.NANOSECONDS.toMicros(s.p50Nanos()));
+    }
+
+    @Override
+    public Map<String, Long> getP99Micros() {
+        return collect(s -> TimeUnit.NANOSECONDS.toMicros(s.p99Nanos()));
+    }
+
+    @Override
+    public Map<String, Long> getMaxMicros() {
+        return collect(s -> TimeUnit.NANOSECONDS.toMicros(s.maxNanos()));
+    }
+
+    // Returns false if another instance already holds the name (e.g. a second controller in the JVM).
+    public boolean registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            return false;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register " + OBJECT_NAME, e);
+        }
+    }
+
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    private Map<String, Long> collect(ToLongFunction<Snapshot> field) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Snapshot snapshot : snapshot()) {
+            values.put(snapshot.operation(), field.applyAsLong(snapshot));
+        }
+        return values;
+    }
+
+    private Stats stats(String operation) {
+        Stats stats = operations.get(operation);
+        return stats != null ? stats : operations.computeIfAbsent(operation, name -> new Stats());
+    }
+
+    private static final class Stats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder chars = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        void record(long nanos, long processed, boolean failed) {
+            calls.increment();
+            if (failed) errors.increment();
+            if (processed > 0) chars.add(processed);
+            latencies.record(nanos);
+            long current;
+            while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            }
+        }
+
+        Snapshot snapshot(String operation) {
+            long[] counts = latencies.counts();
+            long maxNanos = max.get();
+            return new Snapshot(operation, calls.sum(), errors.sum(), chars.sum(),
+                    Math.min(LatencyHistogram.percentile(counts, 0.50), maxNanos),
+                    Math.min(LatencyHistogram.percentile(counts, 0.99), maxNanos),
+                    maxNanos);
+        }
+    }
+
+    // Log-linear buckets: each power of two is split into 8, so a reported percentile is at most
+    // 12.5% above the true value, in a fixed 4 KB per operation regardless of how many calls.
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(Math.max(0, nanos)));
+        }
+
+        long[] counts() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+            return copy;
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        // largest value that falls into the bucket
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+            return lower + (1L << (exponent - SUB_BITS)) - 1;
+        }
+
+        static long percentile(long[] counts, double quantile) {
+            long total = 0;
+            for (long count : counts) total += count;
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package controller;
+
+import java.util.Map;
+
+// JMX view of OperationMetrics; every map is keyed by operation name.
+public interface OperationMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, Long> getCallCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    Map<String, Long> getCharsProcessed();
+
+    Map<String, Long> getP50Micros();
+
+    Map<String, Long> getP99Micros();
+
+    Map<String, Long> getMaxMicros();
+
+    void reset();
+}
@@ -3,24 +3,49 @@ package controller;
 import exceptions.FileProcessingException;
 import exceptions.InvalidRegexPatternException;
 import exceptions.NoPatternSelectedException;
+import exceptions.RegexTimeoutException;
 import exceptions.SummarizationException;
+import model.BatchResult;
+import model.FileMatch;
+import model.IncrementalWordFrequency;
+import model.MultiPatternExtractor;
+import model.PatternCache;
+import model.ReplacementRuleSet;
+import model.TextManager;
+import model.TextMatch;
 import model.TextProcessor;
+import model.TrigramIndex;
+import model.SpaceSavingSketch;
+import model.WordEstimate;
+import model.WordFrequencyEngine;
 import processor.TextSummarizer;
+import utils.CollectionManager;
 import utils.FileHandlerUtil;
+import utils.LoggerUtil;
+import utils.PagedTextFile;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class TextProcessorController {
-    private final TextProcessor processor = new TextProcessor();
-    private final FileHandlerUtil fileHandler = new FileHandlerUtil();
-
     // Predefined regex patterns
     private static final Map<String, String> REGEX_PATTERNS = Map.of(
             "Email", "[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}",
@@ -28,81 +53,716 @@ public class TextProcessorController {
             "Dates", "(0?[1-9]|1[0-2])[-/.](0?[1-9]|[12][0-9]|3[01])[-/.](\\d{4})"
     );
 
+    // Cheap literal checks that must hold for a token before the full pattern can match it
+    private static final Map<String, MultiPatternExtractor.Anchor> PATTERN_ANCHORS = Map.of(
+            "Email", MultiPatternExtractor.AT_SIGN,
+            "URL", MultiPatternExtractor.HTTP,
+            "Dates", MultiPatternExtractor.DIGIT_SEPARATOR_DIGIT
+    );
+
+    private static final int DEFAULT_SKETCH_CAPACITY = 1000;
+    private static final Duration DEFAULT_REGEX_BUDGET = Duration.ofSeconds(10);
+    private static final int APPEND_CHUNK_BYTES = 8 << 20;
+
+    private final PatternCache patternCache;
+    private final TextProcessor processor;
+    private final FileHandlerUtil fileHandler = new FileHandlerUtil();
+    private final JobRunner jobRunner;
+    private final TrigramIndex documentIndex = new TrigramIndex();
+    private final Object uploadLock = new Object();
+    // the uploaded file currently in the index; uploading another one evicts it
+    private String indexedUpload;
+    private volatile CollectionIndexer collectionIndexer;
+    private int collectionGeneration;
+    private final OperationMetrics metrics = new OperationMetrics(true);
+    private final WordFrequencyEngine frequencyEngine = new WordFrequencyEngine();
+
+    public TextProcessorController() {
+        this(PatternCache.shared());
+    }
+
+    public TextProcessorController(PatternCache patternCache) {
+        this.patternCache = patternCache;
+        this.processor = new TextProcessor(patternCache);
+        this.processor.setRegexBudget(DEFAULT_REGEX_BUDGET);
+        this.fileHandler.setRegexBudget(DEFAULT_REGEX_BUDGET);
+        this.jobRunner = new JobRunner(processor, fileHandler, patternCache);
+        patternCache.precompile(REGEX_PATTERNS.values());
+    }
+
+    public PatternCache getPatternCache() {
+        return patternCache;
+    }
+
+    public OperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    // CPU time a single findMatches/replaceText call, or one window of a file or stream operation,
+    // may spend matching; null removes the limit
+    public void setRegexTimeBudget(Duration budget) {
+        processor.setRegexBudget(budget);
+        fileHandler.setRegexBudget(budget);
+    }
+
+    public List<String> analyzeRegex(String regex) {
+        return patternCache.warnings(regex);
+    }
+
     public List<String> findMatches(String input, String selectedPattern, String customPattern) throws NoPatternSelectedException, InvalidRegexPatternException {
-        String regex = (customPattern != null && !customPattern.isEmpty())
-                ? customPattern
-                : REGEX_PATTERNS.get(selectedPattern);
+        return findMatches(input, selectedPattern, customPattern, Integer.MAX_VALUE);
+    }
 
-        if (regex == null || regex.trim().isEmpty()) {
-            throw new NoPatternSelectedException("No regex pattern provided or selected.");
-        }
+    // Stops after limit matches, e.g. to show the first page of hits without scanning the whole text.
+    public List<String> findMatches(String input, String selectedPattern, String customPattern, int limit) throws NoPatternSelectedException, InvalidRegexPatternException {
+        return metrics.measure("findMatches", length(input), () -> {
+            String regex = resolvePattern(selectedPattern, customPattern);
+            warnIfUnsafe(regex);
+
+            try {
+                return processor.search(input, regex, limit);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
+            }
+        });
+    }
 
+    public long countMatches(CharSequence input, String selectedPattern, String customPattern) throws NoPatternSelectedException, InvalidRegexPatternException {
+        return metrics.measure("countMatches", length(input), () -> {
+            String regex = resolvePattern(selectedPattern, customPattern);
+            warnIfUnsafe(regex);
+
+            try {
+                return processor.count(input, regex);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
+            }
+        });
+    }
+
+    // The pattern is checked here; matching happens as the stream is consumed, outside the metrics.
+    public Stream<TextMatch> matchStream(CharSequence input, String selectedPattern, String customPattern) throws NoPatternSelectedException, InvalidRegexPatternException {
+        String regex = resolvePattern(selectedPattern, customPattern);
+        warnIfUnsafe(regex);
         try {
-            return processor.search(input, regex);
+            return processor.matches(input, regex);
         } catch (Exception e) {
             throw new InvalidRegexPatternException("Invalid regex pattern.", e);
         }
     }
 
-    public String replaceText(String input, String regex, String replacement) throws InvalidRegexPatternException {
-        try {
-            return processor.replace(input, regex, replacement);
-        } catch (Exception e) {
-            throw new InvalidRegexPatternException("Regex replacement failed.", e);
+    // Searches every indexed document and collection entry, skipping those the index rules out.
+    public List<TrigramIndex.Hit> searchIndexed(String selectedPattern, String customPattern) throws NoPatternSelectedException, InvalidRegexPatternException {
+        return metrics.measure("searchIndexed", 0, () -> {
+            String regex = resolvePattern(selectedPattern, customPattern);
+            warnIfUnsafe(regex);
+
+            try {
+                List<TrigramIndex.Hit> hits = processor.searchIndexed(documentIndex, regex);
+                CollectionIndexer indexer = collectionIndexer;
+                return indexer == null ? hits : indexer.toPositions(hits);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
+            }
+        });
+    }
+
+    public void indexDocument(String name, String text) {
+        checkDocumentName(name);
+        metrics.measure("indexDocument", length(text), () -> {
+            documentIndex.put(name, text);
+            return null;
+        });
+    }
+
+    public boolean removeIndexedDocument(String name) {
+        return documentIndex.remove(name);
+    }
+
+    // Indexes an uploaded file under its path, replacing the previously uploaded one.
+    public void indexUpload(String path, String text) {
+        checkDocumentName(path);
+        metrics.measure("indexDocument", length(text), () -> {
+            synchronized (uploadLock) {
+                if (indexedUpload != null && !indexedUpload.equals(path)) documentIndex.remove(indexedUpload);
+                documentIndex.put(path, text);
+                indexedUpload = path;
+            }
+            return null;
+        });
+    }
+
+    // Drops the uploaded file from the index, e.g. when it is replaced by one too large to index.
+    public void removeIndexedUpload() {
+        synchronized (uploadLock) {
+            if (indexedUpload != null) documentIndex.remove(indexedUpload);
+            indexedUpload = null;
         }
     }
 
+    // Keeps the collection's entries in the index as they change; hits name them "collection:<position>".
+    // Only one collection is indexed at a time: indexing another one drops the previous one's entries.
+    public synchronized void indexCollection(CollectionManager collection) {
+        CollectionIndexer previous = collectionIndexer;
+        if (previous != null) previous.detach();
+        CollectionIndexer indexer = new CollectionIndexer(documentIndex, collection, collectionGeneration++);
+        collection.addListener(indexer);
+        collectionIndexer = indexer;
+    }
+
+    private static void checkDocumentName(String name) {
+        if (name.startsWith(CollectionIndexer.PREFIX)) {
+            throw new IllegalArgumentException("Document names starting with NUL are reserved: " + name.substring(1));
+        }
+    }
+
+    public TrigramIndex.Stats indexStats() {
+        return documentIndex.stats();
+    }
+
+    public long searchFile(String path, String selectedPattern, String customPattern, Consumer<FileMatch> onMatch) throws NoPatternSelectedException, InvalidRegexPatternException, FileProcessingException {
+        return metrics.measure("searchFile", fileSize(path), () -> {
+            String regex = resolvePattern(selectedPattern, customPattern);
+
+            Pattern pattern;
+            try {
+                pattern = patternCache.get(regex);
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
+            }
+
+            try {
+                return fileHandler.searchFile(path, pattern, FileHandlerUtil.DEFAULT_CHUNK_SIZE, FileHandlerUtil.DEFAULT_MAX_MATCH_LENGTH, onMatch);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to search file: " + path, e);
+            }
+        });
+    }
+
+    // Same as searchFile for a channel the caller owns, such as stdin.
+    public long searchStream(ReadableByteChannel in, String selectedPattern, String customPattern, Consumer<FileMatch> onMatch) throws NoPatternSelectedException, InvalidRegexPatternException, FileProcessingException {
+        return metrics.measure("searchStream", 0, () -> {
+            String regex = resolvePattern(selectedPattern, customPattern);
+
+            Pattern pattern;
+            try {
+                pattern = patternCache.get(regex);
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
+            }
+
+            try {
+                return fileHandler.searchStream(in, pattern, onMatch);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to search input stream", e);
+            }
+        });
+    }
+
+    public List<MultiPatternExtractor.Match> extractAll(String input, Set<String> patternNames) throws NoPatternSelectedException, InvalidRegexPatternException {
+        return metrics.measure("extractAll", length(input), () -> {
+            if (patternNames == null || patternNames.isEmpty()) {
+                throw new NoPatternSelectedException("No regex pattern provided or selected.");
+            }
+
+            List<MultiPatternExtractor.Spec> specs = new ArrayList<>();
+            for (String name : patternNames) {
+                String regex = REGEX_PATTERNS.get(name);
+                if (regex == null) {
+                    throw new NoPatternSelectedException("Unknown regex pattern: " + name);
+                }
+                specs.add(new MultiPatternExtractor.Spec(name, regex, PATTERN_ANCHORS.get(name)));
+            }
+
+            try {
+                return processor.extractAll(input, specs);
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
+            }
+        });
+    }
+
+    public String replaceText(String input, String regex, String replacement) throws InvalidRegexPatternException {
+        return metrics.measure("replaceText", length(input), () -> {
+            warnIfUnsafe(regex);
+            try {
+                return processor.replace(input, regex, replacement);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Regex replacement failed.", e);
+            }
+        });
+    }
+
+    // Edits a rope-backed text in place of a String copy; see TextManager.
+    public TextManager replaceInText(TextManager input, String regex, String replacement) throws InvalidRegexPatternException {
+        return metrics.measure("replaceInText", length(input), () -> {
+            warnIfUnsafe(regex);
+            try {
+                return processor.replaceInText(input, regex, replacement);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Regex replacement failed.", e);
+            }
+        });
+    }
+
+    // Collection writes are journaled and synced before they return; a UI thread goes through the async controller.
+    public void addEntry(CollectionManager collection, String content) throws FileProcessingException {
+        metrics.measure("addEntry", length(content), () -> {
+            collection.addEntry(content);
+            return null;
+        });
+    }
+
+    public boolean updateEntry(CollectionManager collection, int index, String content) throws FileProcessingException {
+        return metrics.measure("updateEntry", length(content), () -> collection.updateEntry(index, content));
+    }
+
+    public boolean deleteEntry(CollectionManager collection, int index) throws FileProcessingException {
+        return metrics.measure("deleteEntry", 0, () -> collection.deleteEntry(index));
+    }
+
+    // Replaces matches inside one collection entry through its rope; false if there is no such entry.
+    public boolean replaceInEntry(CollectionManager collection, int index, String regex, String replacement) throws InvalidRegexPatternException {
+        return metrics.measure("replaceInEntry", 0, () -> {
+            warnIfUnsafe(regex);
+            try {
+                return collection.editEntry(index, entry -> processor.replaceInText(entry, regex, replacement));
+            } catch (RegexTimeoutException | FileProcessingException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Regex replacement failed.", e);
+            }
+        });
+    }
+
+    // Word counts over a channel read one window at a time, so memory follows the vocabulary, not the input.
+    public Map<String, Long> wordFrequencyStream(ReadableByteChannel in) throws FileProcessingException {
+        return metrics.measure("wordFrequencyStream", 0, () -> {
+            try {
+                return fileHandler.countWords(in, frequencyEngine).toMap();
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to read input stream", e);
+            }
+        });
+    }
+
+    public Map<String, Long> wordFrequencyFile(String path) throws FileProcessingException {
+        return metrics.measure("wordFrequencyFile", fileSize(path), () -> {
+            try (FileChannel in = FileChannel.open(Path.of(path))) {
+                return fileHandler.countWords(in, frequencyEngine).toMap();
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to read file: " + path, e);
+            }
+        });
+    }
+
+    // Word-frequency sketch over a channel, one per window and merged, so memory follows the capacity only.
+    // Sketches of several inputs can be merged before taking the top k.
+    public SpaceSavingSketch sketchWordFrequencyStream(ReadableByteChannel in, int sketchCapacity) throws FileProcessingException {
+        return metrics.measure("sketchWordFrequencyStream", 0, () -> {
+            try {
+                return fileHandler.sketchWords(in, frequencyEngine, sketchCapacity);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to read input stream", e);
+            }
+        });
+    }
+
+    // Approximate top-k over a file read one window at a time.
+    public List<WordEstimate> topWordFrequencyFile(String path, int k) throws FileProcessingException {
+        return topWordFrequencyFile(path, k, sketchCapacityFor(k));
+    }
+
+    public List<WordEstimate> topWordFrequencyFile(String path, int k, int sketchCapacity) throws FileProcessingException {
+        return metrics.measure("topWordFrequencyFile", fileSize(path), () -> {
+            try (FileChannel in = FileChannel.open(Path.of(path))) {
+                return fileHandler.sketchWords(in, frequencyEngine, Math.max(k, sketchCapacity)).topK(k);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to read file: " + path, e);
+            }
+        });
+    }
+
     public Map<String, Long> wordFrequency(String input) {
-        return processor.analyzeWordFrequency(input);
+        return metrics.measure("wordFrequency", length(input), () -> processor.analyzeWordFrequency(input));
+    }
+
+    // Approximate top-k; each count may overshoot by at most (total words / sketchCapacity).
+    public List<WordEstimate> topWordFrequency(String input, int k) {
+        return topWordFrequency(input, k, sketchCapacityFor(k));
+    }
+
+    // Capacity the top-k methods use by default, enough that the k-th word is rarely misplaced.
+    public static int sketchCapacityFor(int k) {
+        return Math.max(DEFAULT_SKETCH_CAPACITY, (int) Math.min(Integer.MAX_VALUE, k * 10L));
+    }
+
+    public List<WordEstimate> topWordFrequency(String input, int k, int sketchCapacity) {
+        return metrics.measure("topWordFrequency", length(input), () -> processor.topWords(input, k, sketchCapacity));
+    }
+
+    // Feeds whatever was appended to the file since fromByte into the model; returns the offset to resume from.
+    public long appendFileToFrequency(IncrementalWordFrequency frequency, String path, long fromByte) throws FileProcessingException {
+        return metrics.measure("appendFileToFrequency", 0, () -> {
+            try {
+                long offset = fromByte;
+                StringBuilder chunk = new StringBuilder();
+                while (true) {
+                    chunk.setLength(0);
+                    long next = fileHandler.readAppended(path, offset, APPEND_CHUNK_BYTES, chunk);
+                    if (next == offset) return offset;
+                    frequency.append(chunk);
+                    offset = next;
+                }
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to read appended data: " + path, e);
+            }
+        }, offset -> offset - fromByte);
     }
 
     public String readFile(String path) throws FileProcessingException {
-        try {
-            return fileHandler.readFile(path);
-        } catch (IOException e) {
-            throw new FileProcessingException("Failed to read file: " + path, e);
-        }
+        return metrics.measure("readFile", 0, () -> {
+            try {
+                return fileHandler.readFile(path);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to read file: " + path, e);
+            }
+        }, String::length);
+    }
+
+    // Indexes the file's lines for paged display without loading it; the caller closes the result.
+    public PagedTextFile openPagedFile(String path, DoubleConsumer progress) throws FileProcessingException {
+        return metrics.measure("openPagedFile", fileSize(path), () -> {
+            PagedTextFile file = null;
+            try {
+                file = new PagedTextFile(Path.of(path));
+                file.index(progress);
+                return file;
+            } catch (IOException e) {
+                closeQuietly(file);
+                throw new FileProcessingException("Failed to open file: " + path, e);
+            }
+        });
     }
 
     public void writeFile(String path, String content) throws FileProcessingException {
-        try {
-            fileHandler.writeFile(path, content);
-        } catch (IOException e) {
-            throw new FileProcessingException("Failed to write file: " + path, e);
-        }
+        metrics.measure("writeFile", length(content), () -> {
+            try {
+                fileHandler.writeFile(path, content);
+                return null;
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to write file: " + path, e);
+            }
+        });
     }
 
     public List<String> batchProcessFile(String path, Predicate<String> filter, Function<String, String> transformer) throws FileProcessingException {
-        try {
-            return fileHandler.batchProcessFile(path, filter, transformer);
-        } catch (IOException e) {
-            throw new FileProcessingException("Batch processing failed for : " + path, e);
-        }
+        return metrics.measure("batchProcessFile", fileSize(path), () -> {
+            try {
+                return fileHandler.batchProcessFile(path, filter, transformer);
+            } catch (IOException e) {
+                throw new FileProcessingException("Batch processing failed for : " + path, e);
+            }
+        });
+    }
+
+    public BatchResult batchProcessToFile(String inputPath, String outputPath, Predicate<String> filter,
+                                          Function<String, String> transformer, int previewLines) throws FileProcessingException {
+        return batchProcessToFile(inputPath, outputPath, filter, transformer, previewLines, fraction -> { });
+    }
+
+    public BatchResult batchProcessToFile(String inputPath, String outputPath, Predicate<String> filter,
+                                          Function<String, String> transformer, int previewLines,
+                                          DoubleConsumer progress) throws FileProcessingException {
+        return metrics.measure("batchProcessToFile", fileSize(inputPath), () -> {
+            try {
+                return fileHandler.batchProcessToFile(inputPath, outputPath, filter, transformer, previewLines, progress);
+            } catch (IOException e) {
+                throw new FileProcessingException("Batch processing failed for : " + inputPath, e);
+            }
+        });
+    }
+
+    public long batchProcessStream(BufferedReader in, Writer out, Predicate<String> filter, Function<String, String> transformer) throws FileProcessingException {
+        return metrics.measure("batchProcessStream", 0, () -> {
+            try {
+                return fileHandler.batchProcessStream(in, out, filter, transformer);
+            } catch (IOException e) {
+                throw new FileProcessingException("Batch processing failed for input stream", e);
+            }
+        });
+    }
+
+    public List<String> batchProcessFileParallel(String path, Predicate<String> filter, Function<String, String> transformer) throws FileProcessingException {
+        return batchProcessFileParallel(path, filter, transformer, Runtime.getRuntime().availableProcessors(), FileHandlerUtil.DEFAULT_BATCH_CHUNK_BYTES);
+    }
+
+    public List<String> batchProcessFileParallel(String path, Predicate<String> filter, Function<String, String> transformer,
+                                                 int parallelism, int chunkBytes) throws FileProcessingException {
+        return metrics.measure("batchProcessFileParallel", fileSize(path), () -> {
+            try {
+                return fileHandler.batchProcessFileParallel(path, filter, transformer, parallelism, chunkBytes);
+            } catch (IOException e) {
+                throw new FileProcessingException("Batch processing failed for : " + path, e);
+            }
+        });
     }
 
     public String replaceAndWriteToFile(String input, String regex, String replacement, String outputPath) throws FileProcessingException, InvalidRegexPatternException {
-        try {
-            Pattern pattern = Pattern.compile(regex);
-            Matcher matcher = pattern.matcher(input);
-            String replaced = matcher.replaceAll(replacement);
+        return metrics.measure("replaceAndWriteToFile", length(input), () -> {
+            try {
+                warnIfUnsafe(regex);
+                String replaced = processor.replace(input, regex, replacement);
+
+                try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath))) {
+                    writer.write(replaced);
+                }
+
+                return "File written successfully to: " + outputPath;
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to write to file: " + outputPath, e);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Regex processing failed.", e);
+            }
+        });
+    }
+
+    public long replaceFile(String inputPath, String outputPath, String regex, String replacement) throws FileProcessingException, InvalidRegexPatternException {
+        return replaceFile(inputPath, outputPath, regex, replacement, FileHandlerUtil.DEFAULT_MAX_MATCH_LENGTH);
+    }
 
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath))) {
-                writer.write(replaced);
+    // Streams inputPath to outputPath in constant memory; matches longer than maxMatchLength may be cut at a chunk boundary.
+    public long replaceFile(String inputPath, String outputPath, String regex, String replacement, int maxMatchLength) throws FileProcessingException, InvalidRegexPatternException {
+        return metrics.measure("replaceFile", fileSize(inputPath), () -> {
+            Pattern pattern;
+            try {
+                warnIfUnsafe(regex);
+                pattern = patternCache.get(regex);
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
             }
 
-            return "File written successfully to: " + outputPath;
-        } catch (IOException e) {
-            throw new FileProcessingException("Failed to write to file: " + outputPath, e);
+            try {
+                return fileHandler.replaceFile(inputPath, outputPath, pattern, replacement, FileHandlerUtil.DEFAULT_CHUNK_SIZE, maxMatchLength);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to rewrite file: " + inputPath, e);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Regex replacement failed.", e);
+            }
+        });
+    }
+
+    // Streams in to out in constant memory; the caller closes both.
+    public long replaceStream(ReadableByteChannel in, Writer out, String regex, String replacement) throws FileProcessingException, InvalidRegexPatternException {
+        return metrics.measure("replaceStream", 0, () -> {
+            Pattern pattern;
+            try {
+                warnIfUnsafe(regex);
+                pattern = patternCache.get(regex);
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Invalid regex pattern.", e);
+            }
+
+            try {
+                return fileHandler.replaceStream(in, out, ReplacementRuleSet.single(pattern, replacement));
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to rewrite input stream", e);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Regex replacement failed.", e);
+            }
+        });
+    }
+
+    public ReplacementRuleSet compileRules(List<ReplacementRuleSet.Rule> rules, ReplacementRuleSet.Overlap overlap) throws NoPatternSelectedException, InvalidRegexPatternException {
+        if (rules == null || rules.isEmpty()) {
+            throw new NoPatternSelectedException("No replacement rules provided.");
+        }
+        try {
+            for (ReplacementRuleSet.Rule rule : rules) {
+                warnIfUnsafe(rule.regex());
+            }
+            return ReplacementRuleSet.compile(rules, overlap);
         } catch (Exception e) {
-            throw new InvalidRegexPatternException("Regex processing failed.", e);
+            throw new InvalidRegexPatternException("Invalid replacement rule.", e);
         }
     }
 
+    public String applyRules(String input, ReplacementRuleSet rules) {
+        return metrics.measure("applyRules", length(input), () -> {
+            try {
+                return processor.applyRules(input, rules);
+            } catch (RegexTimeoutException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidRegexPatternException("Rule replacement failed.", e);
+            }
+        });
+    }
+
+    public long applyRulesToFile(String inputPath, String outputPath, ReplacementRuleSet rules) throws FileProcessingException {
+        return metrics.measure("applyRulesToFile", fileSize(inputPath), () -> {
+            try {
+                return fileHandler.replaceFile(inputPath, outputPath, rules, FileHandlerUtil.DEFAULT_CHUNK_SIZE, FileHandlerUtil.DEFAULT_MAX_MATCH_LENGTH);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to rewrite file: " + inputPath, e);
+            }
+        });
+    }
+
+    public JobRunner.Report runJob(JobRunner.Spec spec, JobRunner.Listener listener) throws FileProcessingException {
+        return metrics.measure("runJob", 0, () -> {
+            try {
+                return jobRunner.run(spec, listener);
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to list files under: " + spec.root(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileProcessingException("Job interrupted: " + spec.root(), e);
+            }
+        });
+    }
+
     public String summarizeText(String text, int numSentences) throws SummarizationException {
+        return metrics.measure("summarizeText", length(text), () -> {
+            try {
+                return TextSummarizer.summarizeText(text, numSentences);
+            } catch (Exception e) {
+                throw new SummarizationException("Text summarization failed.", e);
+            }
+        });
+    }
+
+    private static long length(CharSequence text) {
+        return text == null ? 0 : text.length();
+    }
+
+    // only looked up while metrics are collected
+    private long fileSize(String path) {
+        if (!metrics.isEnabled() || path == null) return 0;
         try {
-            return TextSummarizer.summarizeText(text, numSentences);
-        } catch (Exception e) {
-            throw new SummarizationException("Text summarization failed.", e);
+            return Files.size(Path.of(path));
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static void closeQuietly(PagedTextFile file) {
+        if (file == null) return;
+        try {
+            file.close();
+        } catch (IOException e) {
+            LoggerUtil.logError("Failed to close " + file.getPath(), e);
+        }
+    }
+
+    // Logged once per cached pattern; repeating the same warning on every call adds nothing.
+    private void warnIfUnsafe(String regex) {
+        if (regex == null) return;
+        for (String warning : patternCache.unreportedWarnings(regex)) {
+            LoggerUtil.logWarning(warning);
+        }
+    }
+
+    private String resolvePattern(String selectedPattern, String customPattern) throws NoPatternSelectedException {
+        String regex = (customPattern != null && !customPattern.isEmpty())
+                ? customPattern
+                : selectedPattern == null ? null : REGEX_PATTERNS.get(selectedPattern);
+
+        if (regex == null || regex.trim().isEmpty()) {
+            throw new NoPatternSelectedException("No regex pattern provided or selected.");
+        }
+        return regex;
+    }
+
+    // Indexes entries under ids that do not change when earlier entries are removed, so a delete
+    // only touches the index for the deleted entry; hits are mapped back to positions per search.
+    private static final class CollectionIndexer implements CollectionManager.Listener {
+        // no path or indexDocument name can start with NUL, so entries never collide with documents
+        static final String PREFIX = "\0collection";
+
+        private final TrigramIndex index;
+        private final CollectionManager collection;
+        // PREFIX, this indexer's generation and '#', so hits left by an earlier collection are told apart
+        private final String prefix;
+        // the id of the entry at each position
+        private final List<Long> ids = new ArrayList<>();
+        // id -> position, built on demand and dropped when a removal shifts positions
+        private Map<Long, Integer> positions;
+        private long nextId;
+
+        CollectionIndexer(TrigramIndex index, CollectionManager collection, int generation) {
+            this.index = index;
+            this.collection = collection;
+            this.prefix = PREFIX + generation + "#";
+        }
+
+        // Stops following the collection and takes its entries out of the index.
+        void detach() {
+            // once removeListener returns no change is being delivered, so nothing is indexed after this
+            collection.removeListener(this);
+            synchronized (this) {
+                for (long id : ids) index.remove(prefix + id);
+                ids.clear();
+                positions = null;
+            }
+        }
+
+        @Override
+        public synchronized void entryAdded(int position, CharSequence content) {
+            long id = nextId++;
+            ids.add(position, id);
+            index.put(prefix + id, content);
+            if (positions != null && position == ids.size() - 1) positions.put(id, position);
+            else positions = null;
+        }
+
+        @Override
+        public synchronized void entryUpdated(int position, CharSequence oldContent, CharSequence newContent) {
+            index.put(prefix + ids.get(position), newContent);
+        }
+
+        @Override
+        public synchronized void entryRemoved(int position, CharSequence content) {
+            index.remove(prefix + ids.remove(position));
+            positions = null;
+        }
+
+        // Renames collection hits to their current positions, dropping those removed since the search
+        // and those of a collection indexed before this one.
+        synchronized List<TrigramIndex.Hit> toPositions(List<TrigramIndex.Hit> hits) {
+            List<TrigramIndex.Hit> result = new ArrayList<>(hits.size());
+            for (TrigramIndex.Hit hit : hits) {
+                if (!hit.document().startsWith(PREFIX)) {
+                    result.add(hit);
+                    continue;
+                }
+                if (!hit.document().startsWith(prefix)) continue;
+                if (positions == null) {
+                    positions = new HashMap<>();
+                    for (int i = 0; i < ids.size(); i++) positions.put(ids.get(i), i);
+                }
+                Integer position = positions.get(Long.parseLong(hit.document().substring(prefix.length())));
+                if (position != null) {
+                    result.add(new TrigramIndex.Hit("collection:" + position, hit.start(), hit.end(), hit.text()));
+                }
+            }
+            return result;
         }
     }
 }
@@ -0,0 +1,7 @@
+package exceptions;
+
+public class RegexTimeoutException extends RuntimeException {
+    public RegexTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package model;
+
+import java.util.List;
+
+// Outcome of a streamed batch run: line counts plus the first few output lines for display.
+public record BatchResult(String outputPath, long linesRead, long linesWritten, List<String> preview) {
+}
@@ -0,0 +1,74 @@
+package model;
+
+import exceptions.RegexTimeoutException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+
+// CharSequence wrapper that aborts a regex match once the calling thread has used up its
+// CPU budget or has been interrupted. java.util.regex reads its input only through
+// charAt(), so checking there bounds even catastrophic backtracking. The budget runs from
+// creation, or from the last restart(), on the thread that reads it.
+public final class DeadlineCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL_MASK = (1 << 12) - 1;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+
+    private final CharSequence text;
+    private long deadline;
+    private final Duration budget;
+    private int reads;
+
+    private DeadlineCharSequence(CharSequence text, Duration budget) {
+        this.text = text;
+        this.budget = budget;
+        this.deadline = now() + budget.toNanos();
+    }
+
+    // The budget counts CPU time of the calling thread where the JVM supports it, wall-clock time otherwise.
+    public static DeadlineCharSequence withBudget(CharSequence text, Duration budget) {
+        return new DeadlineCharSequence(text, budget);
+    }
+
+    // Starts a fresh budget on the calling thread, e.g. before each find() of a lazily consumed match.
+    public void restart() {
+        deadline = now() + budget.toNanos();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if ((++reads & CHECK_INTERVAL_MASK) == 0) {
+            check();
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    private void check() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RegexTimeoutException("Regex matching was interrupted.");
+        }
+        if (now() - deadline > 0) {
+            throw new RegexTimeoutException("Regex matching exceeded its time budget of " + budget.toMillis() + " ms.");
+        }
+    }
+
+    private static long now() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
@@ -0,0 +1,5 @@
+package model;
+
+// A match found while streaming a file; offsets are absolute positions in the file.
+public record FileMatch(long charStart, long charEnd, long byteStart, long byteEnd, String value) {
+}
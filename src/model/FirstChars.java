@@ -0,0 +1,286 @@
+package model;
+
+import java.util.regex.Pattern;
+
+// Conservative set of chars a regex match can start with, worked out from the regex source.
+// Anything the analysis does not understand widens the set to "any char", so a position whose
+// char is outside the set can be skipped without running the pattern.
+final class FirstChars {
+    // inline flags that change what literals, classes or whitespace mean
+    private static final Pattern WIDENING_FLAGS = Pattern.compile("\\(\\?[a-zA-Z-]*[xuUc][a-zA-Z-]*[:)]");
+
+    private final boolean[] ascii = new boolean[128];
+    private boolean nonAscii;
+    private boolean any;
+
+    static FirstChars of(String regex, int flags) {
+        if (flags != 0 || WIDENING_FLAGS.matcher(regex).find()) return anyChar();
+        return new Parser(regex).alternatives(0, regex.length(), false);
+    }
+
+    static FirstChars anyChar() {
+        FirstChars set = new FirstChars();
+        set.any = true;
+        return set;
+    }
+
+    boolean isAny() {
+        return any;
+    }
+
+    boolean contains(char c) {
+        if (any) return true;
+        return c < 128 ? ascii[c] : nonAscii;
+    }
+
+    boolean containsNonAscii() {
+        return any || nonAscii;
+    }
+
+    private void add(char c, boolean caseInsensitive) {
+        if (c >= 128) {
+            nonAscii = true;
+            return;
+        }
+        ascii[c] = true;
+        if (caseInsensitive) {
+            if (c >= 'a' && c <= 'z') ascii[c - 32] = true;
+            if (c >= 'A' && c <= 'Z') ascii[c + 32] = true;
+        }
+    }
+
+    private void addRange(char from, char to, boolean caseInsensitive) {
+        if (to >= 128) nonAscii = true;
+        for (int c = from; c <= Math.min(to, 127); c++) add((char) c, caseInsensitive);
+    }
+
+    private void addAll(FirstChars other) {
+        any |= other.any;
+        nonAscii |= other.nonAscii;
+        for (int c = 0; c < 128; c++) ascii[c] |= other.ascii[c];
+    }
+
+    private static final class Parser {
+        private final String regex;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        // Union over the top-level alternatives of [from, to).
+        FirstChars alternatives(int from, int to, boolean caseInsensitive) {
+            FirstChars result = new FirstChars();
+            int start = from;
+            int depth = 0;
+            int i = from;
+            while (i < to) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i = skipEscape(i, to);
+                    continue;
+                }
+                if (c == '[') {
+                    i = classEnd(i, to);
+                    if (i < 0) return anyChar();
+                    continue;
+                }
+                if (c == '(' && depth == 0 && regex.startsWith("(?i)", i)) {
+                    // an inline flag lasts to the end of the enclosing group, across alternatives
+                    caseInsensitive = true;
+                    i += 4;
+                    continue;
+                }
+                if (c == '(') depth++;
+                else if (c == ')') depth--;
+                else if (c == '|' && depth == 0) {
+                    result.addAll(sequence(start, i, caseInsensitive));
+                    start = i + 1;
+                }
+                i++;
+            }
+            result.addAll(sequence(start, to, caseInsensitive));
+            return result;
+        }
+
+        // First chars of one alternative: skips zero-width prefixes, then reads the first atom.
+        private FirstChars sequence(int from, int to, boolean caseInsensitive) {
+            int i = from;
+            while (i < to) {
+                if (regex.charAt(i) == '^') {
+                    i++;
+                } else if (regex.startsWith("\\b", i) || regex.startsWith("\\B", i)
+                        || regex.startsWith("\\A", i) || regex.startsWith("\\G", i)) {
+                    i += 2;
+                } else if (regex.startsWith("(?i)", i)) {
+                    caseInsensitive = true;
+                    i += 4;
+                } else {
+                    break;
+                }
+            }
+            if (i >= to) return anyChar();
+
+            FirstChars atom = new FirstChars();
+            int end = atom(i, to, caseInsensitive, atom);
+            if (end < 0 || nullable(end, to)) return anyChar();
+            return atom;
+        }
+
+        // Reads the atom at i into set and returns the index after it, or -1 if it is not understood.
+        private int atom(int i, int to, boolean caseInsensitive, FirstChars set) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= to) return -1;
+                    char next = regex.charAt(i + 1);
+                    if (next == 'Q') {
+                        int quoteStart = i + 2;
+                        int quoteEnd = regex.indexOf("\\E", quoteStart);
+                        if (quoteEnd < 0) quoteEnd = to;
+                        if (quoteEnd == quoteStart) return -1;
+                        set.add(regex.charAt(quoteStart), caseInsensitive);
+                        // a quantifier after a longer quote only applies to its last char
+                        return quoteEnd - quoteStart > 1 ? to : Math.min(to, quoteEnd + 2);
+                    }
+                    if (!escape(next, set, caseInsensitive)) return -1;
+                    return i + 2;
+                }
+                case '[' -> {
+                    return charClass(i, to, caseInsensitive, set);
+                }
+                case '(' -> {
+                    int close = groupEnd(i, to);
+                    if (close < 0) return -1;
+                    int contentStart;
+                    boolean groupCaseInsensitive = caseInsensitive;
+                    if (!regex.startsWith("?", i + 1)) {
+                        contentStart = i + 1;
+                    } else if (regex.startsWith("?:", i + 1) || regex.startsWith("?>", i + 1)) {
+                        contentStart = i + 3;
+                    } else if (regex.startsWith("?i:", i + 1)) {
+                        contentStart = i + 4;
+                        groupCaseInsensitive = true;
+                    } else if (regex.startsWith("?<", i + 1) && i + 3 < to && Character.isLetter(regex.charAt(i + 3))) {
+                        contentStart = regex.indexOf('>', i + 3) + 1;
+                        if (contentStart <= 0 || contentStart > close) return -1;
+                    } else {
+                        return -1;
+                    }
+                    set.addAll(alternatives(contentStart, close, groupCaseInsensitive));
+                    return set.any ? -1 : close + 1;
+                }
+                case '.', '$', '|', ')', '*', '+', '?', '{' -> {
+                    return -1;
+                }
+                default -> {
+                    set.add(c, caseInsensitive);
+                    return i + 1;
+                }
+            }
+        }
+
+        private boolean escape(char next, FirstChars set, boolean caseInsensitive) {
+            switch (next) {
+                case 'd' -> set.addRange('0', '9', false);
+                case 'w' -> {
+                    set.addRange('a', 'z', false);
+                    set.addRange('A', 'Z', false);
+                    set.addRange('0', '9', false);
+                    set.add('_', false);
+                }
+                case 's' -> {
+                    for (char c : new char[]{' ', '\t', '\n', 0x0B, '\f', '\r'}) set.add(c, false);
+                }
+                case 't' -> set.add('\t', false);
+                case 'n' -> set.add('\n', false);
+                case 'r' -> set.add('\r', false);
+                case 'f' -> set.add('\f', false);
+                case 'e' -> set.add('\u001B', false);
+                case 'a' -> set.add('\u0007', false);
+                default -> {
+                    // other letters and digits are classes, references or code point escapes
+                    if (Character.isLetterOrDigit(next)) return false;
+                    set.add(next, caseInsensitive);
+                }
+            }
+            return true;
+        }
+
+        // Simple classes only: literals, ranges and \d \w \s; negation, nesting and && give up.
+        private int charClass(int i, int to, boolean caseInsensitive, FirstChars set) {
+            int j = i + 1;
+            if (j >= to || regex.charAt(j) == '^' || regex.charAt(j) == ']') return -1;
+            while (j < to && regex.charAt(j) != ']') {
+                char c = regex.charAt(j);
+                if (c == '[' || regex.startsWith("&&", j)) return -1;
+                if (c == '\\') {
+                    if (j + 1 >= to || !escape(regex.charAt(j + 1), set, caseInsensitive)) return -1;
+                    j += 2;
+                    continue;
+                }
+                if (j + 2 < to && regex.charAt(j + 1) == '-' && regex.charAt(j + 2) != ']') {
+                    char last = regex.charAt(j + 2);
+                    if (last == '\\' || last == '[' || last < c) return -1;
+                    set.addRange(c, last, caseInsensitive);
+                    j += 3;
+                    continue;
+                }
+                set.add(c, caseInsensitive);
+                j++;
+            }
+            return j < to ? j + 1 : -1;
+        }
+
+        // True if the quantifier at i lets the preceding atom match nothing.
+        private boolean nullable(int i, int to) {
+            if (i >= to) return false;
+            char c = regex.charAt(i);
+            return c == '?' || c == '*' || (c == '{' && regex.startsWith("{0", i));
+        }
+
+        private int skipEscape(int i, int to) {
+            if (regex.startsWith("\\Q", i)) {
+                int quoteEnd = regex.indexOf("\\E", i + 2);
+                return quoteEnd < 0 || quoteEnd >= to ? to : quoteEnd + 2;
+            }
+            return Math.min(to, i + 2);
+        }
+
+        private int classEnd(int i, int to) {
+            int depth = 0;
+            int j = i;
+            while (j < to) {
+                char c = regex.charAt(j);
+                if (c == '\\') {
+                    j += 2;
+                    continue;
+                }
+                if (c == '[') depth++;
+                else if (c == ']' && j > i + 1 && --depth == 0) return j + 1;
+                j++;
+            }
+            return -1;
+        }
+
+        private int groupEnd(int i, int to) {
+            int depth = 0;
+            int j = i;
+            while (j < to) {
+                char c = regex.charAt(j);
+                if (c == '\\') {
+                    j = skipEscape(j, to);
+                    continue;
+                }
+                if (c == '[') {
+                    j = classEnd(j, to);
+                    if (j < 0) return -1;
+                    continue;
+                }
+                if (c == '(') depth++;
+                else if (c == ')' && --depth == 0) return j;
+                j++;
+            }
+            return -1;
+        }
+    }
+}
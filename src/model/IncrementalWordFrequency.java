@@ -0,0 +1,97 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Word frequencies kept current under edits. An edit only re-tokenizes the words it
+// touches: their old counts are subtracted and the counts of the new text added back.
+// The text itself is not kept; an edit is described against the caller's text before it
+// (a TextFormatter change filter has exactly that), and appends only need the last word.
+public class IncrementalWordFrequency {
+    private final WordTokenizer tokenizer;
+    private final Map<String, Long> counts = new HashMap<>();
+    private final Map<String, Long> view = Collections.unmodifiableMap(counts);
+    // chars after the last separator, the only part of the text an append can change
+    private final StringBuilder tail = new StringBuilder();
+    private long length;
+
+    public IncrementalWordFrequency() {
+        this(WordTokenizer.forDefaultLocale());
+    }
+
+    public IncrementalWordFrequency(WordTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    public synchronized void setText(CharSequence newText) {
+        counts.clear();
+        tail.setLength(0);
+        length = 0;
+        append(newText);
+    }
+
+    public synchronized void append(CharSequence chunk) {
+        StringBuilder window = new StringBuilder(tail.length() + chunk.length()).append(tail).append(chunk);
+        retokenize(tail, 0, tail.length(), window);
+        length += chunk.length();
+        keepTail(window);
+    }
+
+    // Replaces [start, end) of text, which must be the whole text as it was before this edit.
+    public synchronized void replace(CharSequence text, int start, int end, CharSequence replacement) {
+        if (text.length() != length) {
+            throw new IllegalArgumentException("Edit made against " + text.length() + " chars, but " + length + " are counted");
+        }
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Invalid edit range [" + start + ", " + end + ") for length " + text.length());
+        }
+
+        // widen to the enclosing words; the chars just outside the span are separators
+        // before and after the edit, so nothing beyond it can change
+        int from = start;
+        while (from > 0 && !tokenizer.isSeparator(text.charAt(from - 1))) from--;
+        int to = end;
+        while (to < text.length() && !tokenizer.isSeparator(text.charAt(to))) to++;
+
+        StringBuilder window = new StringBuilder(start - from + replacement.length() + to - end)
+                .append(text, from, start).append(replacement).append(text, end, to);
+        retokenize(text, from, to, window);
+        length += replacement.length() - (end - start);
+        if (to == text.length()) keepTail(window);
+    }
+
+    public synchronized long count(String word) {
+        return counts.getOrDefault(word, 0L);
+    }
+
+    // Live read-only view; synchronize on this object while iterating if other threads edit.
+    public Map<String, Long> getFrequencies() {
+        return view;
+    }
+
+    public synchronized Map<String, Long> snapshot() {
+        return new HashMap<>(counts);
+    }
+
+    public synchronized long length() {
+        return length;
+    }
+
+    private void retokenize(CharSequence before, int from, int to, CharSequence after) {
+        tokenizer.tokenize(before, from, to, (buf, len, hash) -> adjust(new String(buf, 0, len), -1));
+        tokenizer.tokenize(after, 0, after.length(), (buf, len, hash) -> adjust(new String(buf, 0, len), 1));
+    }
+
+    // window ends at the end of the text and starts at a word boundary, so its last word is the text's
+    private void keepTail(CharSequence window) {
+        int i = window.length();
+        while (i > 0 && !tokenizer.isSeparator(window.charAt(i - 1))) i--;
+        tail.setLength(0);
+        tail.append(window, i, window.length());
+    }
+
+    private void adjust(String word, long delta) {
+        counts.merge(word, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+}
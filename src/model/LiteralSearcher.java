@@ -0,0 +1,130 @@
+package model;
+
+import java.util.Arrays;
+
+// Substring search for regexes that are really plain text: no metacharacters apart from escaped
+// ones and \Q..\E quotes, optionally behind a leading (?i). Case-sensitive search uses
+// String.indexOf, which the JIT vectorises; (?i) search is Boyer-Moore-Horspool over ASCII-folded
+// chars, the same folding java.util.regex applies without UNICODE_CASE.
+public final class LiteralSearcher {
+    private static final String METACHARACTERS = "\\^$.|?*+()[{";
+
+    private final String literal;
+    private final boolean caseInsensitive;
+    private final char[] folded;
+    private final int[] shift;
+
+    private LiteralSearcher(String literal, boolean caseInsensitive) {
+        this.literal = literal;
+        this.caseInsensitive = caseInsensitive;
+        if (caseInsensitive) {
+            int m = literal.length();
+            folded = new char[m];
+            for (int i = 0; i < m; i++) folded[i] = fold(literal.charAt(i));
+            // bad-char shifts bucketed on the low byte; a shared bucket keeps the smaller shift
+            shift = new int[256];
+            Arrays.fill(shift, m);
+            for (int i = 0; i < m - 1; i++) shift[folded[i] & 0xFF] = m - 1 - i;
+        } else {
+            folded = null;
+            shift = null;
+        }
+    }
+
+    // Returns null unless regex matches exactly one fixed, non-empty string (modulo ASCII case with (?i)).
+    public static LiteralSearcher forRegex(String regex) {
+        boolean caseInsensitive = regex.startsWith("(?i)");
+        String literal = unescape(regex, caseInsensitive ? 4 : 0);
+        return literal == null || literal.isEmpty() ? null : new LiteralSearcher(literal, caseInsensitive);
+    }
+
+    public String literal() {
+        return literal;
+    }
+
+    public boolean isCaseInsensitive() {
+        return caseInsensitive;
+    }
+
+    public int indexOf(String text, int from) {
+        return caseInsensitive ? indexOfIgnoreCase(text, from) : text.indexOf(literal, from);
+    }
+
+    // replacement is taken verbatim, so callers must only pass one without $ or \ references.
+    public String replaceAll(String text, String replacement) {
+        int i = indexOf(text, 0);
+        if (i < 0) return text;
+
+        int m = literal.length();
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        int last = 0;
+        do {
+            out.append(text, last, i).append(replacement);
+            last = i + m;
+            i = indexOf(text, last);
+        } while (i >= 0);
+        return out.append(text, last, text.length()).toString();
+    }
+
+    private int indexOfIgnoreCase(String text, int from) {
+        int m = folded.length;
+        int last = m - 1;
+        int limit = text.length() - m;
+        int i = Math.max(from, 0);
+        while (i <= limit) {
+            char c = fold(text.charAt(i + last));
+            if (c == folded[last]) {
+                int j = last - 1;
+                while (j >= 0 && fold(text.charAt(i + j)) == folded[j]) j--;
+                if (j < 0) return i;
+            }
+            i += shift[c & 0xFF];
+        }
+        return -1;
+    }
+
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    // The text regex.substring(from) matches literally, or null if it contains anything but literals.
+    private static String unescape(String regex, int from) {
+        StringBuilder literal = new StringBuilder(regex.length() - from);
+        int i = from;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) return null;
+                char next = regex.charAt(i + 1);
+                if (next == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    literal.append(regex, i + 2, end < 0 ? regex.length() : end);
+                    i = end < 0 ? regex.length() : end + 2;
+                    continue;
+                }
+                char escaped = switch (next) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case 'f' -> '\f';
+                    case 'a' -> '\u0007';
+                    case 'e' -> '\u001B';
+                    default -> Character.isLetterOrDigit(next) ? 0 : next;
+                };
+                if (escaped == 0) return null;
+                literal.append(escaped);
+                i += 2;
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        // surrogates are left to the regex engine, which matches them as code points
+        for (int k = 0; k < literal.length(); k++) {
+            if (Character.isSurrogate(literal.charAt(k))) return null;
+        }
+        return literal.toString();
+    }
+}
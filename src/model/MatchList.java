@@ -0,0 +1,50 @@
+package model;
+
+import java.util.Arrays;
+
+// Append-only list of match offsets, 16 bytes per match, for result sets too large to keep as
+// strings. A search thread appends while the UI reads whatever size() it last saw; the text of
+// a match is fetched from the source again only when it is displayed.
+public class MatchList {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private long[][] starts = new long[16][];
+    private long[][] ends = new long[16][];
+    private volatile int size;
+
+    public synchronized void add(long start, long end) {
+        int chunk = size >>> CHUNK_BITS;
+        if (chunk == starts.length) {
+            starts = Arrays.copyOf(starts, chunk * 2);
+            ends = Arrays.copyOf(ends, chunk * 2);
+        }
+        if (starts[chunk] == null) {
+            starts[chunk] = new long[CHUNK_SIZE];
+            ends[chunk] = new long[CHUNK_SIZE];
+        }
+        starts[chunk][size & (CHUNK_SIZE - 1)] = start;
+        ends[chunk][size & (CHUNK_SIZE - 1)] = end;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized long start(int index) {
+        checkIndex(index);
+        return starts[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    public synchronized long end(int index) {
+        checkIndex(index);
+        return ends[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Match " + index + " of " + size);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Extracts matches for several named patterns in one scan over the text.
+// Patterns with an anchor are only run over whitespace-delimited tokens that
+// contain their anchor; patterns without one fall back to a full scan.
+public class MultiPatternExtractor {
+
+    @FunctionalInterface
+    public interface Anchor {
+        boolean test(CharSequence text, int start, int end);
+    }
+
+    // An anchored pattern must never match across whitespace.
+    public record Spec(String name, String regex, Anchor anchor) {
+    }
+
+    public record Match(String patternName, int start, int end, String value) {
+    }
+
+    public static final Anchor AT_SIGN = containsLiteral("@");
+    public static final Anchor HTTP = containsLiteral("http");
+    public static final Anchor DIGIT_SEPARATOR_DIGIT = (text, start, end) -> {
+        for (int i = start + 2; i < end; i++) {
+            char sep = text.charAt(i - 1);
+            if ((sep == '-' || sep == '/' || sep == '.')
+                    && isDigit(text.charAt(i - 2)) && isDigit(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    };
+
+    private final List<Spec> specs;
+    private final Pattern[] patterns;
+
+    public MultiPatternExtractor(List<Spec> specs, PatternCache patternCache) {
+        this.specs = List.copyOf(specs);
+        this.patterns = new Pattern[this.specs.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = patternCache.get(this.specs.get(i).regex());
+        }
+    }
+
+    public static Anchor containsLiteral(String literal) {
+        return (text, start, end) -> {
+            int last = end - literal.length();
+            outer:
+            for (int i = start; i <= last; i++) {
+                for (int j = 0; j < literal.length(); j++) {
+                    if (text.charAt(i + j) != literal.charAt(j)) continue outer;
+                }
+                return true;
+            }
+            return false;
+        };
+    }
+
+    public List<Match> extract(String text) {
+        List<Match> results = new ArrayList<>();
+        Matcher[] matchers = new Matcher[patterns.length];
+        boolean anyAnchored = false;
+        for (int p = 0; p < patterns.length; p++) {
+            matchers[p] = patterns[p].matcher(text).useTransparentBounds(true).useAnchoringBounds(false);
+            if (specs.get(p).anchor() == null) {
+                collect(matchers[p], specs.get(p).name(), 0, text.length(), results);
+            } else {
+                anyAnchored = true;
+            }
+        }
+
+        if (anyAnchored) {
+            int length = text.length();
+            int pos = 0;
+            while (pos < length) {
+                while (pos < length && Character.isWhitespace(text.charAt(pos))) pos++;
+                int tokenStart = pos;
+                while (pos < length && !Character.isWhitespace(text.charAt(pos))) pos++;
+                if (pos == tokenStart) break;
+
+                for (int p = 0; p < patterns.length; p++) {
+                    Anchor anchor = specs.get(p).anchor();
+                    if (anchor != null && anchor.test(text, tokenStart, pos)) {
+                        collect(matchers[p], specs.get(p).name(), tokenStart, pos, results);
+                    }
+                }
+            }
+        }
+
+        results.sort(Comparator.comparingInt(Match::start).thenComparingInt(Match::end));
+        return results;
+    }
+
+    private static void collect(Matcher matcher, String name, int start, int end, List<Match> results) {
+        matcher.region(start, end);
+        while (matcher.find()) {
+            results.add(new Match(name, matcher.start(), matcher.end(), matcher.group()));
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
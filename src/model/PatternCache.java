@@ -0,0 +1,160 @@
+package model;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Bounded LRU cache of compiled patterns, keyed by regex and flags. Each pattern's
+// RegexSafetyAnalyzer warnings are worked out once and kept alongside it.
+public class PatternCache {
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final PatternCache SHARED = new PatternCache(DEFAULT_MAX_SIZE);
+
+    private final int maxSize;
+    private final Map<Key, Entry> patterns;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PatternCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.patterns = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > PatternCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static PatternCache shared() {
+        return SHARED;
+    }
+
+    public Pattern get(String regex) {
+        return get(regex, 0);
+    }
+
+    public Pattern get(String regex, int flags) {
+        return entry(regex, flags, true).pattern;
+    }
+
+    // The regex's safety warnings; an invalid regex is analysed without being cached.
+    public List<String> warnings(String regex) {
+        try {
+            return entry(regex, 0, false).warnings();
+        } catch (PatternSyntaxException e) {
+            return RegexSafetyAnalyzer.analyze(regex);
+        }
+    }
+
+    // The warnings, but only the first time they are asked for while the pattern stays cached,
+    // so a caller that logs them does so once per pattern rather than on every use.
+    public List<String> unreportedWarnings(String regex) {
+        Entry entry;
+        try {
+            entry = entry(regex, 0, false);
+        } catch (PatternSyntaxException e) {
+            // compiling it reports the error
+            return List.of();
+        }
+        return entry.reported.compareAndSet(false, true) ? entry.warnings() : List.of();
+    }
+
+    public void precompile(Collection<String> regexes) {
+        for (String regex : regexes) {
+            get(regex);
+        }
+    }
+
+    public int size() {
+        synchronized (patterns) {
+            return patterns.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public void clear() {
+        synchronized (patterns) {
+            patterns.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PatternCache{size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    // Only get() counts towards the hit and miss statistics. A pattern first compiled for its warnings
+    // is counted as a miss by the get() that follows, as it would have been without the warning lookup.
+    private Entry entry(String regex, int flags, boolean counted) {
+        Key key = new Key(Objects.requireNonNull(regex, "regex"), flags);
+        synchronized (patterns) {
+            Entry cached = patterns.get(key);
+            if (cached != null) {
+                if (counted) (cached.counted.compareAndSet(false, true) ? misses : hits).incrementAndGet();
+                return cached;
+            }
+        }
+        if (counted) misses.incrementAndGet();
+
+        // compile outside the lock so a slow pattern does not block other lookups
+        Entry compiled = new Entry(Pattern.compile(regex, flags), counted);
+        synchronized (patterns) {
+            Entry raced = patterns.putIfAbsent(key, compiled);
+            return raced != null ? raced : compiled;
+        }
+    }
+
+    private record Key(String regex, int flags) {
+    }
+
+    private static final class Entry {
+        final Pattern pattern;
+        // whether a get() has counted this entry yet
+        final AtomicBoolean counted;
+        final AtomicBoolean reported = new AtomicBoolean();
+        // analysed on first request; a race at worst analyses twice
+        private volatile List<String> warnings;
+
+        Entry(Pattern pattern, boolean counted) {
+            this.pattern = pattern;
+            this.counted = new AtomicBoolean(counted);
+        }
+
+        List<String> warnings() {
+            List<String> result = warnings;
+            if (result == null) warnings = result = List.copyOf(RegexSafetyAnalyzer.analyze(pattern.pattern()));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Static check for regex shapes that commonly backtrack exponentially, such as (a+)+,
+// (a|a)* or (a|ab)*. It is a heuristic: a warning means "run this under a time budget",
+// not that the pattern is definitely catastrophic.
+public final class RegexSafetyAnalyzer {
+    private static final int LARGE_REPEAT_COUNT = 10;
+
+    private RegexSafetyAnalyzer() {
+    }
+
+    public static List<String> analyze(String regex) {
+        List<String> warnings = new ArrayList<>();
+        Deque<Group> groups = new ArrayDeque<>();
+        Group current = new Group(0);
+        int length = regex.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    int atomEnd = Math.min(length, i + 2);
+                    current.startAtom(regex.substring(i, atomEnd));
+                    i = atomEnd - 1;
+                }
+                case '[' -> {
+                    int end = classEnd(regex, i);
+                    current.startAtom(regex.substring(i, end));
+                    i = end - 1;
+                }
+                case '(' -> {
+                    groups.push(current);
+                    current = new Group(i);
+                    if (i + 1 < length && regex.charAt(i + 1) == '?') {
+                        // skip group flags such as ?:, ?=, ?<name>
+                        int j = i + 2;
+                        while (j < length && regex.charAt(j) != ':' && regex.charAt(j) != ')'
+                                && regex.charAt(j) != '=' && regex.charAt(j) != '!' && regex.charAt(j) != '>') j++;
+                        i = Math.min(j, length - 1);
+                        if (regex.charAt(i) == ')') i--;
+                    }
+                }
+                case ')' -> {
+                    if (groups.isEmpty()) break;
+                    Group closed = current;
+                    closed.endAlternative();
+                    current = groups.pop();
+                    current.startAtom(regex.substring(closed.start, i + 1));
+                    current.lastAtomGroup = closed;
+                    current.hasUnboundedQuantifier |= closed.hasUnboundedQuantifier;
+                }
+                case '|' -> current.endAlternative();
+                case '*', '+', '{', '?' -> {
+                    int end = c == '{' ? Math.max(i + 1, regex.indexOf('}', i) + 1) : i + 1;
+                    String quantifier = regex.substring(i, end);
+                    boolean unbounded = c == '*' || c == '+' || quantifier.matches("\\{\\d*,}");
+                    if (unbounded || largeCount(quantifier)) {
+                        Group quantified = current.lastAtomGroup;
+                        if (quantified != null && quantified.hasUnboundedQuantifier) {
+                            warnings.add("Nested quantifier at index " + quantified.start + ": "
+                                    + regex.substring(quantified.start, end) + " can backtrack exponentially.");
+                        } else if (quantified != null && quantified.hasOverlappingAlternatives()) {
+                            warnings.add("Repeated alternation with overlapping branches at index " + quantified.start + ": "
+                                    + regex.substring(quantified.start, end) + " can backtrack exponentially.");
+                        }
+                    }
+                    if (unbounded) current.hasUnboundedQuantifier = true;
+                    current.lastAtomGroup = null;
+                    i = end - 1;
+                    // lazy/possessive suffix
+                    if (i + 1 < length && (regex.charAt(i + 1) == '?' || regex.charAt(i + 1) == '+')) i++;
+                }
+                default -> current.startAtom(String.valueOf(c));
+            }
+        }
+        return warnings;
+    }
+
+    // {n} or {n,m} repeating often enough that nested backtracking blows up, e.g. (.*a){20}
+    private static boolean largeCount(String quantifier) {
+        if (!quantifier.matches("\\{\\d{1,9}(,\\d{1,9})?}")) return false;
+        String[] bounds = quantifier.substring(1, quantifier.length() - 1).split(",");
+        return Integer.parseInt(bounds[bounds.length - 1]) >= LARGE_REPEAT_COUNT;
+    }
+
+    private static int classEnd(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') i++;
+        if (i < regex.length() && regex.charAt(i) == ']') i++;
+        int depth = 1;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '[') depth++;
+            else if (c == ']' && --depth == 0) return i + 1;
+        }
+        return regex.length();
+    }
+
+    private static final class Group {
+        final int start;
+        final List<String> alternatives = new ArrayList<>();
+        final StringBuilder alternative = new StringBuilder();
+        boolean hasUnboundedQuantifier;
+        Group lastAtomGroup;
+
+        Group(int start) {
+            this.start = start;
+        }
+
+        void startAtom(String atom) {
+            alternative.append(atom);
+            lastAtomGroup = null;
+        }
+
+        void endAlternative() {
+            alternatives.add(alternative.toString());
+            alternative.setLength(0);
+        }
+
+        // identical branches, or one branch a prefix of another, let the engine split input many ways
+        boolean hasOverlappingAlternatives() {
+            for (int a = 0; a < alternatives.size(); a++) {
+                for (int b = a + 1; b < alternatives.size(); b++) {
+                    String first = alternatives.get(a);
+                    String second = alternatives.get(b);
+                    if (first.isEmpty() || second.isEmpty()) continue;
+                    if (first.startsWith(second) || second.startsWith(first)) return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Many regex -> replacement rules applied in a single pass. Rules are indexed by the chars their
+// matches can start with, so each position only tries the few rules that could match there.
+// Where rules overlap, PRIORITY takes the first rule (in list order) that matches at the leftmost
+// position, like an alternation would; LONGEST takes the longest match there, earlier rules
+// winning ties.
+public final class ReplacementRuleSet {
+
+    public enum Overlap { PRIORITY, LONGEST }
+
+    public record Rule(String regex, String replacement) {
+    }
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final Pattern[] patterns;
+    private final ReplacementTemplate[] templates;
+    private final Overlap overlap;
+    // candidate rules in priority order: per ASCII char, for any other char, and at the end of input
+    private final int[][] asciiRules = new int[128][];
+    private final int[] otherRules;
+    private final int[] endRules;
+
+    private ReplacementRuleSet(Pattern[] patterns, ReplacementTemplate[] templates, Overlap overlap) {
+        this.patterns = patterns;
+        this.templates = templates;
+        this.overlap = overlap;
+
+        FirstChars[] firstChars = new FirstChars[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            firstChars[i] = FirstChars.of(patterns[i].pattern(), patterns[i].flags());
+        }
+        for (char c = 0; c < 128; c++) {
+            char ch = c;
+            asciiRules[c] = select(firstChars, set -> set.contains(ch));
+        }
+        this.otherRules = select(firstChars, FirstChars::containsNonAscii);
+        // a rule with a known first char needs at least one char, so cannot match at the end
+        this.endRules = select(firstChars, FirstChars::isAny);
+    }
+
+    public static ReplacementRuleSet compile(List<Rule> rules, Overlap overlap) {
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("A rule set needs at least one rule");
+        }
+        Pattern[] patterns = new Pattern[rules.size()];
+        ReplacementTemplate[] templates = new ReplacementTemplate[rules.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = Pattern.compile(rules.get(i).regex());
+            templates[i] = ReplacementTemplate.compile(rules.get(i).replacement(), patterns[i]);
+        }
+        return new ReplacementRuleSet(patterns, templates, overlap);
+    }
+
+    // A one-rule set over an already compiled pattern; scans with the pattern's own find().
+    public static ReplacementRuleSet single(Pattern pattern, String replacement) {
+        return new ReplacementRuleSet(new Pattern[]{pattern},
+                new ReplacementTemplate[]{ReplacementTemplate.compile(replacement, pattern)}, Overlap.PRIORITY);
+    }
+
+    public Overlap overlap() {
+        return overlap;
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    public String apply(CharSequence text) {
+        Scan scan = scan(text, 0);
+        if (!scan.find()) return text.toString();
+
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        int last = 0;
+        do {
+            out.append(text, last, scan.start());
+            scan.appendReplacement(out);
+            last = scan.end();
+        } while (scan.find());
+        return out.append(text, last, text.length()).toString();
+    }
+
+    // Matches over text from index from on; chars before it are still visible to lookbehinds, ^ and \b.
+    public Scan scan(CharSequence text, int from) {
+        return new Scan(text, from);
+    }
+
+    public final class Scan {
+        private final CharSequence text;
+        private final Matcher[] matchers;
+        private int next;
+        private Matcher current;
+        private int rule;
+        private int start;
+        private int end;
+        private boolean hitEnd;
+
+        private Scan(CharSequence text, int from) {
+            this.text = text;
+            this.matchers = new Matcher[patterns.length];
+            this.next = from;
+            if (patterns.length == 1) {
+                current = matcher(0).region(from, text.length());
+            }
+        }
+
+        public boolean find() {
+            if (patterns.length == 1) {
+                boolean found = current.find();
+                hitEnd = current.hitEnd();
+                if (found) {
+                    start = current.start();
+                    end = current.end();
+                }
+                return found;
+            }
+
+            int length = text.length();
+            hitEnd = false;
+            for (int pos = next; pos <= length; pos++) {
+                int[] candidates;
+                if (pos == length) {
+                    candidates = endRules;
+                } else {
+                    char c = text.charAt(pos);
+                    candidates = c < 128 ? asciiRules[c] : otherRules;
+                }
+                Matcher best = null;
+                for (int candidate : candidates) {
+                    Matcher matcher = matcher(candidate);
+                    matcher.region(pos, length);
+                    boolean found = matcher.lookingAt();
+                    hitEnd |= matcher.hitEnd();
+                    if (found && (best == null || matcher.end() > best.end())) {
+                        best = matcher;
+                        rule = candidate;
+                        if (overlap == Overlap.PRIORITY) break;
+                    }
+                }
+                if (best != null) {
+                    current = best;
+                    start = pos;
+                    end = best.end();
+                    // as with Matcher.find(), an empty match moves the next search on by one char
+                    next = end == start ? end + 1 : end;
+                    return true;
+                }
+            }
+            next = length + 1;
+            return false;
+        }
+
+        public int start() {
+            return start;
+        }
+
+        public int end() {
+            return end;
+        }
+
+        public int rule() {
+            return rule;
+        }
+
+        // True when more input could have changed the last find(), as with Matcher.hitEnd().
+        public boolean hitEnd() {
+            return hitEnd;
+        }
+
+        public void appendReplacement(StringBuilder out) {
+            templates[rule].appendTo(out, current);
+        }
+
+        private Matcher matcher(int i) {
+            if (matchers[i] == null) {
+                matchers[i] = patterns[i].matcher(text)
+                        .useTransparentBounds(true)
+                        .useAnchoringBounds(false);
+            }
+            return matchers[i];
+        }
+    }
+
+    private static int[] select(FirstChars[] firstChars, Predicate<FirstChars> test) {
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < firstChars.length; i++) {
+            if (test.test(firstChars[i])) selected.add(i);
+        }
+        return selected.isEmpty() ? NO_RULES : selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+// A replacement string parsed once against its pattern, with the same $n, ${name} and \x
+// rules as Matcher.appendReplacement, so it can be expanded without a Matcher owning the output.
+public final class ReplacementTemplate {
+    private static final int LITERAL = -1;
+
+    private final String[] literals;
+    private final int[] groups;
+
+    private ReplacementTemplate(String[] literals, int[] groups) {
+        this.literals = literals;
+        this.groups = groups;
+    }
+
+    public static ReplacementTemplate compile(String replacement, Pattern pattern) {
+        int groupCount = pattern.matcher("").groupCount();
+        Map<String, Integer> namedGroups = pattern.namedGroups();
+        List<String> literals = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int cursor = 0;
+        while (cursor < replacement.length()) {
+            char c = replacement.charAt(cursor++);
+            if (c == '\\') {
+                if (cursor == replacement.length()) {
+                    throw new IllegalArgumentException("character to be escaped is missing");
+                }
+                literal.append(replacement.charAt(cursor++));
+            } else if (c == '$') {
+                if (cursor == replacement.length()) {
+                    throw new IllegalArgumentException("Illegal group reference: group index is missing");
+                }
+                int group;
+                if (replacement.charAt(cursor) == '{') {
+                    int close = replacement.indexOf('}', ++cursor);
+                    if (close < 0) {
+                        throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+                    }
+                    String name = replacement.substring(cursor, close);
+                    if (name.isEmpty()) {
+                        throw new IllegalArgumentException("named capturing group has 0 length name");
+                    }
+                    Integer index = namedGroups.get(name);
+                    if (index == null) {
+                        throw new IllegalArgumentException("No group with name {" + name + "}");
+                    }
+                    group = index;
+                    cursor = close + 1;
+                } else {
+                    // digits are consumed greedily while the number is still a valid group
+                    group = replacement.charAt(cursor) - '0';
+                    if (group < 0 || group > 9) {
+                        throw new IllegalArgumentException("Illegal group reference");
+                    }
+                    cursor++;
+                    while (cursor < replacement.length()) {
+                        int digit = replacement.charAt(cursor) - '0';
+                        if (digit < 0 || digit > 9 || group * 10 + digit > groupCount) break;
+                        group = group * 10 + digit;
+                        cursor++;
+                    }
+                    if (group > groupCount) {
+                        throw new IndexOutOfBoundsException("No group " + group);
+                    }
+                }
+                if (!literal.isEmpty()) {
+                    literals.add(literal.toString());
+                    groups.add(LITERAL);
+                    literal.setLength(0);
+                }
+                literals.add(null);
+                groups.add(group);
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!literal.isEmpty()) {
+            literals.add(literal.toString());
+            groups.add(LITERAL);
+        }
+        return new ReplacementTemplate(literals.toArray(String[]::new), groups.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // True when the replacement has no group references, i.e. expands to the same text every time.
+    public boolean isLiteral() {
+        for (int group : groups) {
+            if (group != LITERAL) return false;
+        }
+        return true;
+    }
+
+    public void appendTo(StringBuilder out, MatchResult match) {
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] == LITERAL) {
+                out.append(literals[i]);
+            } else {
+                String value = match.group(groups[i]);
+                if (value != null) out.append(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Space-Saving heavy-hitter sketch (Metwally et al.). Tracks at most `capacity` words;
+// any word's estimate overshoots its true count by at most totalCount() / capacity.
+// Sketches built over separate chunks or files can be merged; a merge of sketches with
+// different capacities is bounded by the sum of their bounds instead.
+public class SpaceSavingSketch {
+    private final int capacity;
+    private final String[] words;
+    private final int[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    // min-heap of slots ordered by count, plus each slot's position in it
+    private final int[] heap;
+    private final int[] heapPos;
+    // linear-probing index from word to slot+1
+    private final int[] index;
+    private int size;
+    private long total;
+    // count a word dropped by a merge may have had, so it stands in for untracked words even before the sketch fills
+    private long floor;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Sketch capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        words = new String[capacity];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        heap = new int[capacity];
+        heapPos = new int[capacity];
+        index = new int[Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1];
+    }
+
+    public static SpaceSavingSketch forErrorRate(double epsilon) {
+        return new SpaceSavingSketch((int) Math.ceil(1.0 / epsilon));
+    }
+
+    public void offer(String word) {
+        offer(word, 1);
+    }
+
+    public void offer(String word, long count) {
+        int hash = word.hashCode();
+        int slot = find(word, hash);
+        if (slot >= 0) {
+            increase(slot, count);
+        } else {
+            insertOrReplace(word, hash, count, 0);
+        }
+    }
+
+    // Allocation-free path for WordTokenizer: a String is created only when a word enters the sketch.
+    public void offer(char[] buf, int len, int hash) {
+        int mask = index.length - 1;
+        for (int i = spread(hash) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if (hashes[slot] == hash && sameChars(words[slot], buf, len)) {
+                increase(slot, 1);
+                return;
+            }
+        }
+        insertOrReplace(new String(buf, 0, len), hash, 1, 0);
+    }
+
+    public long estimate(String word) {
+        int slot = find(word, word.hashCode());
+        return slot >= 0 ? counts[slot] : minCount();
+    }
+
+    public List<WordEstimate> topK(int k) {
+        List<WordEstimate> result = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            result.add(new WordEstimate(words[slot], counts[slot], errors[slot]));
+        }
+        result.sort(Comparator.comparingLong(WordEstimate::count).reversed()
+                .thenComparing(WordEstimate::word));
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    // Upper bound on how far any estimate can exceed the true count.
+    public long errorBound() {
+        return minCount();
+    }
+
+    public long totalCount() {
+        return total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Merged sketch over both inputs (Agarwal et al., "Mergeable Summaries").
+    public SpaceSavingSketch merge(SpaceSavingSketch other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+        Map<String, long[]> combined = new HashMap<>((size + other.size) * 2);
+        for (int slot = 0; slot < size; slot++) {
+            combined.put(words[slot], new long[]{counts[slot] + otherMin, errors[slot] + otherMin});
+        }
+        for (int slot = 0; slot < other.size; slot++) {
+            long[] entry = combined.get(other.words[slot]);
+            if (entry == null) {
+                combined.put(other.words[slot], new long[]{other.counts[slot] + thisMin, other.errors[slot] + thisMin});
+            } else {
+                // drop the placeholder min that assumed the word was missing from the other sketch
+                entry[0] += other.counts[slot] - otherMin;
+                entry[1] += other.errors[slot] - otherMin;
+            }
+        }
+
+        int mergedCapacity = Math.max(capacity, other.capacity);
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(combined.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+
+        SpaceSavingSketch merged = new SpaceSavingSketch(mergedCapacity);
+        for (int i = 0; i < entries.size() && i < mergedCapacity; i++) {
+            Map.Entry<String, long[]> entry = entries.get(i);
+            merged.insertOrReplace(entry.getKey(), entry.getKey().hashCode(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        merged.total = total + other.total;
+        merged.floor = thisMin + otherMin;
+        return merged;
+    }
+
+    private long minCount() {
+        return size < capacity ? floor : counts[heap[0]];
+    }
+
+    private int find(String word, int hash) {
+        int mask = index.length - 1;
+        for (int i = spread(hash) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if (hashes[slot] == hash && words[slot].equals(word)) return slot;
+        }
+        return -1;
+    }
+
+    private void increase(int slot, long count) {
+        counts[slot] += count;
+        total += count;
+        siftDown(heapPos[slot]);
+    }
+
+    private void insertOrReplace(String word, int hash, long count, long error) {
+        int slot;
+        if (size < capacity) {
+            slot = size++;
+            heap[slot] = slot;
+            heapPos[slot] = slot;
+            counts[slot] = 0;
+            errors[slot] = 0;
+            // the word may be one a merge dropped, so it inherits the floor like it would an evicted count
+            error += floor;
+            count += floor;
+            total -= floor;
+        } else {
+            // evict the current minimum; the newcomer inherits its count as error
+            slot = heap[0];
+            unindex(slot);
+            error += counts[slot];
+            count += counts[slot];
+            total -= counts[slot];
+            counts[slot] = 0;
+        }
+        words[slot] = word;
+        hashes[slot] = hash;
+        errors[slot] = error;
+        indexSlot(slot);
+        total += count;
+        counts[slot] = count;
+        siftUp(heapPos[slot]);
+        siftDown(heapPos[slot]);
+    }
+
+    private void indexSlot(int slot) {
+        int mask = index.length - 1;
+        int i = spread(hashes[slot]) & mask;
+        while (index[i] != 0) i = (i + 1) & mask;
+        index[i] = slot + 1;
+    }
+
+    // linear-probing delete with backward shift, so no tombstones accumulate
+    private void unindex(int slot) {
+        int mask = index.length - 1;
+        int i = spread(hashes[slot]) & mask;
+        while (index[i] != slot + 1) i = (i + 1) & mask;
+        int hole = i;
+        for (int j = (hole + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+            int home = spread(hashes[index[j] - 1]) & mask;
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                index[hole] = index[j];
+                hole = j;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private void siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[heap[pos]]) break;
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int pos) {
+        while (true) {
+            int left = 2 * pos + 1;
+            if (left >= size) return;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && counts[heap[right]] < counts[heap[left]]) smallest = right;
+            if (counts[heap[pos]] <= counts[heap[smallest]]) return;
+            swap(pos, smallest);
+            pos = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int slotA = heap[a];
+        int slotB = heap[b];
+        heap[a] = slotB;
+        heap[b] = slotA;
+        heapPos[slotB] = a;
+        heapPos[slotA] = b;
+    }
+
+    private static boolean sameChars(String word, char[] buf, int len) {
+        if (word.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (word.charAt(i) != buf[i]) return false;
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,11 +1,125 @@
 package model;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.regex.Matcher;
+
+// Immutable text kept as a balanced tree of string slices (a rope). An edit returns a new
+// TextManager that shares every untouched slice with the old one, so insert, delete and
+// replace cost O(log n) plus the inserted text rather than a copy of the whole content.
+// As a CharSequence it can be handed straight to java.util.regex. The hash is the content's
+// String.hashCode(), kept per tree node so an edit only rehashes the slices it cut.
+public class TextManager implements CharSequence {
+    // longer slices are cut up before an edit, so splitting one never rehashes more than this
+    private static final int MAX_LEAF = 4096;
+    // neighbouring leaves shorter than this together are copied into one instead of growing the tree
+    private static final int MERGE_LEAF = 256;
 
-public class TextManager {
-    private String content;
+    private final Node root;
+    // last leaf charAt() landed in; regex matching reads mostly sequentially
+    private Cursor cursor;
 
+    // Until the first edit the whole string is one leaf, so toString() hands it back without a copy.
     public TextManager(String content) {
-        this.content = content;
+        this(Leaf.of(Objects.requireNonNull(content, "content must not be null"), 0, content.length()));
+    }
+
+    private TextManager(Node root) {
+        this.root = root;
+    }
+
+    public String getContent() {
+        return toString();
+    }
+
+    public TextManager insert(int index, CharSequence text) {
+        return replace(index, index, text);
+    }
+
+    public TextManager delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    public TextManager append(CharSequence text) {
+        return replace(length(), length(), text);
+    }
+
+    public TextManager replace(int start, int end, CharSequence text) {
+        checkRange(start, end);
+        Splicer splicer = new Splicer(editable());
+        splicer.keep(0, start);
+        splicer.add(text);
+        splicer.keep(end, root.length);
+        return new TextManager(splicer.finish());
+    }
+
+    // Replaces every match of a matcher reading this text (directly or through a wrapper with the
+    // same offsets). Only the matched spans are rebuilt; the text between them is shared.
+    public TextManager replaceMatches(Matcher matcher, ReplacementTemplate replacement) {
+        matcher.reset();
+        if (!matcher.find()) return this;
+        Splicer splicer = new Splicer(editable());
+        StringBuilder expanded = new StringBuilder();
+        int last = 0;
+        do {
+            splicer.keep(last, matcher.start());
+            expanded.setLength(0);
+            replacement.appendTo(expanded, matcher);
+            splicer.add(expanded);
+            last = matcher.end();
+        } while (matcher.find());
+        splicer.keep(last, root.length);
+        return new TextManager(splicer.finish());
+    }
+
+    @Override
+    public int length() {
+        return root.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Cursor at = cursor;
+        if (at != null && index >= at.start && index < at.start + at.leaf.length) {
+            return at.leaf.base.charAt(at.leaf.offset + index - at.start);
+        }
+        if (index < 0 || index >= root.length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + root.length);
+        }
+        Node node = root;
+        int start = 0;
+        while (node instanceof Concat concat) {
+            if (index - start < concat.left.length) {
+                node = concat.left;
+            } else {
+                start += concat.left.length;
+                node = concat.right;
+            }
+        }
+        Leaf leaf = (Leaf) node;
+        cursor = new Cursor(leaf, start);
+        return leaf.base.charAt(leaf.offset + index - start);
+    }
+
+    @Override
+    public TextManager subSequence(int start, int end) {
+        checkRange(start, end);
+        // regex group() lands here, so an unedited text is sliced rather than cut up
+        if (root instanceof Leaf leaf) return new TextManager(Leaf.of(leaf.base, leaf.offset + start, leaf.offset + end));
+        Splicer splicer = new Splicer(root);
+        splicer.keep(start, end);
+        return new TextManager(splicer.finish());
+    }
+
+    @Override
+    public String toString() {
+        if (root instanceof Leaf leaf && leaf.offset == 0 && leaf.length == leaf.base.length()) {
+            return leaf.base;
+        }
+        StringBuilder text = new StringBuilder(root.length);
+        appendTo(text, root, 0, root.length);
+        return text.toString();
     }
 
     @Override
@@ -13,16 +127,244 @@ public class TextManager {
         if (this == o) return true;
         if (!(o instanceof TextManager)) return false;
         TextManager text = (TextManager) o;
-        return Objects.equals(content, text.content);
+        return root.length == text.root.length && root.hash == text.root.hash && sameContent(root, text.root);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(content);
+        return root.hash;
     }
 
-    @Override
-    public String toString() {
-        return content;
+    // The tree edits start from: a single long leaf is cut into MAX_LEAF pieces first.
+    private Node editable() {
+        if (root instanceof Leaf leaf && leaf.length > MAX_LEAF) {
+            return build(leaf.base, leaf.offset, leaf.offset + leaf.length);
+        }
+        return root;
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > root.length || start > end) {
+            throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + root.length);
+        }
+    }
+
+    private abstract static sealed class Node permits Leaf, Concat {
+        final int length;
+        final int depth;
+        // String.hashCode() of the node's text, and 31^length, which is what combining two hashes needs
+        final int hash;
+        final int power;
+
+        Node(int length, int depth, int hash, int power) {
+            this.length = length;
+            this.depth = depth;
+            this.hash = hash;
+            this.power = power;
+        }
+    }
+
+    // A slice of a shared string; slicing never copies characters.
+    private static final class Leaf extends Node {
+        static final Leaf EMPTY = new Leaf("", 0, 0, 0);
+
+        final String base;
+        final int offset;
+
+        private Leaf(String base, int offset, int length, int hash) {
+            super(length, 0, hash, power(length));
+            this.base = base;
+            this.offset = offset;
+        }
+
+        static Leaf of(String base, int start, int end) {
+            if (start == 0 && end == base.length()) {
+                return new Leaf(base, 0, end, base.hashCode());
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + base.charAt(i);
+            }
+            return new Leaf(base, start, end - start, hash);
+        }
+    }
+
+    private static final class Concat extends Node {
+        final Node left;
+        final Node right;
+
+        Concat(Node left, Node right) {
+            super(left.length + right.length, Math.max(left.depth, right.depth) + 1,
+                    left.hash * right.power + right.hash, left.power * right.power);
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private record Cursor(Leaf leaf, int start) {
+    }
+
+    // Builds a tree left to right: long stretches of the old tree are shared, short pieces and
+    // new text are collected and stored as fresh leaves, so dense replacements stay compact.
+    private static final class Splicer {
+        private final Node source;
+        private final StringBuilder pending = new StringBuilder();
+        private Node result = Leaf.EMPTY;
+
+        Splicer(Node source) {
+            this.source = source;
+        }
+
+        void keep(int start, int end) {
+            if (end - start < MERGE_LEAF) {
+                appendTo(pending, source, start, end);
+                if (pending.length() >= MAX_LEAF) flush();
+            } else {
+                flush();
+                result = join(result, slice(source, start, end));
+            }
+        }
+
+        void add(CharSequence text) {
+            pending.append(text);
+            if (pending.length() >= MAX_LEAF) flush();
+        }
+
+        Node finish() {
+            flush();
+            return result;
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) return;
+            result = join(result, build(pending.toString()));
+            pending.setLength(0);
+        }
+    }
+
+    private static Node build(String text) {
+        return build(text, 0, text.length());
+    }
+
+    private static Node build(String text, int start, int end) {
+        if (end - start <= MAX_LEAF) return Leaf.of(text, start, end);
+        int mid = (start + end) >>> 1;
+        // keep surrogate pairs in one leaf
+        if (Character.isLowSurrogate(text.charAt(mid))) mid++;
+        return new Concat(build(text, start, mid), build(text, mid, end));
+    }
+
+    private static Node slice(Node node, int start, int end) {
+        if (start == 0 && end == node.length) return node;
+        if (start == end) return Leaf.EMPTY;
+        if (node instanceof Leaf leaf) {
+            return Leaf.of(leaf.base, leaf.offset + start, leaf.offset + end);
+        }
+        Concat concat = (Concat) node;
+        int split = concat.left.length;
+        if (end <= split) return slice(concat.left, start, end);
+        if (start >= split) return slice(concat.right, start - split, end - split);
+        return join(slice(concat.left, start, split), slice(concat.right, 0, end - split));
+    }
+
+    // Concatenation that keeps sibling depths within one of each other (AVL), so depth stays O(log n).
+    private static Node join(Node left, Node right) {
+        if (left.length == 0) return right;
+        if (right.length == 0) return left;
+        if (left instanceof Leaf && right instanceof Leaf && left.length + right.length <= MERGE_LEAF) {
+            StringBuilder text = new StringBuilder(left.length + right.length);
+            appendTo(text, left, 0, left.length);
+            appendTo(text, right, 0, right.length);
+            return Leaf.of(text.toString(), 0, text.length());
+        }
+        if (left.depth > right.depth + 1) {
+            Concat concat = (Concat) left;
+            return balance(concat.left, join(concat.right, right));
+        }
+        if (right.depth > left.depth + 1) {
+            Concat concat = (Concat) right;
+            return balance(join(left, concat.left), concat.right);
+        }
+        return new Concat(left, right);
+    }
+
+    private static Node balance(Node left, Node right) {
+        if (left.depth > right.depth + 1) {
+            Concat concat = (Concat) left;
+            if (concat.left.depth >= concat.right.depth) {
+                return new Concat(concat.left, new Concat(concat.right, right));
+            }
+            Concat inner = (Concat) concat.right;
+            return new Concat(new Concat(concat.left, inner.left), new Concat(inner.right, right));
+        }
+        if (right.depth > left.depth + 1) {
+            Concat concat = (Concat) right;
+            if (concat.right.depth >= concat.left.depth) {
+                return new Concat(new Concat(left, concat.left), concat.right);
+            }
+            Concat inner = (Concat) concat.left;
+            return new Concat(new Concat(left, inner.left), new Concat(inner.right, concat.right));
+        }
+        return new Concat(left, right);
+    }
+
+    private static void appendTo(StringBuilder out, Node node, int start, int end) {
+        if (start >= end) return;
+        if (node instanceof Leaf leaf) {
+            out.append(leaf.base, leaf.offset + start, leaf.offset + end);
+            return;
+        }
+        Concat concat = (Concat) node;
+        int split = concat.left.length;
+        if (start < split) appendTo(out, concat.left, start, Math.min(end, split));
+        if (end > split) appendTo(out, concat.right, Math.max(0, start - split), end - split);
+    }
+
+    private static boolean sameContent(Node a, Node b) {
+        List<Leaf> left = leaves(a, new ArrayList<>());
+        List<Leaf> right = leaves(b, new ArrayList<>());
+        int i = 0;
+        int j = 0;
+        int inLeft = 0;
+        int inRight = 0;
+        while (i < left.size() && j < right.size()) {
+            Leaf x = left.get(i);
+            Leaf y = right.get(j);
+            int n = Math.min(x.length - inLeft, y.length - inRight);
+            if (!x.base.regionMatches(x.offset + inLeft, y.base, y.offset + inRight, n)) return false;
+            inLeft += n;
+            inRight += n;
+            if (inLeft == x.length) {
+                i++;
+                inLeft = 0;
+            }
+            if (inRight == y.length) {
+                j++;
+                inRight = 0;
+            }
+        }
+        return true;
+    }
+
+    private static List<Leaf> leaves(Node node, List<Leaf> out) {
+        if (node instanceof Concat concat) {
+            leaves(concat.left, out);
+            leaves(concat.right, out);
+        } else if (node.length > 0) {
+            out.add((Leaf) node);
+        }
+        return out;
+    }
+
+    // 31^n with int overflow, the multiplier String.hashCode() gives a prefix followed by n chars
+    private static int power(int n) {
+        int result = 1;
+        int base = 31;
+        while (n > 0) {
+            if ((n & 1) != 0) result *= base;
+            base *= base;
+            n >>= 1;
+        }
+        return result;
     }
 }
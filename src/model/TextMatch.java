@@ -0,0 +1,85 @@
+package model;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+// One regex match as offsets into the searched text. No substring is made until group() is
+// called, so streaming or counting matches costs one small object per match at most.
+public final class TextMatch implements MatchResult {
+    private final CharSequence text;
+    private final int start;
+    private final int end;
+    // start and end of groups 1..n, in pairs; null when the pattern has no groups
+    private final int[] groups;
+
+    TextMatch(CharSequence text, int start, int end, int[] groups) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        this.groups = groups;
+    }
+
+    // Captures the matcher's current match; text is what group() reads from later.
+    static TextMatch of(CharSequence text, Matcher matcher) {
+        int count = matcher.groupCount();
+        int[] groups = null;
+        if (count > 0) {
+            groups = new int[count * 2];
+            for (int g = 1; g <= count; g++) {
+                groups[2 * g - 2] = matcher.start(g);
+                groups[2 * g - 1] = matcher.end(g);
+            }
+        }
+        return new TextMatch(text, matcher.start(), matcher.end(), groups);
+    }
+
+    @Override
+    public int start() {
+        return start;
+    }
+
+    @Override
+    public int end() {
+        return end;
+    }
+
+    @Override
+    public String group() {
+        return text.subSequence(start, end).toString();
+    }
+
+    @Override
+    public int groupCount() {
+        return groups == null ? 0 : groups.length / 2;
+    }
+
+    @Override
+    public int start(int group) {
+        checkGroup(group);
+        return group == 0 ? start : groups[2 * group - 2];
+    }
+
+    @Override
+    public int end(int group) {
+        checkGroup(group);
+        return group == 0 ? end : groups[2 * group - 1];
+    }
+
+    // null when the group did not take part in the match, as with Matcher.group(int)
+    @Override
+    public String group(int group) {
+        int from = start(group);
+        return from < 0 ? null : text.subSequence(from, end(group)).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "TextMatch[" + start + ", " + end + ")";
+    }
+
+    private void checkGroup(int group) {
+        if (group < 0 || group > groupCount()) {
+            throw new IndexOutOfBoundsException("No group " + group);
+        }
+    }
+}
@@ -1,28 +1,191 @@
 package model;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.regex.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.*;
 
 public class TextProcessor {
+    private final PatternCache patternCache;
+    private final WordFrequencyEngine wordFrequencyEngine = new WordFrequencyEngine();
+    private volatile Duration regexBudget;
+
+    public TextProcessor() {
+        this(PatternCache.shared());
+    }
+
+    public TextProcessor(PatternCache patternCache) {
+        this.patternCache = patternCache;
+    }
+
+    public PatternCache getPatternCache() {
+        return patternCache;
+    }
+
+    // When set, search and replace abort with RegexTimeoutException once a call (for a match stream,
+    // a single find) uses up this much CPU time.
+    public void setRegexBudget(Duration regexBudget) {
+        this.regexBudget = regexBudget;
+    }
+
+    public Duration getRegexBudget() {
+        return regexBudget;
+    }
+
     public List<String> search(String text, String regex) {
-        List<String> matches = new ArrayList<>();
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(text);
-        while (matcher.find()) {
-            matches.add(matcher.group());
+        return search(text, regex, Integer.MAX_VALUE);
+    }
+
+    // The first limit matches; the text after the last one is never scanned.
+    public List<String> search(String text, String regex, int limit) {
+        LiteralSearcher literal = LiteralSearcher.forRegex(regex);
+        // every case-sensitive literal match is the same string, so it is shared rather than copied
+        Function<TextMatch, String> value = literal != null && !literal.isCaseInsensitive()
+                ? match -> literal.literal() : TextMatch::group;
+        return matches(text, regex, literal).limit(limit).map(value).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Lazy, in order: each match is found only when the stream asks for it, and carries offsets
+    // and group positions rather than substrings. A RegexTimeoutException surfaces while consuming.
+    public Stream<TextMatch> matches(CharSequence text, String regex) {
+        return matches(text, regex, LiteralSearcher.forRegex(regex));
+    }
+
+    public long count(CharSequence text, String regex) {
+        LiteralSearcher literal = LiteralSearcher.forRegex(regex);
+        long count = 0;
+        if (literal != null && text instanceof String string) {
+            int m = literal.literal().length();
+            for (int i = literal.indexOf(string, 0); i >= 0; i = literal.indexOf(string, i + m)) count++;
+            return count;
         }
-        return matches;
+        Matcher matcher = patternCache.get(regex).matcher(guard(text));
+        while (matcher.find()) count++;
+        return count;
     }
 
     public String replace(String text, String regex, String replacement) {
-        return text.replaceAll(regex, replacement);
+        // plain-text pattern and a replacement without $ or \ references: no regex work needed
+        LiteralSearcher literal = LiteralSearcher.forRegex(regex);
+        if (literal != null && replacement != null && replacement.indexOf('$') < 0 && replacement.indexOf('\\') < 0) {
+            return literal.replaceAll(text, replacement);
+        }
+        return patternCache.get(regex).matcher(guard(text)).replaceAll(replacement);
+    }
+
+    // Same result as replace() on the String, but the text between matches is shared with the input, not copied.
+    public TextManager replaceInText(TextManager text, String regex, String replacement) {
+        Pattern pattern = patternCache.get(regex);
+        return text.replaceMatches(pattern.matcher(guard(text)), ReplacementTemplate.compile(replacement, pattern));
+    }
+
+    // Applies every rule in one pass over the text rather than one replaceAll per rule.
+    public String applyRules(String text, ReplacementRuleSet rules) {
+        return rules.apply(guard(text));
+    }
+
+    // Verifies regex only against the indexed documents that contain its required literals.
+    public List<TrigramIndex.Hit> searchIndexed(TrigramIndex index, String regex) {
+        Pattern pattern = patternCache.get(regex);
+        List<TrigramIndex.Hit> hits = new ArrayList<>();
+        for (TrigramIndex.Document document : index.candidates(pattern)) {
+            Matcher matcher = pattern.matcher(guard(document.text()));
+            while (matcher.find()) {
+                hits.add(new TrigramIndex.Hit(document.name(), matcher.start(), matcher.end(), matcher.group()));
+            }
+        }
+        return hits;
+    }
+
+    public List<MultiPatternExtractor.Match> extractAll(String text, List<MultiPatternExtractor.Spec> specs) {
+        return new MultiPatternExtractor(specs, patternCache).extract(text);
     }
 
     public Map<String, Long> analyzeWordFrequency(String text) {
-        return Arrays.stream(text.toLowerCase().split("\\W+"))
-                .filter(word -> word.matches("[a-zA-Z]+"))  // Removed non-alphabetic values
-                .parallel()
-                .collect(Collectors.groupingBy(w -> w, Collectors.counting()));
+        return wordFrequencyEngine.analyze(text);
+    }
+
+    public SpaceSavingSketch sketchWordFrequency(String text, int capacity) {
+        return wordFrequencyEngine.sketch(text, capacity);
+    }
+
+    public List<WordEstimate> topWords(String text, int k, int capacity) {
+        return sketchWordFrequency(text, Math.max(k, capacity)).topK(k);
+    }
+
+    private Stream<TextMatch> matches(CharSequence text, String regex, LiteralSearcher literal) {
+        if (literal != null && text instanceof String string) {
+            return StreamSupport.stream(new MatchSpliterator(string, literal), false);
+        }
+        CharSequence input = guard(text);
+        return StreamSupport.stream(new MatchSpliterator(text, patternCache.get(regex).matcher(input),
+                input instanceof DeadlineCharSequence deadline ? deadline : null), false);
+    }
+
+    // Finds one match per tryAdvance(), so a stream that stops early leaves the rest of the text alone.
+    // The stream may be consumed later and on another thread, so each find() gets its own budget,
+    // measured on the thread running it; time the consumer spends on a match does not count.
+    private static final class MatchSpliterator implements Spliterator<TextMatch> {
+        private final CharSequence text;
+        private final Matcher matcher;
+        private final DeadlineCharSequence deadline;
+        private final LiteralSearcher literal;
+        private int from;
+
+        MatchSpliterator(CharSequence text, Matcher matcher, DeadlineCharSequence deadline) {
+            this.text = text;
+            this.matcher = matcher;
+            this.deadline = deadline;
+            this.literal = null;
+        }
+
+        MatchSpliterator(String text, LiteralSearcher literal) {
+            this.text = text;
+            this.matcher = null;
+            this.deadline = null;
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TextMatch> action) {
+            if (matcher != null) {
+                if (deadline != null) deadline.restart();
+                if (!matcher.find()) return false;
+                action.accept(TextMatch.of(text, matcher));
+                return true;
+            }
+            if (from < 0) return false;
+            int start = literal.indexOf((String) text, from);
+            if (start < 0) {
+                from = -1;
+                return false;
+            }
+            from = start + literal.literal().length();
+            action.accept(new TextMatch(text, start, from, null));
+            return true;
+        }
+
+        @Override
+        public Spliterator<TextMatch> trySplit() {
+            // matches depend on where the previous one ended, so the text cannot be split up front
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    private CharSequence guard(CharSequence text) {
+        Duration budget = regexBudget;
+        return budget == null ? text : DeadlineCharSequence.withBudget(text, budget);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,772 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// In-memory inverted index over named documents: sorted document-id postings per case-folded
+// trigram and per ASCII word. A query regex is reduced to the literals every match must contain,
+// and only documents holding all of them are handed back for the real matcher to verify.
+// Anything the reduction does not understand just asks for fewer literals, so it never drops a
+// document that could match. Removed documents stay in the postings until they outnumber the live
+// ones, at which point the postings are rebuilt, so an update only costs indexing the new text.
+public final class TrigramIndex {
+
+    public record Document(String name, CharSequence text) {
+    }
+
+    public record Hit(String document, int start, int end, String text) {
+    }
+
+    public record Stats(int documents, int trigrams, int words, long postings, long indexBytes, long textBytes) {
+    }
+
+    // longer tokens are not indexed as words; queries for them fall back to trigrams
+    private static final int MAX_WORD_LENGTH = 64;
+    // inline flags that make literals mean something else (comments, canonical equivalence)
+    private static final Pattern OPAQUE_FLAGS = Pattern.compile("\\(\\?[a-zA-Z-]*[xc][a-zA-Z-]*[:)]");
+    private static final Pattern INLINE_CASE_FLAG = Pattern.compile("\\(\\?[a-zA-Z]*i");
+
+    private LongMap<Postings> trigrams = new LongMap<>();
+    private Map<String, Postings> words = new HashMap<>();
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    // in id order, which is the order documents were (last) put
+    private final Map<Integer, Document> documents = new LinkedHashMap<>();
+    private int nextId;
+    private int removedIds;
+
+    // Adds the document, replacing any earlier one with the same name.
+    public synchronized void put(String name, CharSequence text) {
+        remove(name);
+        int id = nextId++;
+        idsByName.put(name, id);
+        documents.put(id, new Document(name, text));
+        addPostings(id, text);
+    }
+
+    public synchronized boolean remove(String name) {
+        Integer id = idsByName.remove(name);
+        if (id == null) return false;
+        documents.remove(id);
+        if (++removedIds > documents.size()) rebuild();
+        return true;
+    }
+
+    public synchronized boolean contains(String name) {
+        return idsByName.containsKey(name);
+    }
+
+    public synchronized int size() {
+        return idsByName.size();
+    }
+
+    // Documents that may contain a match for pattern, in indexing order.
+    public synchronized List<Document> candidates(Pattern pattern) {
+        int[] ids = evaluate(query(pattern));
+        if (ids == null) return new ArrayList<>(documents.values());
+        List<Document> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            // ids of removed documents linger in the postings until the next rebuild
+            Document document = documents.get(id);
+            if (document != null) result.add(document);
+        }
+        return result;
+    }
+
+    // Estimated heap used by the index itself; document texts are shared with the caller.
+    public synchronized Stats stats() {
+        long postings = 0;
+        long bytes = trigrams.bytes();
+        for (Postings list : trigrams.values()) {
+            postings += list.size;
+            bytes += list.bytes();
+        }
+        for (Map.Entry<String, Postings> entry : words.entrySet()) {
+            // hash map node and the word itself
+            postings += entry.getValue().size;
+            bytes += 32 + 40 + entry.getKey().length() + entry.getValue().bytes();
+        }
+        // hash tables are at most 75% full
+        bytes += 4L * (words.size() + 2L * documents.size()) * 4 / 3;
+        long textBytes = 0;
+        for (Document document : documents.values()) {
+            bytes += 2 * 32 + 16 + 24 + 40 + 2L * document.name().length();
+            textBytes += 40 + (long) document.text().length() * (isLatin1(document.text()) ? 1 : 2);
+        }
+        return new Stats(documents.size(), trigrams.size(), words.size(), postings, bytes, textBytes);
+    }
+
+    private void addPostings(int id, CharSequence text) {
+        forEachTrigram(text, key -> {
+            Postings list = trigrams.get(key);
+            if (list == null) trigrams.put(key, list = new Postings());
+            list.add(id);
+        });
+        for (String word : words(text)) {
+            words.computeIfAbsent(word, k -> new Postings()).add(id);
+        }
+    }
+
+    // Re-indexes the live documents under fresh, dense ids, dropping every removed one.
+    private void rebuild() {
+        List<Document> live = new ArrayList<>(documents.values());
+        trigrams = new LongMap<>();
+        words = new HashMap<>();
+        idsByName.clear();
+        documents.clear();
+        nextId = 0;
+        removedIds = 0;
+        for (Document document : live) {
+            int id = nextId++;
+            idsByName.put(document.name(), id);
+            documents.put(id, document);
+            addPostings(id, document.text());
+        }
+    }
+
+    private int[] evaluate(Query query) {
+        if (query instanceof All) return null;
+        if (query instanceof Word word) {
+            Postings list = words.get(word.word());
+            return list == null ? new int[0] : list.toArray();
+        }
+        if (query instanceof Grams grams) {
+            List<Postings> lists = new ArrayList<>(grams.keys().length);
+            for (long key : grams.keys()) {
+                Postings list = trigrams.get(key);
+                if (list == null) return new int[0];
+                lists.add(list);
+            }
+            // intersecting from the rarest trigram keeps every intermediate result small
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            int[] result = lists.get(0).toArray();
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                result = lists.get(i).retainIn(result);
+            }
+            return result;
+        }
+        if (query instanceof And and) {
+            int[] result = null;
+            for (Query part : and.parts()) {
+                int[] ids = evaluate(part);
+                if (ids == null) continue;
+                result = result == null ? ids : intersect(result, ids);
+                if (result.length == 0) break;
+            }
+            return result;
+        }
+        Or or = (Or) query;
+        int[] result = new int[0];
+        for (Query part : or.parts()) {
+            int[] ids = evaluate(part);
+            if (ids == null) return null;
+            result = union(result, ids);
+        }
+        return result;
+    }
+
+    // The literals every match of pattern contains, as a boolean query over the postings.
+    static Query query(Pattern pattern) {
+        String regex = pattern.pattern();
+        int flags = pattern.flags();
+        if ((flags & Pattern.LITERAL) != 0) {
+            return literal(regex, false, false);
+        }
+        if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0 || OPAQUE_FLAGS.matcher(regex).find()) {
+            return ALL;
+        }
+        // words are indexed case-sensitively tokenized, which only holds for case-sensitive queries
+        boolean useWords = (flags & Pattern.CASE_INSENSITIVE) == 0 && !INLINE_CASE_FLAG.matcher(regex).find();
+        return new QueryParser(regex, useWords).alternatives(0, regex.length());
+    }
+
+    private static Query literal(String text, boolean wholeWord, boolean useWords) {
+        if (wholeWord && useWords && text.length() <= MAX_WORD_LENGTH && isAsciiWord(text)) {
+            return new Word(lowerAscii(text));
+        }
+        Set<Long> keys = new HashSet<>();
+        forEachTrigram(text, keys::add);
+        if (keys.isEmpty()) return ALL;
+        return new Grams(keys.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    // sealed query tree; All means "every document"
+    sealed interface Query permits All, Grams, Word, And, Or {
+    }
+
+    record All() implements Query {
+    }
+
+    record Grams(long[] keys) implements Query {
+    }
+
+    record Word(String word) implements Query {
+    }
+
+    record And(List<Query> parts) implements Query {
+    }
+
+    record Or(List<Query> parts) implements Query {
+    }
+
+    private static final Query ALL = new All();
+
+    private static Query and(List<Query> parts) {
+        List<Query> required = new ArrayList<>();
+        for (Query part : parts) {
+            if (!(part instanceof All)) required.add(part);
+        }
+        if (required.isEmpty()) return ALL;
+        return required.size() == 1 ? required.get(0) : new And(required);
+    }
+
+    private static Query or(List<Query> parts) {
+        for (Query part : parts) {
+            if (part instanceof All) return ALL;
+        }
+        return parts.size() == 1 ? parts.get(0) : new Or(parts);
+    }
+
+    private static final class QueryParser {
+        private final String regex;
+        private final boolean useWords;
+
+        QueryParser(String regex, boolean useWords) {
+            this.regex = regex;
+            this.useWords = useWords;
+        }
+
+        Query alternatives(int from, int to) {
+            List<Query> alternatives = new ArrayList<>();
+            int start = from;
+            int depth = 0;
+            int i = from;
+            while (i < to) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i = skipEscape(i, to);
+                    continue;
+                }
+                if (c == '[') {
+                    i = classEnd(i, to);
+                    continue;
+                }
+                if (c == '(') depth++;
+                else if (c == ')') depth--;
+                else if (c == '|' && depth == 0) {
+                    alternatives.add(sequence(start, i));
+                    start = i + 1;
+                }
+                i++;
+            }
+            alternatives.add(sequence(start, to));
+            return or(alternatives);
+        }
+
+        // AND of the literal runs and required groups of one alternative.
+        private Query sequence(int from, int to) {
+            Sequence seq = new Sequence();
+            int i = from;
+            while (i < to) {
+                char c = regex.charAt(i);
+                switch (c) {
+                    case '\\' -> i = escape(i, to, seq);
+                    case '[' -> {
+                        seq.breakRun();
+                        i = skipQuantifier(classEnd(i, to), to);
+                    }
+                    case '(' -> i = group(i, to, seq);
+                    case '.' -> {
+                        seq.breakRun();
+                        i = skipQuantifier(i + 1, to);
+                    }
+                    // zero-width: the text around them is still contiguous
+                    case '^', '$' -> i++;
+                    case '*', '+', '?', '{', ')', '|' -> {
+                        // not valid here in a compiled pattern; give up on this alternative
+                        return ALL;
+                    }
+                    default -> i = literalChar(c, i + 1, to, seq);
+                }
+            }
+            seq.breakRun();
+            return and(seq.required);
+        }
+
+        private int escape(int i, int to, Sequence seq) {
+            if (i + 1 >= to) return to;
+            char next = regex.charAt(i + 1);
+            if (next == 'Q') {
+                int quoteEnd = regex.indexOf("\\E", i + 2);
+                int contentEnd = quoteEnd < 0 || quoteEnd > to ? to : quoteEnd;
+                int after = contentEnd == to ? to : contentEnd + 2;
+                if (contentEnd == i + 2) return after;
+                for (int k = i + 2; k < contentEnd - 1; k++) seq.append(regex.charAt(k));
+                // a quantifier after the quote applies to its last char only
+                return literalChar(regex.charAt(contentEnd - 1), after, to, seq);
+            }
+            if (next == 'b' && !regex.startsWith("{", i + 2)) {
+                seq.wordBoundary();
+                return i + 2;
+            }
+            char literal = switch (next) {
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 'f' -> '\f';
+                case 'a' -> '\u0007';
+                case 'e' -> '\u001B';
+                default -> Character.isLetterOrDigit(next) ? 0 : next;
+            };
+            if (literal != 0) return literalChar(literal, i + 2, to, seq);
+            if (next == 'B' || next == 'A' || next == 'G' || next == 'z' || next == 'Z') {
+                return i + 2;
+            }
+            // classes, back references and code point escapes match text we do not know
+            seq.breakRun();
+            return skipQuantifier(skipEscape(i, to), to);
+        }
+
+        private int group(int i, int to, Sequence seq) {
+            int close = groupEnd(i, to);
+            if (close < 0) {
+                seq.breakRun();
+                return to;
+            }
+            int contentStart;
+            if (!regex.startsWith("?", i + 1)) {
+                contentStart = i + 1;
+            } else if (regex.startsWith("?:", i + 1) || regex.startsWith("?>", i + 1)) {
+                contentStart = i + 3;
+            } else if (regex.startsWith("?=", i + 1) || regex.startsWith("?!", i + 1)
+                    || regex.startsWith("?<=", i + 1) || regex.startsWith("?<!", i + 1)) {
+                // lookarounds constrain the match without being part of it
+                seq.breakRun();
+                return skipQuantifier(close + 1, to);
+            } else if (regex.startsWith("?<", i + 1)) {
+                contentStart = regex.indexOf('>', i + 3) + 1;
+            } else {
+                int j = i + 2;
+                while (j < close && (Character.isLetter(regex.charAt(j)) || regex.charAt(j) == '-')) j++;
+                if (j == close) {
+                    // inline flags; case only matters to word queries, which check for it up front
+                    return close + 1;
+                }
+                contentStart = j + 1;
+            }
+
+            seq.breakRun();
+            Query inner = alternatives(contentStart, close);
+            int after = close + 1;
+            Quantifier quantifier = quantifier(after, to);
+            if (quantifier.kind != Quantifier.NULLABLE) seq.required.add(inner);
+            return quantifier.end;
+        }
+
+        private int literalChar(char c, int next, int to, Sequence seq) {
+            Quantifier quantifier = quantifier(next, to);
+            if (Character.isSurrogate(c)) {
+                // supplementary chars fold per code point, not per char
+                seq.breakRun();
+            } else if (quantifier.kind == Quantifier.NONE) {
+                seq.append(c);
+            } else if (quantifier.kind == Quantifier.NULLABLE) {
+                seq.breakRun();
+            } else {
+                // c+ : the run so far ends in c, and whatever follows comes after another c
+                seq.append(c);
+                seq.breakRun();
+                seq.append(c);
+            }
+            return quantifier.end;
+        }
+
+        private int skipQuantifier(int i, int to) {
+            return quantifier(i, to).end;
+        }
+
+        private record Quantifier(int kind, int end) {
+            static final int NONE = 0;
+            static final int NULLABLE = 1;
+            static final int REPEAT = 2;
+        }
+
+        private Quantifier quantifier(int i, int to) {
+            if (i >= to) return new Quantifier(Quantifier.NONE, i);
+            char c = regex.charAt(i);
+            int kind;
+            int end;
+            if (c == '?' || c == '*') {
+                kind = Quantifier.NULLABLE;
+                end = i + 1;
+            } else if (c == '+') {
+                kind = Quantifier.REPEAT;
+                end = i + 1;
+            } else if (c == '{') {
+                int close = regex.indexOf('}', i);
+                if (close < 0 || close >= to) return new Quantifier(Quantifier.NONE, i);
+                kind = regex.startsWith("{0", i) && !Character.isDigit(regex.charAt(i + 2))
+                        ? Quantifier.NULLABLE : Quantifier.REPEAT;
+                end = close + 1;
+            } else {
+                return new Quantifier(Quantifier.NONE, i);
+            }
+            // lazy and possessive forms
+            if (end < to && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) end++;
+            return new Quantifier(kind, end);
+        }
+
+        // Index after the escape at i, including any {..}, <..> or digits that belong to it.
+        private int skipEscape(int i, int to) {
+            if (regex.startsWith("\\Q", i)) {
+                int quoteEnd = regex.indexOf("\\E", i + 2);
+                return quoteEnd < 0 || quoteEnd >= to ? to : quoteEnd + 2;
+            }
+            if (i + 1 >= to) return to;
+            char next = regex.charAt(i + 1);
+            int j = i + 2;
+            switch (next) {
+                case 'p', 'P', 'N', 'x', 'b' -> {
+                    if (j < to && regex.charAt(j) == '{') {
+                        int close = regex.indexOf('}', j);
+                        return close < 0 || close >= to ? to : close + 1;
+                    }
+                    if (next == 'x') return Math.min(to, j + 2);
+                    if (next == 'p' || next == 'P') return Math.min(to, j + 1);
+                    return j;
+                }
+                case 'u' -> {
+                    return Math.min(to, j + 4);
+                }
+                case 'c' -> {
+                    return Math.min(to, j + 1);
+                }
+                case 'k' -> {
+                    int close = regex.indexOf('>', j);
+                    return close < 0 || close >= to ? to : close + 1;
+                }
+                case '0' -> {
+                    while (j < to && j < i + 5 && regex.charAt(j) >= '0' && regex.charAt(j) <= '7') j++;
+                    return j;
+                }
+                default -> {
+                    if (next >= '1' && next <= '9') {
+                        while (j < to && Character.isDigit(regex.charAt(j))) j++;
+                    }
+                    return j;
+                }
+            }
+        }
+
+        private int classEnd(int i, int to) {
+            int j = i + 1;
+            if (j < to && regex.charAt(j) == '^') j++;
+            // a ] right after [ or [^ is a literal
+            if (j < to && regex.charAt(j) == ']') j++;
+            while (j < to) {
+                char c = regex.charAt(j);
+                if (c == '\\') {
+                    j = skipEscape(j, to);
+                    continue;
+                }
+                if (c == '[') {
+                    j = classEnd(j, to);
+                    continue;
+                }
+                if (c == ']') return j + 1;
+                j++;
+            }
+            return to;
+        }
+
+        private int groupEnd(int i, int to) {
+            int depth = 0;
+            int j = i;
+            while (j < to) {
+                char c = regex.charAt(j);
+                if (c == '\\') {
+                    j = skipEscape(j, to);
+                    continue;
+                }
+                if (c == '[') {
+                    j = classEnd(j, to);
+                    continue;
+                }
+                if (c == '(') depth++;
+                else if (c == ')' && --depth == 0) return j;
+                j++;
+            }
+            return -1;
+        }
+
+        // The literal run being read, and the queries collected so far for one alternative.
+        private final class Sequence {
+            final List<Query> required = new ArrayList<>();
+            final StringBuilder run = new StringBuilder();
+            boolean boundaryBefore;
+
+            void append(char c) {
+                run.append(c);
+            }
+
+            void wordBoundary() {
+                flush(true);
+                boundaryBefore = true;
+            }
+
+            void breakRun() {
+                flush(false);
+                boundaryBefore = false;
+            }
+
+            private void flush(boolean boundaryAfter) {
+                if (run.isEmpty()) return;
+                required.add(literal(run.toString(), boundaryBefore && boundaryAfter, useWords));
+                run.setLength(0);
+            }
+        }
+    }
+
+    // Postings: ascending document ids stored as varint-encoded gaps. New documents get the
+    // largest id so adds are appends; lists are only ever rewritten by a rebuild.
+    private static final class Postings {
+        private byte[] data = new byte[4];
+        private int length;
+        private int last = -1;
+        int size;
+
+        void add(int id) {
+            if (id == last) return;
+            if (length + 5 > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            int gap = id - last;
+            while (gap >= 0x80) {
+                data[length++] = (byte) (gap | 0x80);
+                gap >>>= 7;
+            }
+            data[length++] = (byte) gap;
+            last = id;
+            size++;
+        }
+
+        int[] toArray() {
+            int[] ids = new int[size];
+            int id = -1;
+            int at = 0;
+            for (int i = 0; i < size; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[at++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += gap;
+                ids[i] = id;
+            }
+            return ids;
+        }
+
+        // The ids in sorted that are also in this list.
+        int[] retainIn(int[] sorted) {
+            int[] out = new int[Math.min(sorted.length, size)];
+            int n = 0;
+            int id = -1;
+            int at = 0;
+            int j = 0;
+            for (int i = 0; i < size && j < sorted.length; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[at++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += gap;
+                while (j < sorted.length && sorted[j] < id) j++;
+                if (j < sorted.length && sorted[j] == id) out[n++] = sorted[j++];
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        long bytes() {
+            return 32 + 16 + data.length;
+        }
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) out[n++] = a[i++];
+            else if (i == a.length || b[j] < a[i]) out[n++] = b[j++];
+            else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    @FunctionalInterface
+    private interface KeySink {
+        void accept(long key);
+    }
+
+    // Trigrams of the case-folded text, repeats included; trigrams with surrogates are left out.
+    private static void forEachTrigram(CharSequence text, KeySink sink) {
+        long window = 0;
+        int valid = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c)) {
+                valid = 0;
+                continue;
+            }
+            window = ((window << 16) | fold(c)) & 0xFFFF_FFFF_FFFFL;
+            if (++valid >= 3) sink.accept(window);
+        }
+    }
+
+    // The same folding java.util.regex applies for CASE_INSENSITIVE | UNICODE_CASE, which also
+    // covers ASCII-only case-insensitivity and exact matching.
+    private static char fold(char c) {
+        if (c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    // Distinct lowercased ASCII words, split the way \b splits text (any other char is a separator).
+    private static Set<String> words(CharSequence text) {
+        Set<String> result = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && isAsciiWordChar(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                if (i - start <= MAX_WORD_LENGTH) result.add(lowerAscii(text.subSequence(start, i).toString()));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isAsciiWord(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!isAsciiWordChar(s.charAt(i))) return false;
+        }
+        return !s.isEmpty();
+    }
+
+    private static boolean isAsciiWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static String lowerAscii(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') chars[i] += 'a' - 'A';
+        }
+        return new String(chars);
+    }
+
+    private static boolean isLatin1(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) return false;
+        }
+        return true;
+    }
+
+    // Open-addressing map from non-negative long keys. Packed trigrams hash badly as boxed Longs
+    // (Long.hashCode XORs the three chars together), and boxing every lookup adds up over large texts.
+    private static final class LongMap<V> {
+        private long[] keys = new long[64];
+        private Object[] values = new Object[64];
+        private int size;
+
+        LongMap() {
+            Arrays.fill(keys, -1);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) (mix(key) & mask); keys[i] != -1; i = (i + 1) & mask) {
+                if (keys[i] == key) return (V) values[i];
+            }
+            return null;
+        }
+
+        void put(long key, V value) {
+            if (size * 4 >= keys.length * 3) grow();
+            int mask = keys.length - 1;
+            int i = (int) (mix(key) & mask);
+            while (keys[i] != -1 && keys[i] != key) i = (i + 1) & mask;
+            if (keys[i] == -1) size++;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<V> values() {
+            List<V> result = new ArrayList<>(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != -1) result.add((V) values[i]);
+            }
+            return result;
+        }
+
+        long bytes() {
+            return 16 + 2 * 16 + 12L * keys.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void grow() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            Arrays.fill(keys, -1);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+
+        private static long mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return key ^ (key >>> 29);
+        }
+    }
+}
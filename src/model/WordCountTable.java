@@ -0,0 +1,134 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+// Open-addressing word -> count table. Lookups hash the token straight out of a char
+// buffer, so a String is only allocated the first time a word is seen.
+public class WordCountTable {
+    private String[] keys;
+    private int[] hashes;
+    private int[] counts;
+    private int size;
+    private long total;
+
+    public WordCountTable() {
+        this(1024);
+    }
+
+    public WordCountTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        counts = new int[capacity];
+    }
+
+    // hash must be computed the same way as String.hashCode()
+    public void increment(char[] buf, int len, int hash) {
+        int mask = keys.length - 1;
+        int slot = spread(hash) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && sameChars(key, buf, len)) {
+                counts[slot]++;
+                total++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, new String(buf, 0, len), hash, 1);
+    }
+
+    public void add(String word, int count) {
+        int hash = word.hashCode();
+        int mask = keys.length - 1;
+        int slot = spread(hash) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && key.equals(word)) {
+                counts[slot] += count;
+                total += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, word, hash, count);
+    }
+
+    public int get(String word) {
+        int hash = word.hashCode();
+        int mask = keys.length - 1;
+        int slot = spread(hash) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && key.equals(word)) return counts[slot];
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public void mergeFrom(WordCountTable other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) add(other.keys[i], other.counts[i]);
+        }
+    }
+
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) action.accept(keys[i], counts[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long totalCount() {
+        return total;
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new HashMap<>((int) (size / 0.75f) + 1);
+        forEach((word, count) -> map.put(word, (long) count));
+        return map;
+    }
+
+    private void insert(int slot, String key, int hash, int count) {
+        keys[slot] = key;
+        hashes[slot] = hash;
+        counts[slot] = count;
+        total += count;
+        if (++size * 2 > keys.length) resize();
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length << 1];
+        hashes = new int[keys.length];
+        counts = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = spread(oldHashes[i]) & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            hashes[slot] = oldHashes[i];
+            counts[slot] = oldCounts[i];
+        }
+    }
+
+    private static boolean sameChars(String key, char[] buf, int len) {
+        if (key.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (key.charAt(i) != buf[i]) return false;
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
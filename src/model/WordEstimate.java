@@ -0,0 +1,8 @@
+package model;
+
+// Approximate word count: the true count lies in [count - error, count].
+public record WordEstimate(String word, long count, long error) {
+    public long guaranteedCount() {
+        return count - error;
+    }
+}
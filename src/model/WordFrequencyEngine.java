@@ -0,0 +1,138 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
+
+// Counts words chunk by chunk into per-thread WordCountTables and merges them at the end.
+// Interrupting the calling thread stops a large count between chunks with a CancellationException.
+public class WordFrequencyEngine {
+    private static final int PARALLEL_THRESHOLD = 1 << 18;
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    // keeps chunks short enough that an interrupt is noticed within milliseconds
+    private static final int MAX_CHUNK_SIZE = 1 << 22;
+
+    private final WordTokenizer tokenizer;
+    private final int parallelism;
+
+    public WordFrequencyEngine() {
+        this(WordTokenizer.forDefaultLocale(), Runtime.getRuntime().availableProcessors());
+    }
+
+    public WordFrequencyEngine(WordTokenizer tokenizer, int parallelism) {
+        this.tokenizer = tokenizer;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public Map<String, Long> analyze(CharSequence text) {
+        return count(text).toMap();
+    }
+
+    public WordCountTable count(CharSequence text) {
+        if (text.length() < PARALLEL_THRESHOLD) {
+            return countRange(text, 0, text.length());
+        }
+
+        Thread caller = Thread.currentThread();
+        int[] bounds = chunkBounds(text, parallelism * 4);
+        if (parallelism == 1) {
+            WordCountTable table = new WordCountTable();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                checkInterrupted(caller);
+                countRange(text, bounds[i], bounds[i + 1], table);
+            }
+            return table;
+        }
+        return IntStream.range(0, bounds.length - 1)
+                .parallel()
+                .mapToObj(i -> {
+                    checkInterrupted(caller);
+                    return countRange(text, bounds[i], bounds[i + 1]);
+                })
+                .reduce((a, b) -> {
+                    if (a.size() < b.size()) {
+                        b.mergeFrom(a);
+                        return b;
+                    }
+                    a.mergeFrom(b);
+                    return a;
+                })
+                .orElseGet(WordCountTable::new);
+    }
+
+    // Approximate top-k through Space-Saving sketches: memory is bounded by capacity, not by vocabulary size.
+    public SpaceSavingSketch sketch(CharSequence text, int capacity) {
+        if (text.length() < PARALLEL_THRESHOLD) {
+            return sketchRange(text, 0, text.length(), capacity);
+        }
+
+        Thread caller = Thread.currentThread();
+        int[] bounds = chunkBounds(text, parallelism);
+        if (parallelism == 1) {
+            SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+            for (int i = 0; i < bounds.length - 1; i++) {
+                checkInterrupted(caller);
+                tokenizer.tokenize(text, bounds[i], bounds[i + 1], sketch::offer);
+            }
+            return sketch;
+        }
+        return IntStream.range(0, bounds.length - 1)
+                .parallel()
+                .mapToObj(i -> {
+                    checkInterrupted(caller);
+                    return sketchRange(text, bounds[i], bounds[i + 1], capacity);
+                })
+                .reduce(SpaceSavingSketch::merge)
+                .orElseGet(() -> new SpaceSavingSketch(capacity));
+    }
+
+    public SpaceSavingSketch sketchRange(CharSequence text, int start, int end, int capacity) {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        tokenizer.tokenize(text, start, end, sketch::offer);
+        return sketch;
+    }
+
+    public WordCountTable countRange(CharSequence text, int start, int end) {
+        WordCountTable table = new WordCountTable();
+        countRange(text, start, end, table);
+        return table;
+    }
+
+    // Adds the words in [start, end) to an existing table, e.g. one window of a stream at a time.
+    public void countRange(CharSequence text, int start, int end, WordCountTable into) {
+        tokenizer.tokenize(text, start, end, into::increment);
+    }
+
+    // End of the longest prefix of [start, end) that no token continues past; start if there is none.
+    public int lastBoundary(CharSequence text, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (tokenizer.isSeparator(text.charAt(i))) return i + 1;
+        }
+        return start;
+    }
+
+    // Chunk boundaries always sit on a separator char so no token straddles two chunks.
+    int[] chunkBounds(CharSequence text, int chunks) {
+        int length = text.length();
+        int chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, length / chunks + 1));
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int pos = chunkSize;
+        while (pos < length) {
+            while (pos < length && !tokenizer.isSeparator(text.charAt(pos))) pos++;
+            bounds.add(pos);
+            pos += chunkSize;
+        }
+        if (bounds.get(bounds.size() - 1) != length) bounds.add(length);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // pool workers do not see the caller's interrupt, so they check the caller's flag
+    private static void checkInterrupted(Thread caller) {
+        if (caller.isInterrupted()) {
+            throw new CancellationException("Word count interrupted");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Character-scanning equivalent of text.toLowerCase().split("\\W+") followed by keeping
+// only the [a-zA-Z]+ tokens. Every char is mapped through a per-locale lowercase table,
+// so no lowercased copy of the text and no per-token regex is needed.
+public final class WordTokenizer {
+
+    @FunctionalInterface
+    public interface TokenSink {
+        // hash is the String.hashCode() of the first len chars of buf
+        void accept(char[] buf, int len, int hash);
+    }
+
+    private static final char SEPARATOR = 0;
+    private static final char WORD_NOT_LETTER = 1;
+    private static final char EXPANDS = 2;
+    private static final Map<Locale, WordTokenizer> BY_LOCALE = new ConcurrentHashMap<>();
+
+    // lowercased ASCII letter, or one of the markers above
+    private final char[] table = new char[Character.MAX_VALUE + 1];
+    private final Map<Character, String> expansions = new HashMap<>();
+
+    private WordTokenizer(Locale locale) {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (Character.isSurrogate((char) c)) continue;
+            String lower = String.valueOf((char) c).toLowerCase(locale);
+            if (lower.length() == 1) {
+                table[c] = classify(lower.charAt(0));
+            } else {
+                table[c] = EXPANDS;
+                expansions.put((char) c, lower);
+            }
+        }
+    }
+
+    public static WordTokenizer forDefaultLocale() {
+        return forLocale(Locale.getDefault());
+    }
+
+    public static WordTokenizer forLocale(Locale locale) {
+        return BY_LOCALE.computeIfAbsent(locale, WordTokenizer::new);
+    }
+
+    // True if no token can continue across c, so text may be cut there.
+    public boolean isSeparator(char c) {
+        return table[c] == SEPARATOR;
+    }
+
+    public void tokenize(CharSequence text, int start, int end, TokenSink sink) {
+        State state = new State();
+        for (int i = start; i < end; i++) {
+            char mapped = table[text.charAt(i)];
+            if (mapped == EXPANDS) {
+                String lower = expansions.get(text.charAt(i));
+                for (int j = 0; j < lower.length(); j++) {
+                    state.feed(classify(lower.charAt(j)), sink);
+                }
+            } else {
+                state.feed(mapped, sink);
+            }
+        }
+        state.endToken(sink);
+    }
+
+    private static char classify(char lower) {
+        if ((lower >= 'a' && lower <= 'z') || (lower >= 'A' && lower <= 'Z')) return lower;
+        if ((lower >= '0' && lower <= '9') || lower == '_') return WORD_NOT_LETTER;
+        return SEPARATOR;
+    }
+
+    private static final class State {
+        private char[] buf = new char[64];
+        private int len;
+        private int hash;
+        private boolean inToken;
+        private boolean lettersOnly = true;
+
+        void feed(char mapped, TokenSink sink) {
+            if (mapped == SEPARATOR) {
+                endToken(sink);
+                return;
+            }
+            inToken = true;
+            if (mapped == WORD_NOT_LETTER) {
+                lettersOnly = false;
+            } else if (lettersOnly) {
+                if (len == buf.length) buf = Arrays.copyOf(buf, len << 1);
+                buf[len++] = mapped;
+                hash = 31 * hash + mapped;
+            }
+        }
+
+        void endToken(TokenSink sink) {
+            if (inToken && lettersOnly && len > 0) {
+                sink.accept(buf, len, hash);
+            }
+            len = 0;
+            hash = 0;
+            inToken = false;
+            lettersOnly = true;
+        }
+    }
+}
@@ -1,40 +1,190 @@
 package processor;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class TextSummarizer {
+    private static final int SENTENCES_PER_CHUNK = 2048;
 
     public static String summarizeText(String text, int numSentences) {
         // 1. Split into sentences
         String[] sentences = text.split("(?<=[.!?])\\s+");
         if (sentences.length <= numSentences) return text;
 
-        // 2. Map Phase – Word Frequencies
-        Map<String, Integer> wordFreq = new HashMap<>();
-        for (String sentence : sentences) {
-            for (String word : sentence.toLowerCase().replaceAll("[^a-z ]", "").split("\\s+")) {
-                if (!word.isBlank()) {
-                    wordFreq.put(word, wordFreq.getOrDefault(word, 0) + 1);
-                }
+        // 2. Map Phase – tokenize every sentence once into chunk-local term ids
+        Thread caller = Thread.currentThread();
+        int chunkCount = (sentences.length + SENTENCES_PER_CHUNK - 1) / SENTENCES_PER_CHUNK;
+        Chunk[] chunks = IntStream.range(0, chunkCount)
+                .parallel()
+                .mapToObj(c -> {
+                    checkInterrupted(caller);
+                    return new Chunk(sentences, c * SENTENCES_PER_CHUNK,
+                            Math.min(sentences.length, (c + 1) * SENTENCES_PER_CHUNK));
+                })
+                .toArray(Chunk[]::new);
+
+        // merge the chunk dictionaries into global term ids and word frequencies
+        TermIds globalIds = new TermIds();
+        int[] wordFreq = new int[1024];
+        for (Chunk chunk : chunks) {
+            chunk.globalIds = new int[chunk.localIds.size()];
+            for (int local = 0; local < chunk.globalIds.length; local++) {
+                int global = globalIds.idOf(chunk.localIds.term(local));
+                if (global >= wordFreq.length) wordFreq = Arrays.copyOf(wordFreq, wordFreq.length * 2);
+                wordFreq[global] += chunk.localFreq[local];
+                chunk.globalIds[local] = global;
             }
         }
 
-        // 3. Reduce Phase – Score sentences based on word significance
-        Map<String, Double> sentenceScores = new LinkedHashMap<>();
-        for (String sentence : sentences) {
-            double score = 0.0;
-            for (String word : sentence.toLowerCase().replaceAll("[^a-z ]", "").split("\\s+")) {
-                score += wordFreq.getOrDefault(word, 0);
+        // 3. Reduce Phase – score sentences by the summed frequency of their words
+        int[] freq = wordFreq;
+        long[] scores = new long[sentences.length];
+        Arrays.stream(chunks).parallel().forEach(chunk -> {
+            checkInterrupted(caller);
+            for (int s = chunk.from; s < chunk.to; s++) {
+                long sum = 0;
+                for (int term : chunk.terms[s - chunk.from]) {
+                    sum += freq[chunk.globalIds[term]];
+                }
+                scores[s] = sum;
             }
-            sentenceScores.put(sentence, score);
+        });
+
+        // Select top N sentences with a bounded min-heap; earlier sentences win ties
+        PriorityQueue<Integer> top = new PriorityQueue<>(numSentences + 1, (a, b) -> {
+            int byScore = Long.compare(scores[a], scores[b]);
+            return byScore != 0 ? byScore : Integer.compare(b, a);
+        });
+        for (int s = 0; s < sentences.length; s++) {
+            top.offer(s);
+            if (top.size() > numSentences) top.poll();
         }
 
-        //Select top N sentences
-        return sentenceScores.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .limit(numSentences)
-                .map(Map.Entry::getKey)
+        return top.stream()
+                .sorted()
+                .map(s -> sentences[s])
                 .collect(Collectors.joining(" "));
     }
+
+    // pool workers do not see the caller's interrupt, so they check the caller's flag
+    private static void checkInterrupted(Thread caller) {
+        if (caller.isInterrupted()) {
+            throw new CancellationException("Summarization interrupted");
+        }
+    }
+
+    // Sentences [from, to) as arrays of term ids local to this chunk, plus local word counts.
+    private static final class Chunk {
+        final int from;
+        final int to;
+        final int[][] terms;
+        final TermIds localIds = new TermIds();
+        int[] localFreq = new int[256];
+        int[] globalIds;
+
+        Chunk(String[] sentences, int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.terms = new int[to - from][];
+            char[] buf = new char[64];
+            int[] sentenceTerms = new int[64];
+            for (int s = from; s < to; s++) {
+                // same words as toLowerCase().replaceAll("[^a-z ]", "").split("\\s+")
+                String lower = sentences[s].toLowerCase();
+                int count = 0;
+                int len = 0;
+                for (int i = 0; i <= lower.length(); i++) {
+                    char c = i < lower.length() ? lower.charAt(i) : ' ';
+                    if (c >= 'a' && c <= 'z') {
+                        if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+                        buf[len++] = c;
+                    } else if (c == ' ' && len > 0) {
+                        int id = localIds.idOf(buf, len);
+                        if (id >= localFreq.length) localFreq = Arrays.copyOf(localFreq, localFreq.length * 2);
+                        localFreq[id]++;
+                        if (count == sentenceTerms.length) sentenceTerms = Arrays.copyOf(sentenceTerms, count * 2);
+                        sentenceTerms[count++] = id;
+                        len = 0;
+                    }
+                }
+                terms[s - from] = Arrays.copyOf(sentenceTerms, count);
+            }
+        }
+    }
+
+    // Open-addressing term -> dense id dictionary.
+    private static final class TermIds {
+        private String[] keys = new String[512];
+        private int[] ids = new int[512];
+        private String[] terms = new String[256];
+        private int size;
+
+        int idOf(char[] buf, int len) {
+            int hash = 0;
+            for (int i = 0; i < len; i++) hash = 31 * hash + buf[i];
+            int mask = keys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null) {
+                String key = keys[slot];
+                if (key.hashCode() == hash && sameChars(key, buf, len)) return ids[slot];
+                slot = (slot + 1) & mask;
+            }
+            return insert(slot, new String(buf, 0, len));
+        }
+
+        int idOf(String term) {
+            int hash = term.hashCode();
+            int mask = keys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null) {
+                if (keys[slot].equals(term)) return ids[slot];
+                slot = (slot + 1) & mask;
+            }
+            return insert(slot, term);
+        }
+
+        private static boolean sameChars(String key, char[] buf, int len) {
+            if (key.length() != len) return false;
+            for (int i = 0; i < len; i++) {
+                if (key.charAt(i) != buf[i]) return false;
+            }
+            return true;
+        }
+
+        String term(int id) {
+            return terms[id];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int insert(int slot, String term) {
+            int id = size++;
+            keys[slot] = term;
+            ids[slot] = id;
+            if (id == terms.length) terms = Arrays.copyOf(terms, id * 2);
+            terms[id] = term;
+            if (size * 2 > keys.length) rehash();
+            return id;
+        }
+
+        private void rehash() {
+            String[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new String[oldKeys.length * 2];
+            ids = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int hash = oldKeys[i].hashCode();
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (keys[slot] != null) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
 }
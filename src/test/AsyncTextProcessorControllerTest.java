@@ -0,0 +1,140 @@
+package test;
+
+import controller.AsyncTextProcessorController;
+import controller.TextProcessorController;
+import model.WordFrequencyEngine;
+import processor.TextSummarizer;
+import utils.CollectionManager;
+import utils.FileHandlerUtil;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+public class AsyncTextProcessorControllerTest {
+
+    private final AsyncTextProcessorController async = new AsyncTextProcessorController(new TextProcessorController(), 4);
+    private Path input;
+    private Path output;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        input = Files.createTempFile("async_in", ".txt");
+        output = Files.createTempFile("async_out", ".txt");
+        Files.writeString(input, "only line\n");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        async.close();
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Test
+    void testNewCallCancelsOnlyTheSameOperation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<?> batch = async.batchProcessToFile(input.toString(), output.toString(), line -> true,
+                blockUntilInterrupted(started, interrupted), 0, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // other operations run alongside the batch without touching it
+        assertEquals(2L, async.wordFrequency("one two two").get(5, TimeUnit.SECONDS).get("two").longValue());
+        assertEquals(1L, async.countMatches("mail me at a@b.io", "Email", "").get(5, TimeUnit.SECONDS).longValue());
+        assertFalse(batch.isDone());
+
+        // a second batch replaces the first, and the first one's worker is interrupted
+        CompletableFuture<?> second = async.batchProcessToFile(input.toString(), output.toString(), line -> true,
+                Function.identity(), 0, null);
+        assertTrue(batch.isCancelled());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals("only line", Files.readString(output).strip());
+    }
+
+    @Test
+    void testCollectionWritesRunInOrderWithoutCancellingEachOther() throws Exception {
+        CollectionManager collection = new CollectionManager();
+        List<CompletableFuture<?>> writes = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            writes.add(async.addEntry(collection, "entry " + i));
+            expected.add("entry " + i);
+            if (i % 10 == 9) {
+                // positions refer to the collection as the earlier writes left it
+                writes.add(async.updateEntry(collection, expected.size() - 1, "updated " + i));
+                expected.set(expected.size() - 1, "updated " + i);
+                writes.add(async.deleteEntry(collection, 0));
+                expected.remove(0);
+            }
+        }
+        for (CompletableFuture<?> write : writes) write.get(5, TimeUnit.SECONDS);
+        assertTrue(writes.stream().noneMatch(CompletableFuture::isCancelled));
+        assertEquals(expected, collection.getAllEntries());
+        assertEquals(Boolean.FALSE, async.deleteEntry(collection, expected.size()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCancelStopsNamedOperationsAndCancelAllStopsEveryOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch interrupted = new CountDownLatch(2);
+        CompletableFuture<?> batch = async.batchProcessToFile(input.toString(), output.toString(), line -> true,
+                blockUntilInterrupted(started, interrupted), 0, null);
+        CompletableFuture<?> lines = async.batchProcessFile(input.toString(), line -> true, blockUntilInterrupted(started, interrupted));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        async.cancel("batchProcessFile");
+        assertTrue(lines.isCancelled());
+        assertFalse(batch.isDone());
+        async.cancelAll();
+        assertTrue(batch.isCancelled());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class, batch::join);
+    }
+
+    @Test
+    void testCpuBoundLoopsStopWhenTheCallerIsInterrupted() throws IOException {
+        StringBuilder words = new StringBuilder();
+        while (words.length() < 3_000_000) words.append("several plain words here. ");
+        String text = words.toString();
+        Files.writeString(input, text);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class, () -> new WordFrequencyEngine().count(text));
+            assertThrows(CancellationException.class, () -> new WordFrequencyEngine().sketch(text, 100));
+            assertThrows(CancellationException.class, () -> TextSummarizer.summarizeText(text, 3));
+            try (FileChannel channel = FileChannel.open(input)) {
+                assertThrows(InterruptedIOException.class, () -> new FileHandlerUtil().countWords(channel, new WordFrequencyEngine()));
+            }
+        } finally {
+            Thread.interrupted();
+        }
+        // without an interrupt the same calls run to completion
+        assertEquals(4, new WordFrequencyEngine().count(text).size());
+    }
+
+    // Transformer that blocks its worker until the worker is interrupted.
+    private static Function<String, String> blockUntilInterrupted(CountDownLatch started, CountDownLatch interrupted) {
+        CountDownLatch never = new CountDownLatch(1);
+        return line -> {
+            started.countDown();
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return line;
+        };
+    }
+}
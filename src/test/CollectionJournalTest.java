@@ -0,0 +1,377 @@
+package test;
+
+import exceptions.FileProcessingException;
+import utils.CollectionJournal;
+import utils.CollectionManager;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class CollectionJournalTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("collection_journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void testDedupesAndSharesSnapshots() {
+        CollectionManager collection = new CollectionManager();
+        collection.addEntry("alpha");
+        collection.addEntry("beta");
+        collection.addEntry("alpha");
+
+        List<String> snapshot = collection.getAllEntries();
+        assertEquals(List.of("alpha", "beta"), snapshot);
+        assertSame(snapshot, collection.getAllEntries());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add("gamma"));
+
+        assertTrue(collection.updateEntry(0, "gamma"));
+        assertFalse(collection.contains("alpha"));
+        assertTrue(collection.contains("gamma"));
+        assertEquals(List.of("gamma", "beta"), collection.getAllEntries());
+        assertEquals(List.of("alpha", "beta"), snapshot);
+    }
+
+    @Test
+    void testOlderSnapshotsKeepTheirContentsAcrossChanges() {
+        CollectionManager collection = new CollectionManager();
+        List<List<String>> snapshots = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        List<String> model = new ArrayList<>();
+        Random random = new Random(16);
+        // enough adds to grow the backing array several times, mixed with updates and deletes
+        for (int i = 0; i < 500; i++) {
+            int op = random.nextInt(6);
+            if (op == 0 && !model.isEmpty()) {
+                int at = random.nextInt(model.size());
+                assertTrue(collection.updateEntry(at, "u" + i));
+                model.set(at, "u" + i);
+            } else if (op == 1 && !model.isEmpty()) {
+                int at = random.nextInt(model.size());
+                assertTrue(collection.deleteEntry(at));
+                model.remove(at);
+            } else {
+                collection.addEntry("e" + i);
+                model.add("e" + i);
+            }
+            if (i % 7 == 0) {
+                snapshots.add(collection.getAllEntries());
+                expected.add(List.copyOf(model));
+            }
+        }
+        for (int s = 0; s < snapshots.size(); s++) {
+            assertEquals(expected.get(s), snapshots.get(s), "snapshot " + s);
+        }
+        assertEquals(model, collection.getAllEntries());
+        for (int i = 0; i < model.size(); i++) assertEquals(model.get(i), collection.getEntry(i));
+        assertThrows(IndexOutOfBoundsException.class, () -> collection.getEntry(model.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> collection.getAllEntries().get(model.size()));
+    }
+
+    @Test
+    void testRecoversAddsUpdatesAndDeletes() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("alpha");
+            manager.addEntry("beta");
+            manager.addEntry("gamma");
+            manager.updateEntry(0, "ALPHA");
+            manager.deleteEntry(1);
+            manager.addEntry("ünïcode ✓");
+        }
+
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("ALPHA", "gamma", "ünïcode ✓"), reopened.getAllEntries());
+            assertTrue(reopened.contains("gamma"));
+        }
+    }
+
+    @Test
+    void testEditedEntriesAreJournaledAndReindexed() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("the cat sat");
+            manager.addEntry("the dog ran");
+            assertTrue(manager.editEntry(1, entry -> entry.replace(4, 7, "fox")));
+            assertFalse(manager.editEntry(2, entry -> entry.append("!")));
+            // an edit that returns the entry itself is not a change
+            assertTrue(manager.editEntry(0, entry -> entry));
+            assertEquals(List.of("the cat sat", "the fox ran"), manager.getAllEntries());
+            assertTrue(manager.contains("the fox ran"));
+            assertFalse(manager.contains("the dog ran"));
+        }
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("the cat sat", "the fox ran"), reopened.getAllEntries());
+        }
+    }
+
+    @Test
+    void testRopeEntriesAreJournaledAndSnapshottedPieceByPiece() throws IOException {
+        // long enough to be cut into many leaves, with every UTF-8 length and an unpaired surrogate
+        String text = "aé✓\uD83D\uDE00 ".repeat(3000) + "\uD800";
+        String edited;
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry(text);
+            assertTrue(manager.editEntry(0, entry -> entry.replace(5000, 5010, "\uD83D\uDE01").insert(0, "ü")));
+            edited = "ü" + text.substring(0, 5000) + "\uD83D\uDE01" + text.substring(5010);
+            assertEquals(edited, manager.getEntry(0));
+            manager.addEntry("second");
+            assertTrue(manager.editEntry(1, entry -> entry.append("\uDC00 tail")));
+        }
+        // the journal stores what String.getBytes(UTF_8) would, which turns unpaired surrogates into '?'
+        List<String> expected = List.of(
+                new String(edited.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), "second? tail");
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(expected, reopened.getAllEntries());
+            assertTrue(reopened.editEntry(0, entry -> entry.delete(0, 1)));
+            reopened.compact();
+        }
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(expected.get(0).substring(1), reopened.getEntry(0));
+            assertEquals(expected.get(1), reopened.getEntry(1));
+        }
+    }
+
+    @Test
+    void testNullEntriesAreRejectedBeforeTheyReachTheJournal() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("kept");
+            assertThrows(IllegalArgumentException.class, () -> manager.addEntry(null));
+            assertThrows(IllegalArgumentException.class, () -> manager.updateEntry(0, null));
+            assertFalse(manager.contains(null));
+            assertEquals(List.of("kept"), manager.getAllEntries());
+        }
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("kept"), reopened.getAllEntries());
+        }
+    }
+
+    @Test
+    void testRecoversFromSnapshotPlusJournalTail() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir, 4)) {
+            for (int i = 0; i < 10; i++) {
+                manager.addEntry("entry" + i);
+            }
+            manager.compact();
+            manager.deleteEntry(0);
+            manager.addEntry("after snapshot");
+        }
+        assertTrue(Files.exists(dir.resolve("snapshot.bin")));
+
+        try (CollectionManager reopened = new CollectionManager(dir, 4)) {
+            List<String> entries = reopened.getAllEntries();
+            assertEquals(10, entries.size());
+            assertEquals("entry1", entries.get(0));
+            assertEquals("after snapshot", entries.get(9));
+        }
+    }
+
+    @Test
+    void testTornTailRecordIsDiscarded() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("kept");
+            manager.addEntry("torn by the crash");
+        }
+        // a crash mid-append leaves only part of the last record on disk
+        Path journal = latestJournal();
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("kept"), reopened.getAllEntries());
+            reopened.addEntry("written after recovery");
+        }
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("kept", "written after recovery"), reopened.getAllEntries());
+        }
+    }
+
+    @Test
+    void testTornHeaderAndGarbageTailAreDiscarded() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("one");
+        }
+        Files.write(latestJournal(), new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("one"), reopened.getAllEntries());
+        }
+
+        Files.write(latestJournal(), new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 9, 9, 9, 9}, StandardOpenOption.APPEND);
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("one"), reopened.getAllEntries());
+        }
+    }
+
+    @Test
+    void testChecksumMismatchInLastRecordIsDiscarded() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("first");
+            manager.addEntry("second");
+        }
+        Path journal = latestJournal();
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[bytes.length - 1] ^= 0x20;
+        Files.write(journal, bytes);
+
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("first"), reopened.getAllEntries());
+        }
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("snapshotted");
+            manager.compact();
+        }
+        Path snapshot = dir.resolve("snapshot.bin");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 6] ^= 0x01;
+        Files.write(snapshot, bytes);
+
+        assertThrows(IOException.class, () -> new CollectionManager(dir));
+    }
+
+    @Test
+    void testMissingJournalFileFailsRecovery() throws IOException {
+        try (CollectionJournal journal = CollectionJournal.open(dir)) {
+            appendAll(journal, "a", "b");
+            journal.rotate();
+            appendAll(journal, "c", "d");
+            journal.rotate();
+            appendAll(journal, "e");
+        }
+        assertEquals(List.of("a", "b", "c", "d", "e"), recover());
+
+        // without the middle file, records 3 and 4 are gone and later ones cannot be placed
+        Files.delete(journalFile(3));
+        IOException e = assertThrows(IOException.class, () -> CollectionJournal.open(dir));
+        assertTrue(e.getMessage().contains("3 to 4 are missing"), e.getMessage());
+    }
+
+    @Test
+    void testMissingJournalFileAfterTheSnapshotFailsRecovery() throws IOException {
+        try (CollectionJournal journal = CollectionJournal.open(dir)) {
+            appendAll(journal, "a", "b");
+            journal.writeSnapshot(List.of("a", "b"), journal.rotate());
+            appendAll(journal, "c", "d");
+            journal.rotate();
+            appendAll(journal, "e");
+        }
+        // the snapshot made the first file redundant
+        assertFalse(Files.exists(journalFile(1)));
+        assertEquals(List.of("a", "b", "c", "d", "e"), recover());
+
+        Files.delete(journalFile(3));
+        assertThrows(IOException.class, () -> CollectionJournal.open(dir));
+    }
+
+    @Test
+    void testInterruptedAppendLeavesTheJournalWritable() throws Exception {
+        List<String> written = new ArrayList<>();
+        AtomicInteger interrupted = new AtomicInteger();
+        try (CollectionJournal journal = CollectionJournal.open(dir)) {
+            CountDownLatch started = new CountDownLatch(1);
+            Thread writer = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 2000; i++) {
+                    try {
+                        journal.append(CollectionJournal.Op.ADD, 0, "entry " + i);
+                        written.add("entry " + i);
+                    } catch (InterruptedIOException e) {
+                        // the record was not written; the interrupt is still pending for the caller
+                        assertTrue(Thread.interrupted());
+                        interrupted.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            writer.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            while (writer.isAlive()) {
+                writer.interrupt();
+                Thread.sleep(0, 50_000);
+            }
+            writer.join();
+            assertTrue(interrupted.get() > 0);
+            appendAll(journal, "after the interrupts");
+            written.add("after the interrupts");
+        }
+        assertEquals(written, recover());
+    }
+
+    @Test
+    void testInterruptedCallerCanStillWriteTheCollectionLater() throws IOException {
+        try (CollectionManager manager = new CollectionManager(dir)) {
+            manager.addEntry("before");
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(FileProcessingException.class, () -> manager.addEntry("interrupted"));
+                assertTrue(Thread.currentThread().isInterrupted());
+            } finally {
+                Thread.interrupted();
+            }
+            assertEquals(List.of("before"), manager.getAllEntries());
+            manager.addEntry("after");
+        }
+        try (CollectionManager reopened = new CollectionManager(dir)) {
+            assertEquals(List.of("before", "after"), reopened.getAllEntries());
+        }
+    }
+
+    @Test
+    void testWritesFailAfterClose() throws IOException {
+        CollectionManager manager = new CollectionManager(dir);
+        manager.close();
+        assertThrows(FileProcessingException.class, () -> manager.addEntry("too late"));
+    }
+
+    private static void appendAll(CollectionJournal journal, String... contents) throws IOException {
+        for (String content : contents) {
+            journal.awaitDurable(journal.append(CollectionJournal.Op.ADD, 0, content));
+        }
+    }
+
+    private List<String> recover() throws IOException {
+        try (CollectionJournal journal = CollectionJournal.open(dir)) {
+            return journal.recovered().entries();
+        }
+    }
+
+    private Path journalFile(long firstSeq) {
+        return dir.resolve(String.format("journal-%019d.log", firstSeq));
+    }
+
+    private Path latestJournal() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log"))
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package test;
+
+import exceptions.RegexTimeoutException;
+import model.FileMatch;
+import model.ReplacementRuleSet;
+import utils.FileHandlerUtil;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class FileHandlerUtilTest {
+
+    private final FileHandlerUtil fileHandler = new FileHandlerUtil();
+    private Path tempFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFile = Files.createTempFile("file_handler", ".txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    void testSearchFile_matchesAcrossChunkBoundariesWithMultiByteText() throws IOException {
+        // 2-, 3- and 4-byte characters everywhere, so chunk edges land inside sequences and matches
+        String[] words = {"café", "€uro", "😀", "naïve", "x@y.io", "straße", "日本語", "a😀b", "plain"};
+        Random random = new Random(3);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 20_000) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(4) == 0 ? "\n" : " ");
+        }
+        Files.writeString(tempFile, text);
+        Pattern pattern = Pattern.compile("\\S+@\\S+|€\\w+|😀|\\p{L}{5,}");
+
+        List<FileMatch> expected = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        long bytesBefore = 0;
+        int charsBefore = 0;
+        while (matcher.find()) {
+            bytesBefore += utf8Length(text, charsBefore, matcher.start());
+            long byteEnd = bytesBefore + utf8Length(text, matcher.start(), matcher.end());
+            expected.add(new FileMatch(matcher.start(), matcher.end(), bytesBefore, byteEnd, matcher.group()));
+            charsBefore = matcher.start();
+        }
+
+        for (int chunkSize : new int[]{7, 37, 4096}) {
+            List<FileMatch> found = new ArrayList<>();
+            long count = fileHandler.searchFile(tempFile.toString(), pattern, chunkSize, 16, found::add);
+            assertEquals(expected, found, "chunk size " + chunkSize);
+            assertEquals(expected.size(), count);
+        }
+
+        // byte offsets point at the matched bytes in the file itself
+        byte[] bytes = Files.readAllBytes(tempFile);
+        FileMatch last = expected.get(expected.size() - 1);
+        assertEquals(last.value(), new String(bytes, (int) last.byteStart(), (int) (last.byteEnd() - last.byteStart()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testBatchProcessFileParallel_keepsLineOrderOfSequentialRun() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(i % 7 == 0 ? "" : "line " + i + (i % 3 == 0 ? " ünï" : "")).append(i % 11 == 0 ? "\r\n" : "\n");
+        }
+        text.append("last line without newline");
+        Files.writeString(tempFile, text);
+
+        List<String> sequential = fileHandler.batchProcessFile(tempFile.toString(), line -> !line.isEmpty(), String::toUpperCase);
+        for (int parallelism : new int[]{1, 2, 8}) {
+            List<Integer> rangeSizes = new ArrayList<>();
+            List<String> streamed = new ArrayList<>();
+            fileHandler.batchProcessFileParallel(tempFile.toString(), line -> !line.isEmpty(), String::toUpperCase,
+                    parallelism, 1000, range -> {
+                        rangeSizes.add(range.size());
+                        streamed.addAll(range);
+                    });
+            assertEquals(sequential, streamed, "parallelism " + parallelism);
+            // output arrives range by range rather than once at the end
+            assertTrue(rangeSizes.size() > 10);
+            assertEquals(sequential, fileHandler.batchProcessFileParallel(tempFile.toString(), line -> !line.isEmpty(),
+                    String::toUpperCase, parallelism, 1000));
+        }
+    }
+
+    @Test
+    void testReplaceFile_keepsPermissionsOfTheFileItReplaces() throws IOException {
+        if (Files.getFileAttributeView(tempFile, PosixFileAttributeView.class) == null) return;
+        Set<PosixFilePermission> groupReadable = PosixFilePermissions.fromString("rw-r-----");
+        Files.writeString(tempFile, "one two one");
+        Files.setPosixFilePermissions(tempFile, groupReadable);
+
+        long replaced = fileHandler.replaceFile(tempFile.toString(), tempFile.toString(), Pattern.compile("one"), "1", 4, 8);
+        assertEquals(2, replaced);
+        assertEquals("1 two 1", Files.readString(tempFile));
+        assertEquals(groupReadable, Files.getPosixFilePermissions(tempFile));
+
+        // a new output takes the input's permissions
+        Path output = tempFile.resolveSibling(tempFile.getFileName() + ".out");
+        try {
+            Files.setPosixFilePermissions(tempFile, PosixFilePermissions.fromString("rw-rw-r--"));
+            fileHandler.replaceFile(tempFile.toString(), output.toString(), Pattern.compile("two"), "2", 4, 8);
+            assertEquals("1 2 1", Files.readString(output));
+            assertEquals(PosixFilePermissions.fromString("rw-rw-r--"), Files.getPosixFilePermissions(output));
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    void testRegexBudgetAppliesToEachWindowOfAFile() throws IOException {
+        // no X anywhere, so every window tries every split of its commas over the 12 repeats
+        Files.writeString(tempFile, ",".repeat(60));
+        Pattern runaway = Pattern.compile("(.*,){12}X");
+        fileHandler.setRegexBudget(Duration.ofMillis(100));
+
+        assertThrows(RegexTimeoutException.class, () -> fileHandler.replaceFile(tempFile.toString(), tempFile.toString(),
+                ReplacementRuleSet.single(runaway, "y"), 4096, 64));
+        assertThrows(RegexTimeoutException.class, () -> fileHandler.searchFile(tempFile.toString(), runaway, 4096, 64, match -> { }));
+        // the aborted rewrite leaves the file and its directory as they were
+        assertEquals(",".repeat(60), Files.readString(tempFile));
+        try (var siblings = Files.list(tempFile.getParent())) {
+            assertTrue(siblings.noneMatch(path -> path.getFileName().toString().startsWith(tempFile.getFileName() + ".")));
+        }
+
+        // a budget far below the whole run's cost still lets a long, well-behaved file through
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) text.append("word").append(i).append(i % 10 == 0 ? '\n' : ' ');
+        Files.writeString(tempFile, text);
+        fileHandler.setRegexBudget(Duration.ofMillis(50));
+        assertEquals(200_000, fileHandler.replaceFile(tempFile.toString(), tempFile.toString(),
+                Pattern.compile("word(\\d+)"), "w$1", 1 << 12, 64));
+    }
+
+    private static long utf8Length(CharSequence text, int start, int end) {
+        return text.subSequence(start, end).toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+}
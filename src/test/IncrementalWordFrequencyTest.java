@@ -0,0 +1,87 @@
+package test;
+
+import controller.TextProcessorController;
+import model.IncrementalWordFrequency;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Random;
+
+public class IncrementalWordFrequencyTest {
+
+    private final TextProcessorController controller = new TextProcessorController();
+
+    @Test
+    void testEditsThatSplitAndJoinWords() {
+        IncrementalWordFrequency frequency = new IncrementalWordFrequency();
+        String text = "cat dog cat";
+        frequency.setText(text);
+        assertEquals(Map.of("cat", 2L, "dog", 1L), frequency.snapshot());
+
+        // a space inside "dog" splits it in two
+        frequency.replace(text, 5, 5, " ");
+        text = "cat d og cat";
+        assertEquals(Map.of("cat", 2L, "d", 1L, "og", 1L), frequency.snapshot());
+
+        // deleting the separators around "d" joins three words into one
+        frequency.replace(text, 5, 6, "");
+        text = "cat dog cat";
+        frequency.replace(text, 3, 4, "");
+        text = "catdog cat";
+        assertEquals(Map.of("catdog", 1L, "cat", 1L), frequency.snapshot());
+
+        // a digit joins "cat9dog" into one token, which is not all letters and so not counted
+        frequency.replace(text, 3, 3, "9");
+        text = "cat9dog cat";
+        assertEquals(controller.wordFrequency(text), frequency.snapshot());
+        assertEquals(text.length(), frequency.length());
+
+        assertThrows(IllegalArgumentException.class, () -> frequency.replace("stale", 0, 1, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> frequency.replace("cat9dog cat", 5, 12, "x"));
+    }
+
+    @Test
+    void testAppendJoinsTheLastWordWithTheNextChunk() {
+        IncrementalWordFrequency frequency = new IncrementalWordFrequency();
+        frequency.append("the ca");
+        frequency.append("t sat on the");
+        frequency.append("");
+        frequency.append("m");
+        assertEquals(Map.of("the", 1L, "cat", 1L, "sat", 1L, "on", 1L, "them", 1L), frequency.snapshot());
+
+        frequency.append("\nagain");
+        assertEquals(controller.wordFrequency("the cat sat on them\nagain"), frequency.snapshot());
+        assertEquals(25, frequency.length());
+
+        // an edit at the end moves the word appends continue from
+        String text = "the cat sat on them\nagain";
+        frequency.replace(text, 20, 25, "once mo");
+        frequency.append("re");
+        assertEquals(controller.wordFrequency("the cat sat on them\nonce more"), frequency.snapshot());
+    }
+
+    @Test
+    void testRandomEditsMatchAFullRecount() {
+        Random random = new Random(8);
+        String[] pieces = {"", " ", "a", "Word", "x y", "\n", "-", "ÉTÉ", "straße", "42", "İ"};
+        StringBuilder expected = new StringBuilder();
+        IncrementalWordFrequency frequency = new IncrementalWordFrequency();
+
+        for (int i = 0; i < 3000; i++) {
+            String piece = pieces[random.nextInt(pieces.length)];
+            if (random.nextInt(5) == 0) {
+                frequency.append(piece);
+                expected.append(piece);
+            } else {
+                int start = random.nextInt(expected.length() + 1);
+                int end = Math.min(expected.length(), start + random.nextInt(6));
+                frequency.replace(expected.toString(), start, end, piece);
+                expected.replace(start, end, piece);
+            }
+            if (i % 100 == 0) assertEquals(controller.wordFrequency(expected.toString()), frequency.snapshot(), "edit " + i);
+        }
+        assertEquals(controller.wordFrequency(expected.toString()), frequency.snapshot());
+        assertEquals(expected.length(), frequency.length());
+    }
+}
@@ -0,0 +1,110 @@
+package test;
+
+import controller.JobRunner;
+import controller.TextProcessorController;
+import exceptions.FileProcessingException;
+import processor.TextSummarizer;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class JobRunnerTest {
+
+    private final TextProcessorController controller = new TextProcessorController();
+    private Path root;
+    private Path outputDir;
+    private final Map<String, String> texts = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("jobs_in");
+        outputDir = Files.createTempDirectory("jobs_out");
+        Random random = new Random(10);
+        String[] words = {"alpha", "Beta", "gamma", "mail", "café", "x@y.io", "the"};
+        for (int f = 0; f < 12; f++) {
+            StringBuilder text = new StringBuilder();
+            // one file spans several read chunks
+            int sentences = f == 0 ? 20_000 : 5 + random.nextInt(50);
+            for (int s = 0; s < sentences; s++) {
+                for (int w = 0; w < 1 + random.nextInt(8); w++) text.append(words[random.nextInt(words.length)]).append(' ');
+                text.append("user").append(s).append("@example.com said ").append(f).append(".\n");
+            }
+            String name = (f % 2 == 0 ? "a/" : "b/c/") + "file" + f + ".txt";
+            Files.createDirectories(root.resolve(name).getParent());
+            Files.writeString(root.resolve(name), text);
+            texts.put(name, text.toString());
+        }
+        Files.writeString(root.resolve("skipped.log"), "not matched by the glob user1@example.com");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path dir : new Path[]{root, outputDir}) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void testExtractWritesEveryMatchPerFile() throws IOException, FileProcessingException {
+        String regex = "\\w+@example\\.com";
+        AtomicInteger callbacks = new AtomicInteger();
+        JobRunner.Report report = controller.runJob(JobRunner.Spec.extract(root, "**.txt", regex, outputDir), new JobRunner.Listener() {
+            @Override
+            public void onFileResult(JobRunner.FileResult result) {
+                callbacks.incrementAndGet();
+            }
+        });
+
+        assertEquals(texts.size(), report.progress().completed());
+        assertEquals(0, report.progress().failed());
+        assertEquals(texts.size(), callbacks.get());
+        for (Map.Entry<String, String> entry : texts.entrySet()) {
+            StringBuilder expected = new StringBuilder();
+            Matcher matcher = Pattern.compile(regex).matcher(entry.getValue());
+            while (matcher.find()) {
+                expected.append(matcher.start()).append('\t').append(matcher.end()).append('\t').append(matcher.group()).append('\n');
+            }
+            assertEquals(expected.toString(), Files.readString(outputDir.resolve(entry.getKey() + ".matches")), entry.getKey());
+        }
+        assertFalse(Files.exists(outputDir.resolve("skipped.log.matches")));
+    }
+
+    @Test
+    void testFrequencyAndSummarizeMatchTheInMemoryResults() throws FileProcessingException {
+        JobRunner.Report frequency = controller.runJob(JobRunner.Spec.frequency(root, "**.txt"), new JobRunner.Listener() { });
+        Map<String, Long> expected = new HashMap<>();
+        for (String text : texts.values()) controller.wordFrequency(text).forEach((word, count) -> expected.merge(word, count, Long::sum));
+        assertEquals(expected, frequency.corpusFrequency());
+        assertEquals(texts.size(), frequency.results().size());
+
+        // far more requested than there are cores; the run is capped, not refused
+        JobRunner.Report summaries = controller.runJob(JobRunner.Spec.summarize(root, "**.txt", 2).withConcurrency(500),
+                new JobRunner.Listener() { });
+        assertEquals(texts.size(), summaries.progress().completed());
+        for (JobRunner.FileResult result : summaries.results()) {
+            assertTrue(result.success(), String.valueOf(result.error()));
+            String name = root.relativize(result.path()).toString().replace('\\', '/');
+            assertEquals(TextSummarizer.summarizeText(texts.get(name), 2), result.output());
+        }
+    }
+
+    @Test
+    void testMissingOutputDirectoryFailsEachFile() throws FileProcessingException {
+        JobRunner.Spec spec = new JobRunner.Spec(root, "a/**", JobRunner.Operation.EXTRACT, 4, "x", null, null, null, null, 0, null);
+        JobRunner.Report report = controller.runJob(spec, new JobRunner.Listener() { });
+        assertEquals(6, report.progress().failed());
+        assertTrue(report.results().stream().noneMatch(JobRunner.FileResult::success));
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.runJob(JobRunner.Spec.frequency(root, "**").withConcurrency(0), new JobRunner.Listener() { }));
+    }
+}
@@ -0,0 +1,93 @@
+package test;
+
+import utils.LoggerUtil;
+import utils.RotatingLogHandler;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Stream;
+
+public class LoggerUtilTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("logs");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        LoggerUtil.configure(LoggerUtil.Settings.defaults());
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    @Test
+    void testAsyncLogRotatesBySize() throws Exception {
+        Path log = dir.resolve("test.log");
+        LoggerUtil.configure(new LoggerUtil.Settings(log, 4096, 2, false, 64, RotatingLogHandler.OverflowPolicy.BLOCK));
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            LoggerUtil.logInfo(() -> "message " + n);
+        }
+        LoggerUtil.flush();
+
+        assertTrue(Files.readString(log).contains("INFO: message 499"));
+        assertTrue(Files.size(dir.resolve("test.log.1")) >= 4096);
+        assertTrue(Files.exists(dir.resolve("test.log.2")));
+        assertFalse(Files.exists(dir.resolve("test.log.3")));
+    }
+
+    @Test
+    void testDropPolicyDiscardsWhatDoesNotFitAndReportsIt() throws Exception {
+        Path log = dir.resolve("drop.log");
+        RotatingLogHandler handler = new RotatingLogHandler(log, 0, 0, false, 4, RotatingLogHandler.OverflowPolicy.DROP);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the writer stalls on the first record, so the queue stays full until it is released
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    writerBusy.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return record.getLevel() + ": " + record.getMessage() + "\n";
+                }
+            });
+            handler.publish(new LogRecord(Level.INFO, "kept 0"));
+            assertTrue(writerBusy.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < 10; i++) handler.publish(new LogRecord(Level.INFO, (i < 4 ? "kept " : "lost ") + i));
+            assertEquals(6, handler.droppedCount());
+
+            release.countDown();
+            handler.flush();
+            String written = Files.readString(log);
+            assertEquals("INFO: kept 0\nINFO: kept 1\nINFO: kept 2\nINFO: kept 3\nWARNING: 6 log messages dropped: queue full\n",
+                    written);
+
+            // the count is a running total; the log only reports drops it has not reported yet
+            handler.publish(new LogRecord(Level.INFO, "after"));
+            handler.flush();
+            assertEquals(6, handler.droppedCount());
+            assertEquals(written + "INFO: after\n", Files.readString(log));
+        } finally {
+            release.countDown();
+            handler.close();
+        }
+    }
+}
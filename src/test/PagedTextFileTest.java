@@ -0,0 +1,113 @@
+package test;
+
+import controller.TextProcessorController;
+import exceptions.FileProcessingException;
+import exceptions.NoPatternSelectedException;
+import model.FileMatch;
+import model.MatchList;
+import utils.PagedTextFile;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PagedTextFileTest {
+
+    private Path tempFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFile = Files.createTempFile("paged", ".txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    void testPagesMatchTheFileLineByLine() throws IOException {
+        List<String> expected = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = i % 10 == 0 ? "" : "line " + i + " café";
+            expected.add(line);
+            text.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        text.append("no newline at the end");
+        expected.add("no newline at the end");
+        Files.writeString(tempFile, text);
+
+        try (PagedTextFile file = new PagedTextFile(tempFile)) {
+            List<Double> progress = new ArrayList<>();
+            file.index(progress::add);
+            assertEquals(1.0, progress.get(progress.size() - 1));
+            assertEquals(expected.size(), file.lineCount());
+            // out of order, so pages are read across cache misses
+            assertEquals(expected.get(999), file.line(999));
+            assertEquals(expected.get(1), file.line(1));
+            assertEquals(expected.subList(60, 140), file.lines(60, 80));
+            assertEquals(expected, file.lines(0, Integer.MAX_VALUE - 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> file.line(expected.size()));
+        }
+    }
+
+    @Test
+    void testLongLinesWrapOnCharacterBoundaries() throws IOException {
+        // 3-byte characters, so MAX_LINE_BYTES falls inside one
+        String longLine = "€".repeat(PagedTextFile.MAX_LINE_BYTES);
+        Files.writeString(tempFile, "short\n" + longLine + "\nlast\n");
+
+        try (PagedTextFile file = new PagedTextFile(tempFile)) {
+            file.index(fraction -> { });
+            StringBuilder rejoined = new StringBuilder();
+            for (int i = 1; i < file.lineCount() - 1; i++) {
+                String part = file.line(i);
+                assertTrue(part.getBytes(StandardCharsets.UTF_8).length <= PagedTextFile.MAX_LINE_BYTES);
+                rejoined.append(part);
+            }
+            assertEquals(longLine, rejoined.toString());
+            assertEquals("short", file.line(0));
+            assertEquals("last", file.line(file.lineCount() - 1));
+            assertEquals(file.lineCount() - 1, file.lineAt(Files.size(tempFile) - 2));
+        }
+    }
+
+    @Test
+    void testMatchOffsetsResolveToLinesAndText() throws IOException, FileProcessingException, NoPatternSelectedException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(i % 250 == 0 ? "mail user" + i + "@example.com today\n" : "nothing here " + i + "\n");
+        }
+        Files.writeString(tempFile, text);
+
+        TextProcessorController controller = new TextProcessorController();
+        MatchList matches = new MatchList();
+        controller.searchFile(tempFile.toString(), "Email", "", (FileMatch match) -> matches.add(match.byteStart(), match.byteEnd()));
+        assertEquals(20, matches.size());
+
+        try (PagedTextFile file = controller.openPagedFile(tempFile.toString(), fraction -> { })) {
+            for (int i = 0; i < matches.size(); i++) {
+                int line = file.lineAt(matches.start(i));
+                assertEquals(i * 250, line);
+                assertEquals("user" + line + "@example.com", file.text(matches.start(i), matches.end(i), 500));
+                assertTrue(file.line(line).contains(file.text(matches.start(i), matches.end(i), 500)));
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> matches.start(20));
+    }
+
+    @Test
+    void testMatchListGrowsAcrossChunks() {
+        MatchList matches = new MatchList();
+        for (int i = 0; i < 100_000; i++) matches.add(i * 10L, i * 10L + 3);
+        assertEquals(100_000, matches.size());
+        assertEquals(999_990L, matches.start(99_999));
+        assertEquals(163_843L, matches.end(16_384));
+    }
+}
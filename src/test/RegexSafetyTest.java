@@ -0,0 +1,204 @@
+package test;
+
+import controller.TextProcessorController;
+import exceptions.RegexTimeoutException;
+import model.DeadlineCharSequence;
+import model.PatternCache;
+import model.RegexSafetyAnalyzer;
+import model.ReplacementRuleSet;
+import model.TextMatch;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class RegexSafetyTest {
+
+    // with no X in the input, every way of spreading 60 commas over 12 repeats is tried: about 60^12 paths.
+    // (Nested quantifiers like (a+)+$ no longer explode, since the JDK memoizes their loops.)
+    private static final String CATASTROPHIC = "(.*,){12}X";
+    private static final String HOSTILE_INPUT = ",".repeat(60);
+
+    @Test
+    void testDeadlineStopsCatastrophicBacktracking() {
+        long start = System.nanoTime();
+        Matcher matcher = Pattern.compile(CATASTROPHIC).matcher(DeadlineCharSequence.withBudget(HOSTILE_INPUT, Duration.ofMillis(100)));
+        RegexTimeoutException e = assertThrows(RegexTimeoutException.class, matcher::find);
+        assertTrue(e.getMessage().contains("100 ms"), e.getMessage());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(10).toNanos());
+
+        // a well-behaved pattern finds the same matches through the wrapper as on the plain text
+        String text = "mail a@b.io or c@d.org, not e@";
+        assertEquals(matches("\\w+@\\w+\\.\\w+", text),
+                matches("\\w+@\\w+\\.\\w+", DeadlineCharSequence.withBudget(text, Duration.ofMillis(100))));
+    }
+
+    @Test
+    void testDeadlineStopsWhenTheThreadIsInterrupted() {
+        Matcher matcher = Pattern.compile(CATASTROPHIC).matcher(DeadlineCharSequence.withBudget(HOSTILE_INPUT, Duration.ofHours(1)));
+        Thread.currentThread().interrupt();
+        try {
+            RegexTimeoutException e = assertThrows(RegexTimeoutException.class, matcher::find);
+            assertTrue(e.getMessage().contains("interrupted"), e.getMessage());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void testControllerAppliesTheBudgetToSearchAndReplace() throws Exception {
+        TextProcessorController controller = new TextProcessorController();
+        controller.setRegexTimeBudget(Duration.ofMillis(100));
+        assertThrows(RegexTimeoutException.class, () -> controller.findMatches(HOSTILE_INPUT, null, CATASTROPHIC));
+        assertThrows(RegexTimeoutException.class, () -> controller.countMatches(HOSTILE_INPUT, null, CATASTROPHIC));
+        assertThrows(RegexTimeoutException.class, () -> controller.replaceText(HOSTILE_INPUT, CATASTROPHIC, "x"));
+        // file and stream operations get the same budget for each window they match
+        Path file = Files.createTempFile("regex_budget", ".txt");
+        try {
+            Files.writeString(file, HOSTILE_INPUT);
+            assertThrows(RegexTimeoutException.class, () -> controller.replaceFile(file.toString(), file.toString(), CATASTROPHIC, "x"));
+            assertThrows(RegexTimeoutException.class, () -> controller.applyRulesToFile(file.toString(), file.toString(),
+                    ReplacementRuleSet.single(Pattern.compile(CATASTROPHIC), "x")));
+            assertThrows(RegexTimeoutException.class, () -> controller.searchFile(file.toString(), null, CATASTROPHIC, match -> { }));
+            try (FileChannel in = FileChannel.open(file)) {
+                assertThrows(RegexTimeoutException.class, () -> controller.replaceStream(in, new StringWriter(), CATASTROPHIC, "x"));
+            }
+            assertEquals(HOSTILE_INPUT, Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        // the same pattern is harmless on input it matches quickly
+        assertEquals(List.of("a,b,c,d,e,f,g,h,i,j,k,l,X"), controller.findMatches("a,b,c,d,e,f,g,h,i,j,k,l,X", null, CATASTROPHIC));
+    }
+
+    @Test
+    void testMatchStreamBudgetsEachFindOnTheConsumingThread() throws Exception {
+        TextProcessorController controller = new TextProcessorController();
+        controller.setRegexTimeBudget(Duration.ofMillis(200));
+        String text = "ab".repeat(150_000);
+        ExecutorService creator = Executors.newSingleThreadExecutor();
+        ExecutorService consumer = Executors.newSingleThreadExecutor();
+        try {
+            // created on a fresh thread, consumed on one that has already used far more CPU than the budget
+            Stream<TextMatch> matches = creator.submit(() -> controller.matchStream(text, null, "a(b)")).get();
+            long count = consumer.submit(() -> {
+                burnCpu(Duration.ofMillis(600));
+                // time spent on each match by the consumer does not count against the regex either
+                return matches.peek(match -> {
+                    if (match.start() % 50_000 == 0) burnCpu(Duration.ofMillis(100));
+                }).count();
+            }).get(30, TimeUnit.SECONDS);
+            assertEquals(150_000, count);
+
+            // a single runaway find still stops, wherever the stream is consumed
+            Stream<TextMatch> hostile = creator.submit(() -> controller.matchStream(HOSTILE_INPUT, null, CATASTROPHIC)).get();
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> consumer.submit(() -> hostile.count()).get(30, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof RegexTimeoutException, String.valueOf(e.getCause()));
+        } finally {
+            creator.shutdownNow();
+            consumer.shutdownNow();
+        }
+    }
+
+    @Test
+    void testAnalyzerWarnsAboutNestedQuantifiers() {
+        for (String regex : new String[]{"(a+)+", "(a*)*b", "(?:\\w+\\s?)+$", "(.*a){20}", "(x+x+)+y",
+                "((a+)b)+", "(a{2,})+", "(?<name>\\d+)+", "([a-z]+)*[0-9]", CATASTROPHIC}) {
+            List<String> warnings = RegexSafetyAnalyzer.analyze(regex);
+            assertEquals(1, warnings.size(), regex + " " + warnings);
+            assertTrue(warnings.get(0).startsWith("Nested quantifier at index 0"), warnings.get(0));
+        }
+        // the index points at the group, after any leading flags or text
+        assertEquals(List.of("Nested quantifier at index 4: (a+)+ can backtrack exponentially."),
+                RegexSafetyAnalyzer.analyze("(?i)(a+)+"));
+    }
+
+    @Test
+    void testAnalyzerWarnsAboutRepeatedOverlappingAlternatives() {
+        assertEquals(List.of("Repeated alternation with overlapping branches at index 0: (a|a)* can backtrack exponentially."),
+                RegexSafetyAnalyzer.analyze("(a|a)*"));
+        assertEquals(1, RegexSafetyAnalyzer.analyze("x(a|ab)+").size());
+    }
+
+    @Test
+    void testAnalyzerAcceptsSafeShapes() {
+        // quantifiers inside classes or after escaped parens, small repeat counts, disjoint branches
+        for (String regex : new String[]{"\\w+@\\w+\\.com", "(ab)+", "[a+]+", "\\(a+\\)+", "(a+){2}", "(a|b)*",
+                "(a+)?", "\\b\\d{4}-\\d{2}-\\d{2}\\b"}) {
+            assertEquals(List.of(), RegexSafetyAnalyzer.analyze(regex), regex);
+        }
+        assertEquals(RegexSafetyAnalyzer.analyze("(a+)+"), new TextProcessorController().analyzeRegex("(a+)+"));
+    }
+
+    @Test
+    void testWarningsAreAnalysedOnceAndLoggedOncePerPattern() throws Exception {
+        PatternCache cache = new PatternCache(16);
+        assertEquals(RegexSafetyAnalyzer.analyze("(a+)+"), cache.unreportedWarnings("(a+)+"));
+        assertEquals(List.of(), cache.unreportedWarnings("(a+)+"));
+        assertSame(cache.warnings("(a+)+"), cache.warnings("(a+)+"));
+        // an invalid regex is left for the compile to report
+        assertEquals(List.of(), cache.unreportedWarnings("((a+)+"));
+        assertEquals(RegexSafetyAnalyzer.analyze("((a+)+"), cache.warnings("((a+)+"));
+
+        List<String> logged = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel() == Level.WARNING) logged.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger("TextProcessorLogger");
+        logger.addHandler(handler);
+        try {
+            TextProcessorController controller = new TextProcessorController(new PatternCache(16));
+            for (int i = 0; i < 3; i++) {
+                controller.findMatches("aaa b", null, "(a+)+");
+                controller.countMatches("aaa b", null, "(b+)+");
+            }
+            assertEquals(List.of(RegexSafetyAnalyzer.analyze("(a+)+").get(0), RegexSafetyAnalyzer.analyze("(b+)+").get(0)), logged);
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    // Spins until the calling thread has run for at least the given time.
+    private static void burnCpu(Duration time) {
+        long end = System.nanoTime() + time.toNanos();
+        long spins = 0;
+        while (System.nanoTime() < end) spins++;
+        assertTrue(spins > 0);
+    }
+
+    private static List<String> matches(String regex, CharSequence text) {
+        List<String> found = new ArrayList<>();
+        Matcher matcher = Pattern.compile(regex).matcher(text);
+        while (matcher.find()) found.add(matcher.group());
+        return found;
+    }
+}
@@ -0,0 +1,133 @@
+package test;
+
+import model.SpaceSavingSketch;
+import model.WordEstimate;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SpaceSavingSketchTest {
+
+    @Test
+    void testEstimatesStayWithinTheErrorBound() {
+        List<String> stream = zipfStream(new Random(11), 50_000, 5000);
+        SpaceSavingSketch sketch = new SpaceSavingSketch(100);
+        stream.forEach(sketch::offer);
+
+        assertWithinBounds(sketch, counts(stream), stream.size());
+        assertEquals(100, sketch.size());
+    }
+
+    @Test
+    void testMergedSketchKeepsTheBoundOverBothInputs() {
+        Random random = new Random(5);
+        List<String> first = zipfStream(random, 30_000, 4000);
+        // a different head in the second half, so merging has to reconcile words missing from one side
+        List<String> second = new ArrayList<>();
+        for (String word : zipfStream(random, 20_000, 4000)) second.add("b" + word);
+        second.addAll(first.subList(0, 5000));
+
+        SpaceSavingSketch left = new SpaceSavingSketch(100);
+        SpaceSavingSketch right = new SpaceSavingSketch(100);
+        first.forEach(left::offer);
+        second.forEach(right::offer);
+        SpaceSavingSketch merged = left.merge(right);
+
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        assertEquals(100, merged.capacity());
+        assertEquals(all.size(), merged.totalCount());
+        assertWithinBounds(merged, counts(all), all.size());
+        // a small sketch that never filled up merges without any error
+        SpaceSavingSketch exact = new SpaceSavingSketch(10);
+        exact.offer("x", 3);
+        exact.offer("y");
+        SpaceSavingSketch exactMerged = exact.merge(exact);
+        assertEquals(List.of(new WordEstimate("x", 6, 0), new WordEstimate("y", 2, 0)), exactMerged.topK(5));
+    }
+
+    @Test
+    void testMergeOfUnequalCapacitiesKeepsTheSmallerSketchsError() {
+        Random random = new Random(8);
+        // the small sketch is full and has evicted words; the large one and the merge never fill up
+        List<String> first = zipfStream(random, 20_000, 2000);
+        List<String> second = new ArrayList<>();
+        for (String word : zipfStream(random, 2000, 50)) second.add("r" + word);
+        SpaceSavingSketch small = new SpaceSavingSketch(20);
+        SpaceSavingSketch large = new SpaceSavingSketch(500);
+        first.forEach(small::offer);
+        second.forEach(large::offer);
+        SpaceSavingSketch merged = small.merge(large);
+
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        Map<String, Long> exact = counts(all);
+        assertTrue(merged.size() < merged.capacity());
+        assertTrue(merged.errorBound() >= small.errorBound(), merged.errorBound() + " < " + small.errorBound());
+        assertWithinErrorBound(merged, exact, first.size() / 20 + second.size() / 500);
+        // a dropped word that comes back is counted on top of the error it may already carry
+        String dropped = first.stream().filter(word -> merged.topK(merged.size()).stream()
+                .noneMatch(estimate -> estimate.word().equals(word))).findFirst().orElseThrow();
+        merged.offer(dropped);
+        exact.merge(dropped, 1L, Long::sum);
+        assertWithinErrorBound(merged, exact, (first.size() + 1) / 20 + second.size() / 500);
+        assertEquals(all.size() + 1, merged.totalCount());
+    }
+
+    // Every tracked count is an overestimate by at most its error and by at most total / capacity,
+    // and every word frequent enough to matter is tracked.
+    private static void assertWithinBounds(SpaceSavingSketch sketch, Map<String, Long> exact, long total) {
+        assertWithinErrorBound(sketch, exact, total / sketch.capacity());
+    }
+
+    private static void assertWithinErrorBound(SpaceSavingSketch sketch, Map<String, Long> exact, long bound) {
+        assertTrue(sketch.errorBound() <= bound, sketch.errorBound() + " > " + bound);
+        List<WordEstimate> top = sketch.topK(Integer.MAX_VALUE);
+        Map<String, WordEstimate> tracked = new HashMap<>();
+        for (WordEstimate estimate : top) {
+            long actual = exact.getOrDefault(estimate.word(), 0L);
+            assertTrue(estimate.guaranteedCount() <= actual && actual <= estimate.count(), estimate + " vs " + actual);
+            assertTrue(estimate.count() - actual <= sketch.errorBound(), estimate + " vs " + actual);
+            tracked.put(estimate.word(), estimate);
+        }
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            assertTrue(sketch.estimate(entry.getKey()) >= entry.getValue(), entry.getKey());
+            if (entry.getValue() > bound) assertTrue(tracked.containsKey(entry.getKey()), entry.getKey());
+        }
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).count() >= top.get(i).count());
+        }
+    }
+
+    private static List<String> zipfStream(Random random, int length, int vocabulary) {
+        double[] cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int i = 0; i < vocabulary; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        List<String> stream = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            double r = random.nextDouble() * sum;
+            int lo = 0;
+            int hi = vocabulary - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] < r) lo = mid + 1; else hi = mid;
+            }
+            stream.add("w" + lo);
+        }
+        return stream;
+    }
+
+    private static Map<String, Long> counts(List<String> stream) {
+        Map<String, Long> counts = new HashMap<>();
+        for (String word : stream) counts.merge(word, 1L, Long::sum);
+        return counts;
+    }
+}
@@ -0,0 +1,104 @@
+package test;
+
+import controller.TextProcessorController;
+import exceptions.InvalidRegexPatternException;
+import model.TextManager;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class TextManagerTest {
+
+    @Test
+    void testRandomEditsMatchAStringBuilder() {
+        Random random = new Random(7);
+        String[] pieces = {"", "a", "héllo ", "\n", "x".repeat(300), "surrogate 😀 pair", "y".repeat(5000)};
+        StringBuilder expected = new StringBuilder("start ".repeat(3000));
+        TextManager text = new TextManager(expected.toString());
+
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + random.nextInt(400));
+            String piece = pieces[random.nextInt(pieces.length)];
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    expected.insert(start, piece);
+                    text = text.insert(start, piece);
+                }
+                case 1 -> {
+                    expected.delete(start, end);
+                    text = text.delete(start, end);
+                }
+                default -> {
+                    expected.replace(start, end, piece);
+                    text = text.replace(start, end, piece);
+                }
+            }
+            assertEquals(expected.length(), text.length());
+            assertEquals(expected.toString().hashCode(), text.hashCode());
+        }
+
+        String content = expected.toString();
+        assertEquals(content, text.toString());
+        for (int i = 0; i < 1000; i++) {
+            int index = random.nextInt(content.length());
+            assertEquals(content.charAt(index), text.charAt(index));
+        }
+        assertEquals(content.substring(1234, 9876), text.subSequence(1234, 9876).toString());
+        // same content built as one slice compares equal to the edited tree
+        assertEquals(new TextManager(content), text);
+        assertEquals(text, new TextManager(content));
+        assertNotEquals(new TextManager(content + "!"), text);
+        assertThrows(IndexOutOfBoundsException.class, () -> new TextManager("abc").delete(2, 4));
+    }
+
+    @Test
+    void testUneditedTextIsHandedBackWithoutACopy() {
+        String content = "long line of text ".repeat(2000);
+        TextManager text = new TextManager(content);
+        assertSame(content, text.toString());
+        assertSame(content, text.getContent());
+        assertEquals(content.substring(17, 30_000), text.subSequence(17, 30_000).toString());
+        assertEquals(content.hashCode(), text.subSequence(0, content.length()).hashCode());
+
+        // the first edit cuts the text into pieces; later edits and the original still agree with String
+        TextManager edited = text.replace(100, 20_000, "!").insert(5, "[").append("]");
+        String expected = new StringBuilder(content).replace(100, 20_000, "!").insert(5, "[").append("]").toString();
+        assertEquals(expected, edited.toString());
+        assertEquals(expected.hashCode(), edited.hashCode());
+        assertEquals(new TextManager(expected), edited);
+        assertSame(content, text.toString());
+    }
+
+    @Test
+    void testEditsLeaveTheOriginalUnchanged() {
+        TextManager original = new TextManager("The quick brown fox");
+        TextManager edited = original.replace(4, 9, "slow").append(" sleeps");
+
+        assertEquals("The quick brown fox", original.getContent());
+        assertEquals("The slow brown fox sleeps", edited.getContent());
+        assertEquals("The slow brown fox sleeps".hashCode(), edited.hashCode());
+        assertEquals(new TextManager("brown"), edited.subSequence(9, 14));
+    }
+
+    @Test
+    void testRegexReplaceOnTextMatchesStringReplaceAll() throws InvalidRegexPatternException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            builder.append(i % 500 == 0 ? "contact user" + i + "@example.com now. " : "plain words " + i + ". ");
+        }
+        String content = builder.toString();
+        TextManager text = new TextManager(content);
+        String regex = "(?<user>\\w+)@(example)\\.com";
+
+        TextManager replaced = new TextProcessorController().replaceInText(text, regex, "$2:${user}");
+        assertEquals(Pattern.compile(regex).matcher(content).replaceAll("$2:${user}"), replaced.toString());
+        assertEquals(content, text.toString());
+
+        // regex runs against the rope itself, and a pattern with no match returns the same text
+        assertFalse(Pattern.compile("user19500@").matcher(replaced).find());
+        assertSame(text, new TextProcessorController().replaceInText(text, "no such words", "x"));
+    }
+}
@@ -1,11 +1,26 @@
 package test;
 
+import controller.OperationMetrics;
 import controller.TextProcessorController;
+import exceptions.InvalidRegexPatternException;
+import exceptions.NoPatternSelectedException;
+import model.MultiPatternExtractor;
+import model.PatternCache;
+import model.ReplacementRuleSet;
+import model.TextManager;
+import model.TextMatch;
+import model.TrigramIndex;
+import model.WordEstimate;
+import utils.CollectionManager;
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.*;
 import java.nio.file.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class TextProcessingControllerTest {
 
@@ -86,5 +101,241 @@ public class TextProcessingControllerTest {
             controller.replaceAndWriteToFile("text", "t", "T", invalidPath);
         });
     }
-}
 
+    @Test
+    void testPatternCache_reusesCompiledPatterns() {
+        PatternCache cache = new PatternCache(2);
+        TextProcessorController cachedController = new TextProcessorController(cache);
+
+        cachedController.replaceText("cat bat", "[cb]at", "rat");
+        cachedController.replaceText("cat bat", "[cb]at", "rat");
+
+        assertEquals(1, cache.getHitCount());
+        assertTrue(cache.getEvictionCount() >= 1);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testExtractAll_matchesSeparateSearches() throws Exception {
+        String input = "Mail bob@example.com on 12/25/2024, see https://www.example.org/docs now";
+
+        List<MultiPatternExtractor.Match> matches = controller.extractAll(input, Set.of("Email", "URL", "Dates"));
+
+        assertEquals(3, matches.size());
+        assertEquals("Email", matches.get(0).patternName());
+        assertEquals("bob@example.com", matches.get(0).value());
+        assertEquals(input.indexOf("bob"), matches.get(0).start());
+        assertEquals(controller.findMatches(input, "Dates", null), List.of(matches.get(1).value()));
+        assertEquals(controller.findMatches(input, "URL", null), List.of(matches.get(2).value()));
+    }
+
+    @Test
+    void testWordFrequency_countsLowercasedAlphabeticWords() {
+        Map<String, Long> result = controller.wordFrequency("The cat, the HAT; the_end r2d2 cat!");
+
+        assertEquals(Map.of("the", 2L, "cat", 2L, "hat", 1L), result);
+    }
+
+    @Test
+    void testTopWordFrequencyFile_findsHeavyHittersAcrossWindows() throws Exception {
+        // several 1 MB windows, and far more distinct words than the sketch holds
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 3_000_000; i++) {
+            text.append(i % 3 == 0 ? "alpha " : i % 5 == 0 ? "beta " : i % 7 == 0 ? "gamma " : "");
+            for (int n = i; n > 0; n /= 26) text.append((char) ('a' + n % 26));
+            text.append(i % 11 == 0 ? '\n' : ' ');
+        }
+        Files.writeString(tempFile, text);
+        Map<String, Long> exact = controller.wordFrequency(text.toString());
+
+        List<WordEstimate> top = controller.topWordFrequencyFile(tempFile.toString(), 3, 1000);
+
+        assertEquals(List.of("alpha", "beta", "gamma"), top.stream().map(WordEstimate::word).toList());
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        for (WordEstimate estimate : top) {
+            long actual = exact.get(estimate.word());
+            assertTrue(actual <= estimate.count() && estimate.count() - actual <= total / 1000, estimate + " vs " + actual);
+        }
+    }
+
+    @Test
+    void testReplaceFile_matchesReplaceText() throws Exception {
+        String input = "id=1 name=ann\nid=22 name=bob\n".repeat(50_000);
+        Files.writeString(tempFile, input);
+        Path output = Files.createTempFile("test_replaced", ".txt");
+        try {
+            long count = controller.replaceFile(tempFile.toString(), output.toString(), "id=(\\d+)", "[$1]");
+
+            assertEquals(100_000, count);
+            assertEquals(controller.replaceText(input, "id=(\\d+)", "[$1]"), Files.readString(output));
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    void testApplyRules_resolvesOverlapsInOnePass() throws Exception {
+        List<ReplacementRuleSet.Rule> rules = List.of(
+                new ReplacementRuleSet.Rule("cat", "dog"),
+                new ReplacementRuleSet.Rule("catalog", "list"),
+                new ReplacementRuleSet.Rule("dog", "cat"));
+        String input = "a cat in the catalog, a dog";
+
+        ReplacementRuleSet priority = controller.compileRules(rules, ReplacementRuleSet.Overlap.PRIORITY);
+        ReplacementRuleSet longest = controller.compileRules(rules, ReplacementRuleSet.Overlap.LONGEST);
+
+        assertEquals("a dog in the dogalog, a cat", controller.applyRules(input, priority));
+        assertEquals("a dog in the list, a cat", controller.applyRules(input, longest));
+    }
+
+    @Test
+    void testFindMatches_plainTextTermsMatchRegexResults() throws Exception {
+        String input = "Cat.cat CAT.x cat.Cat";
+
+        assertEquals(List.of("cat."), controller.findMatches(input, null, "cat\\."));
+        assertEquals(List.of("Cat.", "cat", "CAT.", "cat.", "Cat"), controller.findMatches(input, null, "(?i)cat\\.?"));
+        assertEquals(List.of("Cat.", "CAT.", "cat."), controller.findMatches(input, null, "(?i)\\Qcat.\\E"));
+        assertEquals("Cat.dog CAT.x dog.Cat", controller.replaceText(input, "cat", "dog"));
+    }
+
+    @Test
+    void testMatchStream_lazyOffsetsCountAndLimit() throws Exception {
+        String input = "Dates: 01/02/2020, 3/4/2021 and 12/31/1999.";
+
+        List<TextMatch> matches = controller.matchStream(input, null, "(\\d+)/(\\d+)/(\\d{4})").toList();
+        assertEquals(3, matches.size());
+        TextMatch second = matches.get(1);
+        assertEquals("3/4/2021", input.substring(second.start(), second.end()));
+        assertEquals("2021", second.group(3));
+        assertEquals(input.indexOf("2021"), second.start(3));
+        assertEquals(3, controller.countMatches(input, "Dates", null));
+        assertEquals(List.of("01/02/2020", "3/4/2021"), controller.findMatches(input, "Dates", null, 2));
+        assertEquals(List.of("and"), controller.findMatches(input, null, "and", 5));
+
+        // limit stops the scan: a budget-busting pattern is never run past the first match
+        String slow = "aaaa " + "a".repeat(40) + "!";
+        controller.setRegexTimeBudget(Duration.ofMillis(200));
+        assertEquals(List.of("aaaa "), controller.findMatches(slow, null, "(a+)+ ", 1));
+        assertEquals(0, controller.countMatches(new TextManager("no digits here"), "Dates", null));
+    }
+
+    @Test
+    void testSearchIndexed_findsMatchesAcrossDocumentsAndCollection() throws Exception {
+        controller.indexDocument("a.txt", "The cat sat on the mat.");
+        controller.indexDocument("b.txt", "No felines here.");
+        CollectionManager collection = new CollectionManager();
+        collection.addEntry("first entry");
+        collection.addEntry("a CAT entry");
+        controller.indexCollection(collection);
+
+        List<TrigramIndex.Hit> hits = controller.searchIndexed(null, "(?i)\\bcat\\b");
+        assertEquals(List.of(
+                new TrigramIndex.Hit("a.txt", 4, 7, "cat"),
+                new TrigramIndex.Hit("collection:1", 2, 5, "CAT")), hits);
+
+        // positions follow the collection as it changes
+        collection.deleteEntry(0);
+        collection.addEntry("cat again");
+        hits = controller.searchIndexed(null, "cat|CAT");
+        assertEquals(List.of("a.txt", "collection:0", "collection:1"),
+                hits.stream().map(TrigramIndex.Hit::document).toList());
+        assertEquals(4, controller.indexStats().documents());
+
+        // a hit in an entry removed after many others keeps pointing at the right place
+        for (int i = 0; i < 50; i++) collection.addEntry("filler " + i);
+        collection.addEntry("last cat");
+        for (int i = 0; i < 25; i++) collection.deleteEntry(2);
+        hits = controller.searchIndexed(null, "last cat");
+        assertEquals(List.of(new TrigramIndex.Hit("collection:27", 0, 8, "last cat")), hits);
+        assertEquals("last cat", collection.getEntry(27));
+    }
+
+    @Test
+    void testReplaceInEntry_editsTheEntryAndItsIndex() throws Exception {
+        CollectionManager collection = new CollectionManager();
+        collection.addEntry("call 555-1234 or 555-9876");
+        collection.addEntry("no numbers");
+        controller.indexCollection(collection);
+
+        assertTrue(controller.replaceInEntry(collection, 0, "(\\d{3})-\\d{4}", "$1-XXXX"));
+        assertEquals("call 555-XXXX or 555-XXXX", collection.getEntry(0));
+        assertEquals(List.of("collection:0"),
+                controller.searchIndexed(null, "XXXX").stream().map(TrigramIndex.Hit::document).distinct().toList());
+        // no match leaves the entry as it was
+        assertTrue(controller.replaceInEntry(collection, 1, "\\d", "#"));
+        assertEquals("no numbers", collection.getEntry(1));
+        assertFalse(controller.replaceInEntry(collection, 5, "a", "b"));
+        assertThrows(InvalidRegexPatternException.class, () -> controller.replaceInEntry(collection, 0, "(", "x"));
+    }
+
+    @Test
+    void testIndexUpload_replacesThePreviousUpload() throws Exception {
+        controller.indexDocument("notes.txt", "a cat in the notes");
+        controller.indexUpload("/up/first.txt", "the first cat");
+        controller.indexUpload("/up/second.txt", "the second cat");
+        assertEquals(List.of("notes.txt", "/up/second.txt"),
+                controller.searchIndexed(null, "cat").stream().map(TrigramIndex.Hit::document).toList());
+
+        // uploading the same path again refreshes it; removing it leaves other documents alone
+        controller.indexUpload("/up/second.txt", "no felines");
+        assertEquals(List.of("notes.txt"), controller.searchIndexed(null, "cat").stream().map(TrigramIndex.Hit::document).toList());
+        controller.removeIndexedUpload();
+        assertEquals(1, controller.indexStats().documents());
+    }
+
+    @Test
+    void testIndexCollection_replacesThePreviousCollection() throws Exception {
+        CollectionManager first = new CollectionManager();
+        first.addEntry("a cat in the first");
+        CollectionManager second = new CollectionManager();
+        second.addEntry("nothing here");
+        second.addEntry("a cat in the second");
+        controller.indexCollection(first);
+        controller.indexCollection(second);
+
+        // the first collection's entries and later changes no longer reach the index
+        first.addEntry("another cat");
+        assertEquals(List.of(new TrigramIndex.Hit("collection:1", 2, 5, "cat")), controller.searchIndexed(null, "cat"));
+        assertEquals(2, controller.indexStats().documents());
+        second.deleteEntry(0);
+        assertEquals(List.of("collection:0"),
+                controller.searchIndexed(null, "cat").stream().map(TrigramIndex.Hit::document).toList());
+    }
+
+    @Test
+    void testIndexUpload_namesCannotBeMistakenForCollectionEntries() throws Exception {
+        CollectionManager collection = new CollectionManager();
+        collection.addEntry("a cat entry");
+        controller.indexCollection(collection);
+        controller.indexUpload("collection#0", "an uploaded cat");
+
+        assertEquals(List.of("collection:0", "collection#0"),
+                controller.searchIndexed(null, "cat").stream().map(TrigramIndex.Hit::document).toList());
+        assertThrows(IllegalArgumentException.class, () -> controller.indexDocument("\0collection0#0", "a cat"));
+    }
+
+    @Test
+    void testMetrics_recordCallsErrorsAndLatencies() throws Exception {
+        OperationMetrics metrics = controller.getMetrics();
+        metrics.reset();
+
+        for (int i = 0; i < 20; i++) {
+            controller.findMatches("mail a@b.com", "Email", null);
+        }
+        assertThrows(NoPatternSelectedException.class, () -> controller.findMatches("text", "Unknown", ""));
+
+        OperationMetrics.Snapshot stats = metrics.snapshot().get(0);
+        assertEquals("findMatches", stats.operation());
+        assertEquals(21, stats.calls());
+        assertEquals(1, stats.errors());
+        assertEquals(20 * 12 + 4, stats.chars());
+        assertTrue(stats.p50Nanos() > 0 && stats.p50Nanos() <= stats.p99Nanos());
+        assertTrue(stats.p99Nanos() <= stats.maxNanos());
+        assertEquals(21, metrics.getCallCounts().get("findMatches").longValue());
+
+        metrics.setEnabled(false);
+        controller.wordFrequency("not counted");
+        assertEquals(1, metrics.snapshot().size());
+        metrics.setEnabled(true);
+    }
+}
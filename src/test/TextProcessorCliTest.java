@@ -0,0 +1,108 @@
+package test;
+
+import cli.TextProcessorCli;
+import controller.TextProcessorController;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TextProcessorCliTest {
+
+    private Path tempFile;
+    private ByteArrayOutputStream stdout;
+    private ByteArrayOutputStream stderr;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFile = Files.createTempFile("cli_input", ".txt");
+        stdout = new ByteArrayOutputStream();
+        stderr = new ByteArrayOutputStream();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    void testExtractAndReplaceFromStdin() {
+        String input = "Write to a.b@example.com or c@d.org, not @nobody.\n";
+
+        assertEquals(TextProcessorCli.EXIT_OK, run(input, "extract", "-p", "Email"));
+        assertEquals("a.b@example.com\nc@d.org\n", stdout.toString(StandardCharsets.UTF_8));
+
+        stdout.reset();
+        assertEquals(TextProcessorCli.EXIT_OK, run(input, "replace", "-e", "[a-z.]+@[a-z.]+", "-r", "<email>", "-"));
+        assertEquals("Write to <email> or <email>, not @nobody.\n", stdout.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCleanupStreamsLineByLine() throws IOException {
+        Files.writeString(tempFile, "  First LINE \n\n\nsecond\n");
+
+        assertEquals(TextProcessorCli.EXIT_OK, run("", "cleanup", "--remove-empty", "--trim-lower", tempFile.toString()));
+        assertEquals("first line\nsecond\n", stdout.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testFrequencyAcrossWindowsMatchesInMemoryCount() throws IOException {
+        // several 1 MB windows, with words cut at every window edge
+        StringBuilder text = new StringBuilder();
+        String[] words = {"alpha", "Beta", "gamma's", "delta-epsilon", "zeta"};
+        for (int i = 0; text.length() < 3_500_000; i++) {
+            text.append(words[i % words.length]).append(i % 7 == 0 ? "\n" : " ");
+        }
+        Files.writeString(tempFile, text);
+
+        assertEquals(TextProcessorCli.EXIT_OK, run("", "frequency", tempFile.toString()));
+        Map<String, Long> counted = new HashMap<>();
+        for (String line : stdout.toString(StandardCharsets.UTF_8).split("\n")) {
+            String[] fields = line.split("\t");
+            counted.put(fields[0], Long.parseLong(fields[1]));
+        }
+        assertEquals(new TextProcessorController().wordFrequency(text.toString()), counted);
+    }
+
+    @Test
+    void testTopFrequencyMergesEveryInput() throws IOException {
+        StringBuilder text = new StringBuilder();
+        String[] words = {"alpha", "Beta", "gamma", "delta", "zeta", "eta"};
+        for (int i = 0; text.length() < 2_500_000; i++) {
+            text.append(words[i % words.length]).append(i % 4 == 0 ? " alpha\n" : " ");
+        }
+        Files.writeString(tempFile, text);
+
+        assertEquals(TextProcessorCli.EXIT_OK, run("zeta zeta zeta delta", "frequency", "--top", "3", tempFile.toString(), "-"));
+        Map<String, Long> exact = new TextProcessorController().wordFrequency(text + " zeta zeta zeta delta");
+        StringBuilder expected = new StringBuilder();
+        exact.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(3)
+                .forEach(entry -> expected.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n'));
+        assertEquals(expected.toString(), stdout.toString(StandardCharsets.UTF_8));
+        assertTrue(expected.toString().contains("zeta"), expected.toString());
+    }
+
+    @Test
+    void testUsageErrorsExitWithTwo() {
+        assertEquals(TextProcessorCli.EXIT_USAGE, run("text", "extract"));
+        assertTrue(stderr.toString(StandardCharsets.UTF_8).contains("No regex pattern provided or selected."));
+        assertEquals(TextProcessorCli.EXIT_USAGE, run("text", "frobnicate"));
+        assertEquals(TextProcessorCli.EXIT_FAILURE, run("", "frequency", tempFile.resolveSibling("missing.txt").toString()));
+        assertEquals("", stdout.toString(StandardCharsets.UTF_8));
+    }
+
+    private int run(String stdin, String... args) {
+        return TextProcessorCli.run(args, new ByteArrayInputStream(stdin.getBytes(StandardCharsets.UTF_8)), stdout,
+                new PrintStream(stderr, true, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package test;
+
+import processor.TextSummarizer;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class TextSummarizerTest {
+
+    @Test
+    void testPicksTheSameSentencesAsTheMapBasedVersionInTextOrder() {
+        Random random = new Random(9);
+        String[] words = {"Data", "flow", "text", "regex", "the", "a", "Pipeline", "batch", "x-ray", "naïve", "it's"};
+        String[] ends = {".", "!", "?", "..."};
+        // enough sentences for several parallel chunks; the number keeps each sentence unique
+        for (int sentenceCount : new int[]{12, 5000}) {
+            StringBuilder text = new StringBuilder();
+            for (int s = 0; s < sentenceCount; s++) {
+                if (s > 0) text.append(random.nextBoolean() ? " " : "\n  ");
+                int length = 1 + random.nextInt(12);
+                for (int w = 0; w < length; w++) {
+                    text.append(words[random.nextInt(words.length)]).append(random.nextInt(6) == 0 ? ", " : " ");
+                }
+                text.append(s).append(ends[random.nextInt(ends.length)]);
+            }
+            String input = text.toString();
+            String[] sentences = input.split("(?<=[.!?])\\s+");
+            assertEquals(sentenceCount, sentences.length);
+
+            for (int n : new int[]{1, 3, 10}) {
+                List<String> picked = mapBasedSummary(input, n);
+                Map<String, Integer> position = new HashMap<>();
+                for (int i = 0; i < sentences.length; i++) position.put(sentences[i], i);
+                String expected = picked.stream()
+                        .sorted(Comparator.comparing(position::get))
+                        .collect(Collectors.joining(" "));
+                assertEquals(expected, TextSummarizer.summarizeText(input, n), sentenceCount + " sentences, top " + n);
+            }
+        }
+        assertEquals("Short. Text!", TextSummarizer.summarizeText("Short. Text!", 2));
+    }
+
+    @Test
+    void testTiesGoToTheEarlierSentence() {
+        // every sentence scores 1 + 3
+        assertEquals("Cat ran.", TextSummarizer.summarizeText("Cat ran. Dog ran! Cow ran?", 1));
+        assertEquals("Cat ran. Dog ran!", TextSummarizer.summarizeText("Cat ran. Dog ran! Cow ran?", 2));
+        // a repeated sentence is kept at each position rather than collapsed into one
+        assertEquals("Cat ran. Cat ran.", TextSummarizer.summarizeText("Cat ran. Dog ran! Cow ran? Cat ran.", 2));
+    }
+
+    // The previous implementation's selection, kept here as the reference: score every sentence by
+    // the summed corpus frequency of its words and take the top n, earlier sentences first on ties.
+    private static List<String> mapBasedSummary(String text, int numSentences) {
+        String[] sentences = text.split("(?<=[.!?])\\s+");
+        Map<String, Integer> wordFreq = new HashMap<>();
+        for (String sentence : sentences) {
+            for (String word : sentence.toLowerCase().replaceAll("[^a-z ]", "").split("\\s+")) {
+                if (!word.isBlank()) {
+                    wordFreq.put(word, wordFreq.getOrDefault(word, 0) + 1);
+                }
+            }
+        }
+        Map<String, Double> sentenceScores = new LinkedHashMap<>();
+        for (String sentence : sentences) {
+            double score = 0.0;
+            for (String word : sentence.toLowerCase().replaceAll("[^a-z ]", "").split("\\s+")) {
+                score += wordFreq.getOrDefault(word, 0);
+            }
+            sentenceScores.put(sentence, score);
+        }
+        return sentenceScores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(numSentences)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
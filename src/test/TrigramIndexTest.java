@@ -0,0 +1,103 @@
+package test;
+
+import model.TrigramIndex;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+public class TrigramIndexTest {
+
+    private static final String[] WORDS = {"cat", "Cat", "CATS", "concat", "dog", "dogma", "bird", "colour", "color",
+            "a.b", "a*b", "x+y", "foo_bar", "123", "2024-01-15", "café", "CAFÉ", "straße", "the", "mat", "(paren)", "|"};
+
+    private final TrigramIndex index = new TrigramIndex();
+    private final Map<String, String> texts = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(18);
+        String[] separators = {" ", " ", "\n", ", ", "-", ""};
+        for (int d = 0; d < 400; d++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < 1 + random.nextInt(6); w++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(separators[random.nextInt(separators.length)]);
+            }
+            texts.put("doc" + d, text.toString());
+            index.put("doc" + d, text.toString());
+        }
+    }
+
+    @Test
+    void testCandidatesIncludeEveryDocumentThatMatches() {
+        String[] regexes = {
+                // alternation, at the top level and inside groups
+                "cat|dog", "bird|(?:dog|colou?r)ma", "con(cat|dog)", "(cat|)s", "x|cat",
+                // optional and repeated groups and chars
+                "colou?r", "(con)?cat", "(?:dog)*ma", "(dog)+ma", "do{1,2}g", "cat(s)?", "c+at", "a{0}cat",
+                // classes, including ones that hold metacharacters
+                "[cd]at", "c[a-z]t", "[^x]at", "a[.*]b", "[]a]t", "[\\[(]paren", "\\d{4}-\\d\\d", "\\w+_bar",
+                // quoted literals, with and without an end
+                "\\Qa.b\\E", "\\Qa*b", "\\Q(paren)\\E+", "x\\Q+\\Ey", "\\Q\\E|cat",
+                // case-insensitive, inline and as a flag
+                "(?i)cat", "(?i)café", "(?i:dog)ma", "(?iu)straSSe", "(?-i)CATS",
+                // word boundaries
+                "\\bcat\\b", "\\bcats\\b", "\\bdog", "ma\\b", "\\b(?:cat|dog)\\b", "\\bcon\\B",
+                // escapes, anchors and lookarounds
+                "^the", "mat$", "(?=cat)c", "(?<!con)cat", "a\\.b", "x\\+y", "\\(paren\\)", "\\|", "\\x63at", "\\u0063at"};
+        for (String regex : regexes) {
+            assertCandidatesCover(Pattern.compile(regex), regex);
+            assertCandidatesCover(Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE), "(flag) " + regex);
+        }
+        assertCandidatesCover(Pattern.compile("a.b", Pattern.LITERAL), "literal a.b");
+        assertCandidatesCover(Pattern.compile("c a t # comment", Pattern.COMMENTS), "comments");
+    }
+
+    @Test
+    void testLiteralsNarrowTheCandidates() {
+        // these must contain a trigram or word that most documents lack
+        for (String regex : new String[]{"concat", "\\bdogma\\b", "(?i)straSSE", "\\Qa*b\\E", "colou?r", "bird|x\\+y"}) {
+            List<String> candidates = names(index.candidates(Pattern.compile(regex)));
+            assertTrue(candidates.size() < texts.size() / 2, regex + ": " + candidates.size() + " candidates");
+        }
+        // nothing can be required of these, so every document is a candidate
+        for (String regex : new String[]{"ca?", ".*", "\\w+", "(cat)?", "cat|.", "[a-z]{3}"}) {
+            assertEquals(texts.size(), index.candidates(Pattern.compile(regex)).size(), regex);
+        }
+    }
+
+    @Test
+    void testRemovedAndReplacedDocumentsLeaveTheCandidates() {
+        Pattern pattern = Pattern.compile("unicorn");
+        assertEquals(List.of(), index.candidates(pattern));
+        index.put("doc5", "a unicorn");
+        index.put("doc9", "another unicorn");
+        assertEquals(List.of("doc5", "doc9"), names(index.candidates(pattern)));
+
+        index.put("doc5", "no longer");
+        assertEquals(List.of("doc9"), names(index.candidates(pattern)));
+        // removing most documents rebuilds the postings without changing the answer
+        for (int d = 10; d < 400; d++) assertTrue(index.remove("doc" + d));
+        assertFalse(index.remove("doc10"));
+        assertEquals(List.of("doc9"), names(index.candidates(pattern)));
+        assertEquals(10, index.size());
+        texts.keySet().removeIf(name -> Integer.parseInt(name.substring(3)) >= 9);
+        texts.put("doc5", "no longer");
+        assertCandidatesCover(Pattern.compile("(?i)cat|dog"), "after rebuild");
+    }
+
+    // Brute force: every document the pattern finds a match in must be a candidate.
+    private void assertCandidatesCover(Pattern pattern, String label) {
+        Set<String> candidates = new HashSet<>(names(index.candidates(pattern)));
+        for (Map.Entry<String, String> text : texts.entrySet()) {
+            if (pattern.matcher(text.getValue()).find()) {
+                assertTrue(candidates.contains(text.getKey()), label + " missed " + text.getKey() + ": " + text.getValue());
+            }
+        }
+    }
+
+    private static List<String> names(List<TrigramIndex.Document> documents) {
+        return documents.stream().map(TrigramIndex.Document::name).toList();
+    }
+}
@@ -0,0 +1,50 @@
+package ui;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Read-only list whose items are produced on demand, so a ListView over millions of lines or
+// matches only ever materializes the rows on screen (plus a small cache for scrolling back).
+// Only grows, and only on the FX thread, as results stream in.
+public class LazyList<T> extends ObservableListBase<T> {
+    private static final int CACHED_ITEMS = 1024;
+
+    private final IntFunction<T> loader;
+    private final Map<Integer, T> cache = new LinkedHashMap<>(CACHED_ITEMS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+            return size() > CACHED_ITEMS;
+        }
+    };
+    private int size;
+
+    public LazyList(int size, IntFunction<T> loader) {
+        this.size = size;
+        this.loader = loader;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Item " + index + " of " + size);
+        }
+        return cache.computeIfAbsent(index, loader::apply);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public void growTo(int newSize) {
+        if (newSize < size) throw new IllegalArgumentException("LazyList cannot shrink: " + newSize + " < " + size);
+        if (newSize == size) return;
+        beginChange();
+        nextAdd(size, newSize);
+        size = newSize;
+        endChange();
+    }
+}
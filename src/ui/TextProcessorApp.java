@@ -1,28 +1,64 @@
 package ui;
 
+import controller.AsyncTextProcessorController;
+import controller.OperationMetrics;
 import controller.TextProcessorController;
 import exceptions.FileProcessingException;
 import exceptions.InvalidRegexPatternException;
 import exceptions.NoPatternSelectedException;
+import exceptions.RegexTimeoutException;
 import exceptions.SummarizationException;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import model.BatchResult;
+import model.IncrementalWordFrequency;
+import model.MatchList;
+import model.TrigramIndex;
+import model.WordEstimate;
 //import utils.AlertUtils;
 import utils.CollectionManager;
+import utils.LoggerUtil;
+import utils.PagedTextFile;
 //import utils.UIFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class TextProcessorApp extends Application {
+    private static final int PREVIEW_LINES = 1000;
+    // larger uploads are shown page by page from disk instead of being loaded into the text area
+    private static final long LARGE_FILE_BYTES = 16L << 20;
+    private static final int MAX_CELL_CHARS = 2000;
+    private static final int MATCH_PREVIEW_BYTES = 500;
+
     private final TextProcessorController controller = new TextProcessorController();
+    private final AsyncTextProcessorController asyncController = new AsyncTextProcessorController(controller);
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private static final Path COLLECTION_DIR = Path.of(System.getProperty("user.home"), ".text-processor", "collection");
+    private CollectionManager collectionManager;
+    private final Label statusLabel = new Label();
+    private PagedTextFile document;
 
     @Override
     public void start(Stage primaryStage) {
@@ -31,6 +67,15 @@ public class TextProcessorApp extends Application {
         TextArea inputArea = new TextArea();
         inputArea.setPromptText("Enter text here");
 
+        // keep word counts current as the text is edited instead of recounting on every click
+        IncrementalWordFrequency liveFrequency = new IncrementalWordFrequency();
+        inputArea.setTextFormatter(new TextFormatter<String>(change -> {
+            if (change.isContentChange()) {
+                liveFrequency.replace(change.getControlText(), change.getRangeStart(), change.getRangeEnd(), change.getText());
+            }
+            return change;
+        }));
+
         ComboBox<String> regexDropdown = new ComboBox<>();
         regexDropdown.getItems().addAll("Email", "URL", "Dates");
         regexDropdown.setPromptText("Select a Regex Pattern");
@@ -49,63 +94,206 @@ public class TextProcessorApp extends Application {
         TextArea outputArea = new TextArea();
         outputArea.setEditable(false);
 
+        // read-only views of large uploads and long result lists; only the visible rows are loaded
+        ListView<String> documentView = createLineView();
+        documentView.setVisible(false);
+        StackPane inputPane = new StackPane(inputArea, documentView);
+        Runnable showEditor = () -> {
+            closeDocument();
+            documentView.setItems(FXCollections.emptyObservableList());
+            documentView.setVisible(false);
+            inputArea.setVisible(true);
+        };
+
+        ListView<String> resultsView = createLineView();
+        resultsView.setVisible(false);
+        StackPane outputPane = new StackPane(outputArea, resultsView);
+        Consumer<ObservableList<String>> showResults = items -> {
+            outputArea.clear();
+            resultsView.setItems(items);
+            resultsView.setVisible(true);
+        };
+        // any text written to the output area takes the place of the result list
+        outputArea.textProperty().addListener((obs, oldText, newText) -> {
+            resultsView.setVisible(false);
+            resultsView.setItems(FXCollections.emptyObservableList());
+        });
+
         ComboBox<String> cleanupOptions = new ComboBox<>() ;
         cleanupOptions.getItems().addAll("Trim & Lowercase", "Remove Empty Lines", "Uppercase Lines");
         cleanupOptions.setPromptText("Select Cleanup/Formatting");
 
         final File[] uploadedFile = new File[1];
+        final Path[] processedFile = new Path[1];
 
+        // counting skips building match strings altogether
+        CheckBox countOnly = new CheckBox("Count only");
         Button matchBtn = UIFactory.createStyledButton("Find Matches");
         matchBtn.setOnAction(e -> {
             String text = inputArea.getText();
             String customPattern = customRegexField.getText();
             String selectedPattern = regexDropdown.getValue();
-            try {
-                List<String> results = controller.findMatches(text, selectedPattern, customPattern);
-                outputArea.setText(String.join("\n", results));
-            } catch (NoPatternSelectedException ex) {
-                AlertUtils.showError(ex.getMessage());
-            } catch (InvalidRegexPatternException ex) {
-                AlertUtils.showError("Invalid regex pattern: " + ex.getMessage());
-            } catch (Exception ex) {
-                AlertUtils.showError("No regex pattern provided or selected");
+            Consumer<Throwable> onError = ex -> {
+                if (ex instanceof NoPatternSelectedException || ex instanceof RegexTimeoutException) {
+                    AlertUtils.showError(ex.getMessage());
+                } else if (ex instanceof InvalidRegexPatternException) {
+                    AlertUtils.showError("Invalid regex pattern: " + ex.getMessage());
+                } else if (ex instanceof FileProcessingException) {
+                    AlertUtils.showError("File error: " + ex.getMessage());
+                } else {
+                    AlertUtils.showError("No regex pattern provided or selected");
+                }
+            };
+            if (document == null && countOnly.isSelected()) {
+                onComplete(asyncController.countMatches(text, selectedPattern, customPattern),
+                        count -> outputArea.setText(String.format("%,d matches", count)), onError);
+                return;
+            }
+            if (document != null && countOnly.isSelected()) {
+                onComplete(asyncController.searchFile(document.getPath().toString(), selectedPattern, customPattern, match -> { }),
+                        count -> outputArea.setText(String.format("%,d matches", count)), onError);
+                return;
+            }
+            if (document == null) {
+                onComplete(asyncController.findMatches(text, selectedPattern, customPattern),
+                        results -> showResults.accept(FXCollections.observableList(results)), onError);
+                return;
             }
+
+            // stream the file and keep only offsets; rows are read back from disk when scrolled into view
+            PagedTextFile searched = document;
+            MatchList matches = new MatchList();
+            LazyList<String> rows = new LazyList<>(0, i -> describeMatch(searched, matches, i));
+            showResults.accept(rows);
+            Timeline poll = new Timeline(new KeyFrame(Duration.millis(200), tick -> rows.growTo(matches.size())));
+            poll.setCycleCount(Timeline.INDEFINITE);
+            poll.play();
+            CompletableFuture<Long> run = asyncController.searchFile(searched.getPath().toString(), selectedPattern,
+                    customPattern, match -> matches.add(match.byteStart(), match.byteEnd()));
+            run.whenComplete((count, error) -> Platform.runLater(poll::stop));
+            onComplete(run, count -> {
+                rows.growTo(matches.size());
+                statusLabel.setText(String.format("%,d matches in %s", count, searched.getPath().getFileName()));
+            }, onError);
+        });
+
+        // searches every uploaded file and collection entry; the index skips those that cannot match
+        Button indexSearchBtn = UIFactory.createStyledButton("Search All Documents");
+        indexSearchBtn.setOnAction(e -> {
+            String customPattern = customRegexField.getText();
+            String selectedPattern = regexDropdown.getValue();
+            onComplete(asyncController.searchIndexed(selectedPattern, customPattern), hits -> {
+                StringBuilder result = new StringBuilder();
+                for (TrigramIndex.Hit hit : hits) {
+                    result.append(hit.document()).append(" [").append(hit.start()).append('-').append(hit.end())
+                            .append("]: ").append(hit.text()).append('\n');
+                }
+                TrigramIndex.Stats stats = controller.indexStats();
+                result.append(String.format("%d matches in %d indexed documents (index ~%d KB)",
+                        hits.size(), stats.documents(), stats.indexBytes() / 1024));
+                outputArea.setText(result.toString());
+            }, ex -> AlertUtils.showError(ex instanceof InvalidRegexPatternException
+                    ? "Invalid regex pattern: " + ex.getMessage() : ex.getMessage()));
         });
 
         Button replaceBtn = UIFactory.createStyledButton("Replace Text");
         replaceBtn.setOnAction(e -> {
+            if (!requireInMemoryText("replace")) return;
             String text = inputArea.getText();
             String regex = customRegexField.getText();
             String replacement = replacementField.getText();
-            outputArea.setText(controller.replaceText(text, regex, replacement));
+            onComplete(asyncController.replaceText(text, regex, replacement),
+                    outputArea::setText,
+                    ex -> AlertUtils.showError(ex instanceof RegexTimeoutException
+                            ? ex.getMessage() : "Invalid regex pattern: " + ex.getMessage()));
         });
 
+        CheckBox topKOnly = new CheckBox("Top K only");
+        Spinner<Integer> topKSpinner = new Spinner<>(1, 10000, 100);
+        topKSpinner.setEditable(true);
+        topKSpinner.setPrefWidth(90);
+
         Button frequencyBtn = UIFactory.createStyledButton("Word Frequency");
         frequencyBtn.setOnAction(e -> {
+            if (document != null) {
+                String path = document.getPath().toString();
+                // top K is sketched window by window, so the file's vocabulary is never held in full
+                if (topKOnly.isSelected()) {
+                    onComplete(asyncController.topWordFrequencyFile(path, topKSpinner.getValue()), estimates ->
+                            showResults.accept(FXCollections.observableList(estimates.stream()
+                                    .map(TextProcessorApp::formatEstimate)
+                                    .toList())),
+                            ex -> AlertUtils.showError("Word frequency failed: " + ex.getMessage()));
+                    return;
+                }
+                onComplete(asyncController.wordFrequencyFile(path), counts -> {
+                    List<String> rows = counts.entrySet().stream()
+                            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                            .map(entry -> entry.getKey() + "=" + entry.getValue())
+                            .toList();
+                    showResults.accept(FXCollections.observableList(rows));
+                }, ex -> AlertUtils.showError("Word frequency failed: " + ex.getMessage()));
+                return;
+            }
+
             String text = inputArea.getText();
-            outputArea.setText(controller.wordFrequency(text).toString());
+            if (!topKOnly.isSelected()) {
+                outputArea.setText(liveFrequency.snapshot().toString());
+                return;
+            }
+
+            onComplete(asyncController.topWordFrequency(text, topKSpinner.getValue()), estimates -> {
+                StringBuilder result = new StringBuilder();
+                for (WordEstimate estimate : estimates) {
+                    result.append(formatEstimate(estimate)).append('\n');
+                }
+                outputArea.setText(result.toString());
+            }, ex -> AlertUtils.showError("Word frequency failed: " + ex.getMessage()));
         });
 
         Button uploadFileBtn = UIFactory.createStyledButton("Upload File");
         Button processBtn = UIFactory.createStyledButton("Process File");
         Button exportBtn = UIFactory.createStyledButton("Export Processed File");
+        Button replaceInFileBtn = UIFactory.createStyledButton("Replace In File");
         processBtn.setDisable(true);
         exportBtn.setDisable(true);
+        replaceInFileBtn.setDisable(true);
 
         uploadFileBtn.setOnAction(e -> {
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("Upload Text File");
             File file = fileChooser.showOpenDialog(primaryStage);
-            if (file != null) {
-                try {
-                    inputArea.setText(controller.readFile(file.getAbsolutePath()));
+            if (file != null && file.length() > LARGE_FILE_BYTES) {
+                onComplete(asyncController.openPagedFile(file.getAbsolutePath(),
+                        fraction -> Platform.runLater(() -> progressBar.setProgress(fraction))), paged -> {
+                    showEditor.run();
+                    // too large to index, but it still replaces the previous upload in searches
+                    controller.removeIndexedUpload();
+                    document = paged;
+                    inputArea.clear();
+                    inputArea.setVisible(false);
+                    documentView.setItems(new LazyList<>(paged.lineCount(), i -> readLine(paged, i)));
+                    documentView.setVisible(true);
+                    statusLabel.setText(String.format("%s: %,d lines, %,d bytes (read-only)",
+                            file.getName(), paged.lineCount(), paged.size()));
                     uploadedFile[0] = file;
                     processBtn.setDisable(false);
-                } catch (FileProcessingException ex) {
-                    AlertUtils.showError("File error: " + ex.getMessage());
-                } catch (Exception ex) {
-                    AlertUtils.showError("Unexpected file read error: " + ex.getMessage());
-                }
+                    replaceInFileBtn.setDisable(false);
+                }, ex -> AlertUtils.showError("File error: " + ex.getMessage()));
+            } else if (file != null) {
+                onComplete(asyncController.readAndIndexFile(file.getAbsolutePath()), content -> {
+                    showEditor.run();
+                    inputArea.setText(content);
+                    uploadedFile[0] = file;
+                    processBtn.setDisable(false);
+                    replaceInFileBtn.setDisable(false);
+                }, ex -> {
+                    if (ex instanceof FileProcessingException) {
+                        AlertUtils.showError("File error: " + ex.getMessage());
+                    } else {
+                        AlertUtils.showError("Unexpected file read error: " + ex.getMessage());
+                    }
+                });
             }
         });
 
@@ -128,16 +316,27 @@ public class TextProcessorApp extends Application {
                     }
                 }
 
-                List<String> result = controller.batchProcessFile(uploadedFile[0].getAbsolutePath(), filter, transformer);
-                outputArea.setText(String.join("\n", result));
-                exportBtn.setDisable(false);
+                if (processedFile[0] == null) {
+                    processedFile[0] = Files.createTempFile("processed", ".txt");
+                    processedFile[0].toFile().deleteOnExit();
+                }
+                long startTime = System.nanoTime();
+                CompletableFuture<BatchResult> run = asyncController.batchProcessToFile(uploadedFile[0].getAbsolutePath(),
+                        processedFile[0].toString(), filter, transformer, PREVIEW_LINES,
+                        fraction -> Platform.runLater(() -> progressBar.setProgress(fraction)));
+                onComplete(run, result -> {
+                    StringBuilder preview = new StringBuilder(String.join("\n", result.preview()));
+                    if (result.linesWritten() > result.preview().size()) {
+                        preview.append("\n... (showing first ").append(result.preview().size()).append(" lines)");
+                    }
+                    outputArea.setText(preview.toString());
+                    exportBtn.setDisable(false);
 
-                Label summaryLabel = new Label();
-                long startTime = System.currentTimeMillis();
-                long timeTaken = System.currentTimeMillis() - startTime;
-                summaryLabel.setText("Lines Processed: " + result.size() + " | Time Taken: " + timeTaken + " ms");
+                    long timeTaken = (System.nanoTime() - startTime) / 1_000_000;
+                    statusLabel.setText("Lines Processed: " + result.linesRead() + " | Lines Written: " + result.linesWritten() + " | Time Taken: " + timeTaken + " ms");
+                }, ex -> AlertUtils.showError("Processing error: " + ex.getMessage()));
 
-            } catch (FileProcessingException ex) {
+            } catch (IOException ex) {
                 AlertUtils.showError("Processing error: " + ex.getMessage());
             } catch (Exception ex) {
                 AlertUtils.showError("Unexpected processing error: " + ex.getMessage());
@@ -150,7 +349,8 @@ public class TextProcessorApp extends Application {
             File saveFile = saveChooser.showSaveDialog(primaryStage);
             if (saveFile != null) {
                 try {
-                    controller.writeFile(saveFile.getAbsolutePath(), outputArea.getText());
+                    // the processed output is already on disk, so export is a file copy rather than a rewrite
+                    Files.copy(processedFile[0], saveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                     AlertUtils.showInfo("File saved successfully!");
                 } catch (Exception ex) {
                     AlertUtils.showError("Error saving file: " + ex.getMessage());
@@ -158,8 +358,27 @@ public class TextProcessorApp extends Application {
             }
         });
 
+        // streams the uploaded file straight to the chosen file instead of going through the text area
+        replaceInFileBtn.setOnAction(e -> {
+            String regex = customRegexField.getText();
+            if (regex == null || regex.isEmpty()) {
+                AlertUtils.showError("Error: Enter a regex pattern to replace.");
+                return;
+            }
+            FileChooser saveChooser = new FileChooser();
+            saveChooser.setTitle("Save Replaced File");
+            File saveFile = saveChooser.showSaveDialog(primaryStage);
+            if (saveFile == null) return;
+
+            onComplete(asyncController.replaceFile(uploadedFile[0].getAbsolutePath(), saveFile.getAbsolutePath(),
+                            regex, replacementField.getText()),
+                    count -> outputArea.setText(count + " replacements written to " + saveFile.getAbsolutePath()),
+                    ex -> AlertUtils.showError("Error: " + ex.getMessage()));
+        });
+
         Button replaceFileBtn = UIFactory.createStyledButton("Write To File");
         replaceFileBtn.setOnAction(e -> {
+            if (!requireInMemoryText("replace")) return;
             // Validate inputArea and replacementField
             String inputText = inputArea.getText();
             String replacementText = replacementField.getText();
@@ -184,17 +403,13 @@ public class TextProcessorApp extends Application {
                 return;
             }
 
-            try {
-                String result = controller.replaceAndWriteToFile(
-                        inputText,
-                        customRegexField.getText(),
-                        replacementText,
-                        saveFile.getAbsolutePath()
-                );
-                outputArea.setText(result);
-            } catch (Exception ex) {
-                AlertUtils.showError("Error: " + ex.getMessage());
-            }
+            onComplete(asyncController.replaceAndWriteToFile(
+                            inputText,
+                            customRegexField.getText(),
+                            replacementText,
+                            saveFile.getAbsolutePath()),
+                    outputArea::setText,
+                    ex -> AlertUtils.showError("Error: " + ex.getMessage()));
         });
 
 
@@ -202,35 +417,51 @@ public class TextProcessorApp extends Application {
 
         Button summarizeBtn = UIFactory.createStyledButton("Summarize Text");
         summarizeBtn.setOnAction(e -> {
-            try {
-                String input = inputArea.getText();
-                if (input == null || input.trim().isEmpty()) {
-                    AlertUtils.showError("Please enter or upload some text to summarize.");
-                    return;
-                }
-                int numSentences = sentenceCountSpinner.getValue();
-                String summary = controller.summarizeText(input, numSentences);
-                outputArea.setText(summary);
-            } catch (SummarizationException ex) {
-                AlertUtils.showError("Summarization failed: " + ex.getMessage());
-            } catch (Exception ex) {
-                AlertUtils.showError("Unexpected error during summarization: " + ex.getMessage());
+            if (!requireInMemoryText("summarize")) return;
+            String input = inputArea.getText();
+            if (input == null || input.trim().isEmpty()) {
+                AlertUtils.showError("Please enter or upload some text to summarize.");
+                return;
             }
+            int numSentences = sentenceCountSpinner.getValue();
+            onComplete(asyncController.summarizeText(input, numSentences), outputArea::setText, ex -> {
+                if (ex instanceof SummarizationException) {
+                    AlertUtils.showError("Summarization failed: " + ex.getMessage());
+                } else {
+                    AlertUtils.showError("Unexpected error during summarization: " + ex.getMessage());
+                }
+            });
+        });
+
+        Button cancelBtn = UIFactory.createStyledButton("Cancel");
+        cancelBtn.setOnAction(e -> {
+            asyncController.cancelAll();
+            progressBar.setVisible(false);
         });
+        progressBar.setVisible(false);
 
         Button clearBtn = UIFactory.createStyledButton("Clear/Erase");
-        clearBtn.setOnAction(e -> inputArea.clear());
+        clearBtn.setOnAction(e -> {
+            showEditor.run();
+            inputArea.clear();
+        });
 
         // Collection Manager Setup to save reusable text entries
-        CollectionManager collectionManager = new CollectionManager();
+        collectionManager = openCollection();
+        controller.indexCollection(collectionManager);
         ListView<String> collectionListView = new ListView<>();
         collectionListView.setPrefHeight(100);
         TextField collectionInput = new TextField();
         collectionInput.setPromptText("Enter text to save in list");
+        // the snapshot is immutable and shared, so the list view wraps it instead of copying
+        Runnable refreshCollection = () -> collectionListView.setItems(
+                FXCollections.observableList(collectionManager.getAllEntries()));
+        refreshCollection.run();
 
         Button addEntryBtn = UIFactory.createStyledButton("Add Entry");
         Button updateEntryBtn = UIFactory.createStyledButton("Update Entry");
         Button deleteEntryBtn = UIFactory.createStyledButton("Delete Entry");
+        Button replaceInEntryBtn = UIFactory.createStyledButton("Replace In Entry");
 
         addEntryBtn.setOnAction(e -> {
             String text = collectionInput.getText();
@@ -238,9 +469,13 @@ public class TextProcessorApp extends Application {
                 AlertUtils.showError("Entry cannot be empty.");
                 return;
             }
-            collectionManager.addEntry(text);
-            collectionInput.clear();
-            collectionListView.getItems().setAll(collectionManager.getAllEntries());
+            onComplete(asyncController.addEntry(collectionManager, text), added -> {
+                collectionInput.clear();
+                refreshCollection.run();
+            }, ex -> {
+                AlertUtils.showError("Saving the entry failed: " + ex.getMessage());
+                refreshCollection.run();
+            });
         });
 
         updateEntryBtn.setOnAction(e -> {
@@ -257,13 +492,10 @@ public class TextProcessorApp extends Application {
                 return;
             }
 
-            try {
-                boolean success = collectionManager.updateEntry(selectedIndex, newText);
-                if (!success) throw new Exception("Invalid index or empty text.");
-                collectionListView.getItems().setAll(collectionManager.getAllEntries());
-            } catch (Exception ex) {
-                AlertUtils.showError("Update failed: " + ex.getMessage());
-            }
+            onComplete(asyncController.updateEntry(collectionManager, selectedIndex, newText), success -> {
+                if (!success) AlertUtils.showError("Update failed: Invalid index or empty text.");
+                refreshCollection.run();
+            }, ex -> AlertUtils.showError("Update failed: " + ex.getMessage()));
         });
 
         deleteEntryBtn.setOnAction(e -> {
@@ -273,33 +505,190 @@ public class TextProcessorApp extends Application {
                 return;
             }
 
-            try {
-                boolean success = collectionManager.deleteEntry(selectedIndex);
-                if (!success) throw new Exception("Delete failed due to invalid index.");
-                collectionListView.getItems().setAll(collectionManager.getAllEntries());
-            } catch (Exception ex) {
-                AlertUtils.showError("Delete failed: " + ex.getMessage());
+            onComplete(asyncController.deleteEntry(collectionManager, selectedIndex), success -> {
+                if (!success) AlertUtils.showError("Delete failed due to invalid index.");
+                refreshCollection.run();
+            }, ex -> AlertUtils.showError("Delete failed: " + ex.getMessage()));
+        });
+
+        // applies the regex and replacement fields to the selected entry
+        replaceInEntryBtn.setOnAction(e -> {
+            int selectedIndex = collectionListView.getSelectionModel().getSelectedIndex();
+            if (selectedIndex == -1) {
+                AlertUtils.showError("Select an entry to replace in.");
+                return;
             }
+            onComplete(asyncController.replaceInEntry(collectionManager, selectedIndex, customRegexField.getText(),
+                    replacementField.getText()), success -> {
+                if (!success) AlertUtils.showError("Replace failed: the entry no longer exists.");
+                refreshCollection.run();
+            }, ex -> AlertUtils.showError(ex instanceof RegexTimeoutException || ex instanceof FileProcessingException
+                    ? ex.getMessage() : "Invalid regex pattern: " + ex.getMessage()));
         });
 
-        VBox collectionControls = new VBox(5, collectionInput, new HBox(10, addEntryBtn, updateEntryBtn, deleteEntryBtn));
+        VBox collectionControls = new VBox(5, collectionInput,
+                new HBox(10, addEntryBtn, updateEntryBtn, deleteEntryBtn, replaceInEntryBtn));
         VBox collectionBox = new VBox(5, new Label("Text Collection"), collectionListView, collectionControls);
         collectionBox.setPadding(new Insets(10));
         collectionBox.setStyle("-fx-border-color: gray; -fx-border-radius: 5; -fx-border-width: 1;");
 
         VBox root = new VBox(10,
-                inputArea,
+                inputPane,
                 replacementField,
-                UIFactory.createHBox(new Label("Text Processing:"),matchBtn, replaceBtn, frequencyBtn, replaceFileBtn, clearBtn),
-                UIFactory.createHBox(new Label("Regex Operations:"),regexBox),
-                UIFactory.createHBox(new Label("Batch Processing: "), uploadFileBtn, cleanupOptions, processBtn, exportBtn),
+                UIFactory.createHBox(new Label("Text Processing:"),matchBtn, replaceBtn, frequencyBtn, topKOnly, topKSpinner, replaceFileBtn, clearBtn),
+                UIFactory.createHBox(new Label("Regex Operations:"),regexBox, countOnly, indexSearchBtn),
+                UIFactory.createHBox(new Label("Batch Processing: "), uploadFileBtn, cleanupOptions, processBtn, exportBtn, replaceInFileBtn),
                 UIFactory.createHBox(new Label("No. of Sentences:"), sentenceCountSpinner, summarizeBtn),
                 collectionBox,
-                outputArea
+                UIFactory.createHBox(progressBar, cancelBtn, statusLabel),
+                outputPane,
+                createStatsPanel()
         );
 
         root.setPadding(new Insets(10));
         primaryStage.setScene(new Scene(root, 800, 650));
         primaryStage.show();
     }
+
+    @Override
+    public void stop() {
+        closeDocument();
+        controller.getMetrics().unregisterMBean();
+        asyncController.close();
+        collectionManager.close();
+    }
+
+    // Fixed-height rows let the list work out what is visible without measuring every line.
+    private static ListView<String> createLineView() {
+        ListView<String> view = new ListView<>();
+        view.setFixedCellSize(24);
+        view.setStyle("-fx-font-family: monospace;");
+        view.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setText(null);
+                } else {
+                    setText(item.length() > MAX_CELL_CHARS ? item.substring(0, MAX_CELL_CHARS) + "\u2026" : item);
+                }
+            }
+        });
+        return view;
+    }
+
+    private static String readLine(PagedTextFile file, int index) {
+        try {
+            return file.line(index);
+        } catch (IOException e) {
+            return "(unreadable: " + e.getMessage() + ")";
+        }
+    }
+
+    private static String describeMatch(PagedTextFile file, MatchList matches, int index) {
+        try {
+            long start = matches.start(index);
+            return "line " + (file.lineAt(start) + 1) + ": " + file.text(start, matches.end(index), MATCH_PREVIEW_BYTES);
+        } catch (IOException e) {
+            return "(unreadable: " + e.getMessage() + ")";
+        }
+    }
+
+    // Operations that need the whole text as a String are refused for paged documents.
+    private boolean requireInMemoryText(String action) {
+        if (document == null) return true;
+        AlertUtils.showError(document.getPath().getFileName() + " is too large to " + action
+                + " in memory. Use Replace In File or Process File instead.");
+        return false;
+    }
+
+    private static String formatEstimate(WordEstimate estimate) {
+        String row = estimate.word() + "=" + estimate.count();
+        return estimate.error() > 0 ? row + " (\u00B1" + estimate.error() + ")" : row;
+    }
+
+    private void closeDocument() {
+        if (document == null) return;
+        try {
+            document.close();
+        } catch (IOException e) {
+            LoggerUtil.logError("Failed to close " + document.getPath(), e);
+        }
+        document = null;
+    }
+
+    // Per-operation counts and latencies, refreshed once a second while the panel is expanded.
+    private TitledPane createStatsPanel() {
+        OperationMetrics metrics = controller.getMetrics();
+        metrics.registerMBean();
+
+        CheckBox enabled = new CheckBox("Collect metrics");
+        enabled.setSelected(metrics.isEnabled());
+        enabled.selectedProperty().addListener((obs, was, now) -> metrics.setEnabled(now));
+        Button resetBtn = UIFactory.createStyledButton("Reset");
+        Label table = new Label();
+        table.setStyle("-fx-font-family: monospace;");
+
+        Runnable refresh = () -> {
+            StringBuilder text = new StringBuilder(String.format("%-26s %8s %7s %12s %10s %10s %10s%n",
+                    "Operation", "Calls", "Errors", "Chars", "p50", "p99", "Max"));
+            for (OperationMetrics.Snapshot stats : metrics.snapshot()) {
+                text.append(String.format("%-26s %8d %7d %12d %10s %10s %10s%n", stats.operation(), stats.calls(),
+                        stats.errors(), stats.chars(), formatNanos(stats.p50Nanos()),
+                        formatNanos(stats.p99Nanos()), formatNanos(stats.maxNanos())));
+            }
+            table.setText(text.toString());
+        };
+        resetBtn.setOnAction(e -> {
+            metrics.reset();
+            refresh.run();
+        });
+
+        TitledPane panel = new TitledPane("Operation Stats", new VBox(5, UIFactory.createHBox(enabled, resetBtn), table));
+        panel.setExpanded(false);
+        Timeline ticker = new Timeline(new KeyFrame(Duration.seconds(1), e -> refresh.run()));
+        ticker.setCycleCount(Timeline.INDEFINITE);
+        panel.expandedProperty().addListener((obs, was, expanded) -> {
+            if (expanded) {
+                refresh.run();
+                ticker.play();
+            } else {
+                ticker.stop();
+            }
+        });
+        return panel;
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000_000) return String.format("%d \u00B5s", nanos / 1_000);
+        if (nanos < 1_000_000_000) return String.format("%.1f ms", nanos / 1e6);
+        return String.format("%.2f s", nanos / 1e9);
+    }
+
+    // Saved entries survive restarts; if the store cannot be opened the session keeps them in memory only.
+    private CollectionManager openCollection() {
+        try {
+            return new CollectionManager(COLLECTION_DIR);
+        } catch (IOException | RuntimeException e) {
+            LoggerUtil.logError("Could not open the saved collection in " + COLLECTION_DIR, e);
+            return new CollectionManager();
+        }
+    }
+
+    // Delivers the outcome of a background operation on the FX thread; cancelled runs are dropped silently.
+    private <T> void onComplete(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        progressBar.setVisible(true);
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            Throwable cause = error == null ? null : AsyncTextProcessorController.unwrap(error);
+            if (!(cause instanceof CancellationException)) {
+                progressBar.setVisible(false);
+            }
+            if (cause == null) {
+                onSuccess.accept(result);
+            } else if (!(cause instanceof CancellationException)) {
+                onError.accept(cause);
+            }
+        }));
+    }
 }
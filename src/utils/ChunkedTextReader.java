@@ -0,0 +1,116 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Decodes a UTF-8 channel into a fixed-size window of chars so a matcher can run over
+// a file chunk by chunk. Callers discard the prefix they are done with and refill;
+// whatever they keep is carried over into the next window.
+public class ChunkedTextReader implements Closeable {
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+    private final CharBuffer chars;
+
+    private boolean channelDrained;
+    private boolean flushed;
+    private long charBase;
+    private long byteBase;
+
+    // byte offset cache so consecutive byteOffset() calls only walk forward
+    private int cursorIndex;
+    private long cursorBytes;
+
+    public ChunkedTextReader(ReadableByteChannel channel, int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("Window size must be at least 2 chars: " + windowSize);
+        }
+        this.channel = channel;
+        this.chars = CharBuffer.allocate(windowSize);
+        this.chars.flip();
+    }
+
+    // Tops the window up from the channel; returns false once there is nothing left to read.
+    public boolean fill() throws IOException {
+        chars.compact();
+        while (chars.remaining() > 1 && !flushed) {
+            if (!channelDrained && channel.read(bytes) < 0) {
+                channelDrained = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, channelDrained);
+            bytes.compact();
+            if (result.isOverflow()) break;
+            if (channelDrained && bytes.position() == 0) {
+                if (decoder.flush(chars).isOverflow()) break;
+                flushed = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    public CharBuffer window() {
+        return chars;
+    }
+
+    public boolean isEndOfInput() {
+        return flushed;
+    }
+
+    public int capacity() {
+        return chars.capacity();
+    }
+
+    public long charOffset(int index) {
+        return charBase + index;
+    }
+
+    public long byteOffset(int index) {
+        if (index < cursorIndex) {
+            cursorIndex = 0;
+            cursorBytes = 0;
+        }
+        while (cursorIndex < index) {
+            cursorBytes += utf8Length(chars.get(cursorIndex), cursorIndex + 1 < chars.limit() ? chars.get(cursorIndex + 1) : 0);
+            cursorIndex++;
+        }
+        return byteBase + cursorBytes;
+    }
+
+    // Drops the first count chars of the window, keeping the rest for the next fill().
+    public void discard(int count) {
+        long discardedBytes = byteOffset(count) - byteBase;
+        chars.position(count);
+        chars.compact();
+        chars.flip();
+        charBase += count;
+        byteBase += discardedBytes;
+        cursorIndex = 0;
+        cursorBytes = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int utf8Length(char c, char next) {
+        if (c < 0x80) return 1;
+        if (c < 0x800) return 2;
+        if (Character.isHighSurrogate(c) && Character.isLowSurrogate(next)) return 4;
+        if (Character.isLowSurrogate(c)) return 0;
+        return 3;
+    }
+}
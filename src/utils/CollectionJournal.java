@@ -0,0 +1,567 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Append-only, checksummed log of collection changes, plus a compacted snapshot it is replayed on.
+// Writers append under a lock and then wait for a background flusher, so writers that arrive while
+// an fsync is running share the next one (group commit). A torn or corrupt record at the end of the
+// newest journal file is what a crash mid-append leaves behind; recovery cuts the file back to the
+// last whole record. Sequence numbers run on without gaps from the snapshot through every journal
+// file, so a lost file fails recovery instead of silently dropping its changes.
+public class CollectionJournal implements Closeable {
+
+    public enum Op { ADD, UPDATE, DELETE }
+
+    // State rebuilt from disk: the entries, the last sequence number seen and how many records were replayed.
+    public record Recovered(List<String> entries, long lastSeq, int replayed) {
+    }
+
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String SNAPSHOT_TMP = "snapshot.tmp";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final int SNAPSHOT_MAGIC = 0x54504353;
+    private static final int FORMAT_VERSION = 1;
+    // record = body length + CRC32 of the body, then seq, op, index, content length and UTF-8 content
+    private static final int HEADER_BYTES = 8;
+    private static final int FIXED_BODY_BYTES = 17;
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+
+    private final Path directory;
+    private final Recovered recovered;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private final Object snapshotLock = new Object();
+    private final Thread flusher;
+
+    private FileChannel channel;
+    private Path currentFile;
+    // end of the last whole record in the current file
+    private long end;
+    private long lastSeq;
+    private long durableSeq;
+    private long snapshotSeq;
+    private IOException failure;
+    private boolean closed;
+
+    private CollectionJournal(Path directory, Recovered recovered, long snapshotSeq, Path currentFile) throws IOException {
+        this.directory = directory;
+        this.recovered = recovered;
+        this.lastSeq = recovered.lastSeq();
+        this.durableSeq = recovered.lastSeq();
+        this.snapshotSeq = snapshotSeq;
+        this.currentFile = currentFile != null ? currentFile : journalFile(lastSeq + 1);
+        this.channel = openForAppend(this.currentFile);
+        this.flusher = new Thread(this::flushLoop, "collection-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Recovers the state stored in directory (creating it if needed) and opens the journal for appends.
+    public static CollectionJournal open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        // a snapshot that was never renamed into place is incomplete by definition
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_TMP));
+
+        List<String> entries = new ArrayList<>();
+        long snapshotSeq = readSnapshot(directory.resolve(SNAPSHOT), entries);
+        long seq = snapshotSeq;
+        int replayed = 0;
+
+        List<Path> journals = listJournals(directory);
+        // files the snapshot covers may remain, but the first one must not start past it
+        long lastRecord = journals.isEmpty() ? snapshotSeq : Math.min(snapshotSeq, firstSeq(journals.get(0)) - 1);
+        for (int i = 0; i < journals.size(); i++) {
+            Path file = journals.get(i);
+            if (firstSeq(file) != lastRecord + 1) {
+                throw new IOException("Journal records " + (lastRecord + 1) + " to " + (firstSeq(file) - 1)
+                        + " are missing before " + file);
+            }
+            boolean last = i == journals.size() - 1;
+            Replay replay = replay(file, entries, seq, last);
+            seq = replay.lastSeq;
+            lastRecord = replay.lastRecord;
+            replayed += replay.applied;
+        }
+        Path current = journals.isEmpty() ? null : journals.get(journals.size() - 1);
+        return new CollectionJournal(directory, new Recovered(entries, seq, replayed), snapshotSeq, current);
+    }
+
+    public Recovered recovered() {
+        return recovered;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    // Writes one record and returns its sequence number; it is durable once awaitDurable(seq) returns.
+    // The content (null for a delete) is encoded straight from the sequence, so a rope is never flattened.
+    public long append(Op op, int index, CharSequence content) throws IOException {
+        if ((content == null) != (op == Op.DELETE)) {
+            throw new IllegalArgumentException(op + " records " + (content == null ? "need" : "take no") + " content");
+        }
+        long contentBytes = content == null ? 0 : utf8Length(content);
+        if (FIXED_BODY_BYTES + contentBytes > MAX_RECORD_BYTES) {
+            throw new IOException("Entry too large for the journal: " + contentBytes + " bytes");
+        }
+        int bodyLength = FIXED_BODY_BYTES + (int) contentBytes;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+
+        lock.lock();
+        try {
+            ensureWritable();
+            long seq = lastSeq + 1;
+            record.position(HEADER_BYTES);
+            record.putLong(seq).put((byte) op.ordinal()).putInt(index).putInt(content == null ? -1 : (int) contentBytes);
+            if (content != null) putUtf8(record, content);
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), HEADER_BYTES, bodyLength);
+            record.putInt(0, bodyLength).putInt(4, (int) crc.getValue());
+            record.flip();
+
+            long position = end;
+            try {
+                while (record.hasRemaining()) channel.write(record);
+            } catch (ClosedByInterruptException e) {
+                // interrupting the writer closes the channel; reopen it so later appends still work
+                reopen(position, e);
+                throw new InterruptedIOException("Interrupted while writing to the journal");
+            } catch (IOException e) {
+                // leave no partial record behind for later appends to follow
+                try {
+                    channel.truncate(position);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                    failure = e;
+                }
+                throw e;
+            }
+            end = position + HEADER_BYTES + bodyLength;
+            lastSeq = seq;
+            pending.signal();
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until every record up to seq has been fsynced.
+    public void awaitDurable(long seq) throws IOException {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) throw new IOException("Journal sync failed", failure);
+                if (closed) throw new IOException("Journal closed before the change was synced");
+                synced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal to sync");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Syncs and closes the current journal file and starts a new one. Returns the last sequence number
+    // in the closed files: a snapshot of the state at that point makes all of them redundant.
+    public long rotate() throws IOException {
+        lock.lock();
+        try {
+            ensureWritable();
+            if (channel.size() == 0) return lastSeq;
+            channel.force(false);
+            channel.close();
+            durableSeq = lastSeq;
+            synced.signalAll();
+            currentFile = journalFile(lastSeq + 1);
+            channel = openForAppend(currentFile);
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Atomically replaces the snapshot with entries as of seq, then deletes the journal files it covers.
+    public void writeSnapshot(List<? extends CharSequence> entries, long seq) throws IOException {
+        synchronized (snapshotLock) {
+            if (seq <= snapshotSeq) return;
+
+            Path tmp = directory.resolve(SNAPSHOT_TMP);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(out), 1 << 16), new CRC32());
+                DataOutputStream data = new DataOutputStream(checked);
+                data.writeInt(SNAPSHOT_MAGIC);
+                data.writeInt(FORMAT_VERSION);
+                data.writeLong(seq);
+                data.writeInt(entries.size());
+                for (CharSequence entry : entries) {
+                    ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(utf8Length(entry)));
+                    putUtf8(bytes, entry);
+                    data.writeInt(bytes.capacity());
+                    data.write(bytes.array());
+                }
+                data.writeInt((int) checked.getChecksum().getValue());
+                data.flush();
+                out.force(true);
+            }
+            try {
+                Files.move(tmp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory();
+            snapshotSeq = seq;
+            deleteCoveredJournals(seq);
+        }
+    }
+
+    // Waits for outstanding appends to be synced, then stops the flusher and closes the file.
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            pending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            channel.close();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            FileChannel syncing;
+            lock.lock();
+            try {
+                while (!closed && lastSeq == durableSeq && failure == null) pending.awaitUninterruptibly();
+                if (failure != null || lastSeq == durableSeq) return;
+                target = lastSeq;
+                syncing = channel;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                syncing.force(false);
+            } catch (ClosedChannelException e) {
+                // rotate() closed this file after syncing it itself
+                continue;
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    LoggerUtil.logError("Collection journal sync failed", error);
+                } else if (target > durableSeq) {
+                    durableSeq = target;
+                }
+                synced.signalAll();
+                if (error != null) return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void ensureWritable() throws IOException {
+        if (closed) throw new IOException("Journal is closed");
+        if (failure != null) throw new IOException("Journal is unusable after an earlier failure", failure);
+    }
+
+    private Path journalFile(long firstSeq) {
+        return directory.resolve(String.format("%s%019d%s", JOURNAL_PREFIX, firstSeq, JOURNAL_SUFFIX));
+    }
+
+    private void deleteCoveredJournals(long seq) throws IOException {
+        Path current;
+        lock.lock();
+        try {
+            current = currentFile;
+        } finally {
+            lock.unlock();
+        }
+        List<Path> journals = listJournals(directory);
+        // a file holds the records from its own first seq up to the next file's first seq
+        for (int i = 0; i + 1 < journals.size(); i++) {
+            Path file = journals.get(i);
+            if (!file.equals(current) && firstSeq(journals.get(i + 1)) - 1 <= seq) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void syncDirectory() {
+        // not supported everywhere (e.g. Windows); the rename is still atomic there
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private FileChannel openForAppend(Path file) throws IOException {
+        boolean created = !Files.exists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // a new file's directory entry must be durable before records synced into it can be relied on
+        if (created) syncDirectory();
+        end = channel.size();
+        channel.position(end);
+        return channel;
+    }
+
+    // Replaces the channel an interrupt closed, cut back to the last whole record. The caller's
+    // interrupt is cleared while reopening (it would close the new channel too) and then restored.
+    private void reopen(long position, IOException cause) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                interrupted |= Thread.interrupted();
+                FileChannel reopened = FileChannel.open(currentFile, StandardOpenOption.WRITE);
+                try {
+                    reopened.truncate(position);
+                    reopened.position(position);
+                    channel = reopened;
+                    return;
+                } catch (ClosedByInterruptException again) {
+                    // interrupted once more while reopening; the new channel is closed, so start over
+                    interrupted = true;
+                }
+            }
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Path> listJournals(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX);
+                    })
+                    .sorted((a, b) -> Long.compare(firstSeq(a), firstSeq(b)))
+                    .toList();
+        }
+    }
+
+    private static long firstSeq(Path journal) {
+        String name = journal.getFileName().toString();
+        return Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()));
+    }
+
+    private static long readSnapshot(Path file, List<String> entries) throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+            DataInputStream data = new DataInputStream(checked);
+            if (data.readInt() != SNAPSHOT_MAGIC || data.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a collection snapshot: " + file);
+            }
+            long seq = data.readLong();
+            int count = data.readInt();
+            if (count < 0) throw new IOException("Corrupt collection snapshot: " + file);
+            List<String> loaded = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                int length = data.readInt();
+                if (length < 0 || length > MAX_RECORD_BYTES) throw new IOException("Corrupt collection snapshot: " + file);
+                byte[] bytes = new byte[length];
+                data.readFully(bytes);
+                loaded.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (data.readInt() != expected) throw new IOException("Collection snapshot checksum mismatch: " + file);
+            entries.addAll(loaded);
+            return seq;
+        } catch (EOFException e) {
+            // snapshots are renamed into place whole, so a short one is damage rather than a crash
+            throw new IOException("Truncated collection snapshot: " + file, e);
+        }
+    }
+
+    // lastSeq: the newest record applied so far; lastRecord: the newest record in the file, applied or not.
+    private record Replay(long lastSeq, long lastRecord, int applied) {
+    }
+
+    // Applies the records of one journal file that are newer than afterSeq. A bad record ends the
+    // file: the newest file is truncated there, any older one is damage that cannot be skipped.
+    private static Replay replay(Path file, List<String> entries, long afterSeq, boolean last) throws IOException {
+        long seq = afterSeq;
+        long previous = firstSeq(file) - 1;
+        int applied = 0;
+        long goodEnd = 0;
+        String problem = null;
+
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            byte[] header = new byte[HEADER_BYTES];
+            while (true) {
+                int read = data.readNBytes(header, 0, HEADER_BYTES);
+                if (read == 0) break;
+                if (read < HEADER_BYTES) {
+                    problem = "torn record header";
+                    break;
+                }
+                ByteBuffer head = ByteBuffer.wrap(header);
+                int bodyLength = head.getInt();
+                int crc = head.getInt();
+                if (bodyLength < FIXED_BODY_BYTES || bodyLength > MAX_RECORD_BYTES) {
+                    problem = "bad record length";
+                    break;
+                }
+                byte[] body = data.readNBytes(bodyLength);
+                if (body.length < bodyLength) {
+                    problem = "torn record";
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(body);
+                if ((int) check.getValue() != crc) {
+                    problem = "checksum mismatch";
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                long recordSeq = record.getLong();
+                int opCode = record.get();
+                int index = record.getInt();
+                int contentLength = record.getInt();
+                // only a delete has no content
+                if (opCode < 0 || opCode >= Op.values().length || contentLength < -1
+                        || (contentLength == -1) != (opCode == Op.DELETE.ordinal())
+                        || FIXED_BODY_BYTES + Math.max(contentLength, 0) != bodyLength) {
+                    problem = "malformed record";
+                    break;
+                }
+                // a whole, checksummed record out of sequence is not something a crash leaves behind
+                if (recordSeq != previous + 1) {
+                    throw new IOException("Journal record " + recordSeq + " follows record " + previous + " in " + file);
+                }
+                previous = recordSeq;
+                goodEnd += HEADER_BYTES + bodyLength;
+                if (recordSeq <= seq) continue;
+
+                String content = contentLength < 0 ? null
+                        : new String(body, FIXED_BODY_BYTES, contentLength, StandardCharsets.UTF_8);
+                if (!apply(entries, Op.values()[opCode], index, content)) {
+                    throw new IOException("Journal record " + recordSeq + " does not fit the recovered state: " + file);
+                }
+                seq = recordSeq;
+                applied++;
+            }
+        }
+
+        if (problem != null) {
+            if (!last) throw new IOException("Corrupt journal file (" + problem + "): " + file);
+            LoggerUtil.logWarning("Discarding incomplete journal tail (" + problem + ") in " + file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(goodEnd);
+                channel.force(true);
+            }
+        }
+        return new Replay(seq, previous, applied);
+    }
+
+    // Bytes String.getBytes(UTF_8) would produce; an unpaired surrogate becomes a single '?'.
+    private static long utf8Length(CharSequence text) {
+        long bytes = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static void putUtf8(ByteBuffer out, CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private static boolean apply(List<String> entries, Op op, int index, String content) {
+        switch (op) {
+            case ADD -> entries.add(content);
+            case UPDATE -> {
+                if (index < 0 || index >= entries.size()) return false;
+                entries.set(index, content);
+            }
+            case DELETE -> {
+                if (index < 0 || index >= entries.size()) return false;
+                entries.remove(index);
+            }
+        }
+        return true;
+    }
+}
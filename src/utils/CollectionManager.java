@@ -1,41 +1,317 @@
 package utils;
 
+import exceptions.FileProcessingException;
 import model.TextManager;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
-public class CollectionManager {
-    private final List<TextManager> entries = new ArrayList<>();
+// Insertion-ordered text entries with a hash index, so duplicate checks and lookups are O(1).
+// Writes are serialised; readers share immutable snapshots. A snapshot is a view of a prefix
+// of the entry array, so adds (which only write past every prefix handed out) never copy;
+// an update or delete copies the array once if a snapshot still shares it. Entries are kept as
+// ropes and only flattened to a String when read, so an edit never copies the text it left alone.
+// Opened on a directory, every change is journaled and synced before the write method returns.
+public class CollectionManager implements AutoCloseable {
+    public static final int DEFAULT_COMPACT_EVERY = 10_000;
+
+    // Called under the collection lock, so changes arrive in the order they were applied.
+    public interface Listener {
+        void entryAdded(int position, CharSequence content);
+
+        void entryUpdated(int position, CharSequence oldContent, CharSequence newContent);
+
+        void entryRemoved(int position, CharSequence content);
+    }
+
+    // how many positions hold each entry; updateEntry can still introduce duplicates
+    private final Map<TextManager, Integer> index = new HashMap<>();
+    // the entries, in order; [0, size) is in use
+    private TextManager[] entries = new TextManager[16];
+    private int size;
+    // true once entries backs a snapshot; it must then be copied before a slot in use changes
+    private boolean shared;
+    private volatile Snapshot snapshot;
+
+    private final CollectionJournal journal;
+    private final int compactEvery;
+    private final ExecutorService compactor;
+    private int changesSinceSnapshot;
+    private boolean compactionQueued;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public CollectionManager() {
+        this.journal = null;
+        this.compactEvery = 0;
+        this.compactor = null;
+    }
+
+    // Loads the collection stored in directory and persists every change to it from now on.
+    public CollectionManager(Path directory) throws IOException {
+        this(directory, DEFAULT_COMPACT_EVERY);
+    }
+
+    // compactEvery: changes between automatic snapshots, after which older journal files are dropped.
+    public CollectionManager(Path directory, int compactEvery) throws IOException {
+        if (compactEvery <= 0) {
+            throw new IllegalArgumentException("compactEvery must be positive");
+        }
+        this.journal = CollectionJournal.open(directory);
+        this.compactEvery = compactEvery;
+        this.compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "collection-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CollectionJournal.Recovered recovered = journal.recovered();
+        for (String content : recovered.entries()) {
+            TextManager entry = new TextManager(content);
+            append(entry);
+            index.merge(entry, 1, Integer::sum);
+        }
+        changesSinceSnapshot = recovered.replayed();
+    }
 
     //collections operations
     public void addEntry(String content) {
-        TextManager entry = new TextManager(content);
-        if (!entries.contains(entry)) {
-            entries.add(entry);
+        TextManager entry = new TextManager(requireContent(content));
+        long seq;
+        synchronized (this) {
+            if (index.containsKey(entry)) return;
+            seq = log(CollectionJournal.Op.ADD, size, entry);
+            append(entry);
+            index.put(entry, 1);
+            for (Listener listener : listeners) listener.entryAdded(size - 1, entry);
         }
+        awaitDurable(seq);
     }
 
     public boolean updateEntry(int index, String newContent) {
-        if (index >= 0 && index < entries.size()) {
-            entries.set(index, new TextManager(newContent));
-            return true;
+        TextManager entry = new TextManager(requireContent(newContent));
+        return editEntry(index, old -> entry);
+    }
+
+    // Replaces the entry with edit applied to its rope, so the new entry shares the text the edit
+    // left alone with the old one. An edit that returns the entry itself changes nothing.
+    public boolean editEntry(int index, UnaryOperator<TextManager> edit) {
+        long seq;
+        synchronized (this) {
+            if (index < 0 || index >= size) return false;
+            TextManager old = entries[index];
+            TextManager entry = Objects.requireNonNull(edit.apply(old), "edit returned null");
+            if (entry == old) return true;
+            seq = log(CollectionJournal.Op.UPDATE, index, entry);
+            unindex(old);
+            this.index.merge(entry, 1, Integer::sum);
+            unshare();
+            entries[index] = entry;
+            snapshot = null;
+            for (Listener listener : listeners) listener.entryUpdated(index, old, entry);
         }
-        return false;
+        awaitDurable(seq);
+        return true;
     }
 
     public boolean deleteEntry(int index) {
-        if (index >= 0 && index < entries.size()) {
-            entries.remove(index);
-            return true;
+        long seq;
+        synchronized (this) {
+            if (index < 0 || index >= size) return false;
+            seq = log(CollectionJournal.Op.DELETE, index, null);
+            TextManager old = entries[index];
+            unindex(old);
+            unshare();
+            System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+            entries[--size] = null;
+            snapshot = null;
+            for (Listener listener : listeners) listener.entryRemoved(index, old);
         }
-        return false;
+        awaitDurable(seq);
+        return true;
+    }
+
+    public synchronized boolean contains(String content) {
+        return content != null && index.containsKey(new TextManager(content));
     }
 
+    public String getEntry(int index) {
+        TextManager entry;
+        synchronized (this) {
+            entry = entries[Objects.checkIndex(index, size)];
+        }
+        return entry.toString();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Immutable; the same list is handed out until the collection changes.
     public List<String> getAllEntries() {
-        List<String> result = new ArrayList<>();
-        for (TextManager entry : entries) {
-            result.add(entry.toString());
+        return snapshot();
+    }
+
+    // The listener is first told about every current entry, as if each had just been added.
+    public synchronized void addListener(Listener listener) {
+        for (int i = 0; i < size; i++) {
+            listener.entryAdded(i, entries[i]);
+        }
+        listeners.add(listener);
+    }
+
+    // Once this returns the listener is not being called and will not be called again.
+    public synchronized void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isPersistent() {
+        return journal != null;
+    }
+
+    // Snapshots the current state and drops the journal files it makes redundant.
+    public void compact() {
+        if (journal == null) return;
+        try {
+            long seq;
+            List<TextManager> state;
+            synchronized (this) {
+                seq = journal.rotate();
+                state = snapshot().texts();
+                changesSinceSnapshot = 0;
+            }
+            // the snapshot is written outside the lock; changes meanwhile go to the new journal file
+            journal.writeSnapshot(state, seq);
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to snapshot the collection", e);
+        }
+    }
+
+    // Finishes any snapshot in progress and closes the journal; later writes fail.
+    @Override
+    public void close() {
+        if (journal == null) return;
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return result;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to close the collection journal", e);
+        }
+    }
+
+    // Journals a change under the collection lock, so records are in the same order as the changes.
+    private long log(CollectionJournal.Op op, int position, CharSequence content) {
+        if (journal == null) return 0;
+        try {
+            long seq = journal.append(op, position, content);
+            if (++changesSinceSnapshot >= compactEvery && !compactionQueued) {
+                compactionQueued = true;
+                compactor.execute(this::compactInBackground);
+            }
+            return seq;
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to journal a collection change", e);
+        }
+    }
+
+    private void compactInBackground() {
+        synchronized (this) {
+            compactionQueued = false;
+        }
+        try {
+            compact();
+        } catch (FileProcessingException e) {
+            // the journal still holds every change, so this only costs recovery time
+            LoggerUtil.logError("Background collection snapshot failed", e);
+        }
+    }
+
+    // Called outside the lock so other writers can append while this one waits for the fsync.
+    private void awaitDurable(long seq) {
+        if (journal == null) return;
+        try {
+            journal.awaitDurable(seq);
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to sync a collection change", e);
+        }
+    }
+
+    private static String requireContent(String content) {
+        if (content == null) {
+            throw new IllegalArgumentException("Entry content must not be null");
+        }
+        return content;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new Snapshot(entries, size);
+                shared = true;
+            }
+            return snapshot;
+        }
+    }
+
+    // Slots past the current size are outside every snapshot, so appending never needs a copy.
+    private void append(TextManager entry) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+            shared = false;
+        }
+        entries[size++] = entry;
+        snapshot = null;
+    }
+
+    private void unshare() {
+        if (shared) {
+            entries = entries.clone();
+            shared = false;
+        }
+    }
+
+    // Flattens an entry each time it is read; an unedited entry is still its original String.
+    private static final class Snapshot extends AbstractList<String> implements RandomAccess {
+        private final TextManager[] entries;
+        private final int size;
+
+        Snapshot(TextManager[] entries, int size) {
+            this.entries = entries;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            return entries[Objects.checkIndex(index, size)].toString();
+        }
+
+        List<TextManager> texts() {
+            return Arrays.asList(entries).subList(0, size);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private void unindex(TextManager entry) {
+        index.computeIfPresent(entry, (key, count) -> count == 1 ? null : count - 1);
     }
 }
@@ -1,14 +1,72 @@
 package utils;
 
+import model.BatchResult;
+import model.DeadlineCharSequence;
+import model.FileMatch;
+import model.ReplacementRuleSet;
+import model.SpaceSavingSketch;
+import model.WordCountTable;
+import model.WordFrequencyEngine;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class FileHandlerUtil {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    public static final int DEFAULT_MAX_MATCH_LENGTH = 4096;
+    public static final int DEFAULT_BATCH_CHUNK_BYTES = 8 << 20;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    private static final int PROGRESS_INTERVAL_MASK = (1 << 14) - 1;
+    // chars kept in front of each window so ^, \b and short lookbehinds see the real preceding text
+    private static final int LOOKBEHIND_CONTEXT = 64;
+    // shared by every parallel batch run; each run keeps at most its own parallelism busy, and idle threads exit
+    private static final ExecutorService BATCH_WORKERS = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            30, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "batch-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private volatile Duration regexBudget;
+
+    // When set, searching or replacing one window of a streamed file aborts with RegexTimeoutException
+    // once it uses this much CPU time. The limit is per window, so a long file is never cut short.
+    public void setRegexBudget(Duration regexBudget) {
+        this.regexBudget = regexBudget;
+    }
+
+    public Duration getRegexBudget() {
+        return regexBudget;
+    }
+
     public String readFile(String path) throws IOException {
         StringBuilder content = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
@@ -16,7 +74,7 @@ public class FileHandlerUtil {
             while ((line = reader.readLine()) != null) {
                 content.append(line).append(System.lineSeparator());
             }
-            LoggerUtil.logInfo("File successfully read: " + path);
+            LoggerUtil.logInfo(() -> "File successfully read: " + path);
         } catch (IOException e) {
             LoggerUtil.logError("Failed to read file: " + path, e);
             throw e;
@@ -27,7 +85,7 @@ public class FileHandlerUtil {
     public void writeFile(String path, String content) throws IOException {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(path))) {
             writer.write(content);
-            LoggerUtil.logInfo("File successfully written: " + path);
+            LoggerUtil.logInfo(() -> "File successfully written: " + path);
         } catch (IOException e) {
             LoggerUtil.logError("Failed to write file: " + path, e);
             throw e;
@@ -48,5 +106,476 @@ public class FileHandlerUtil {
         return result;
     }
 
+    //stream batch processing straight into the output file, keeping only a short preview in memory
+    public BatchResult batchProcessToFile(String inputPath, String outputPath, Predicate<String> filter,
+                                          Function<String, String> transformer, int previewLines) throws IOException {
+        return batchProcessToFile(inputPath, outputPath, filter, transformer, previewLines, fraction -> { });
+    }
+
+    //progress receives the fraction of the input consumed; an interrupted thread stops the run
+    public BatchResult batchProcessToFile(String inputPath, String outputPath, Predicate<String> filter,
+                                          Function<String, String> transformer, int previewLines,
+                                          DoubleConsumer progress) throws IOException {
+        List<String> preview = new ArrayList<>(Math.max(0, Math.min(previewLines, 1024)));
+        long linesRead = 0;
+        long linesWritten = 0;
+        try (FileInputStream input = new FileInputStream(inputPath);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input), STREAM_BUFFER_SIZE);
+             BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath), STREAM_BUFFER_SIZE)) {
+            FileChannel channel = input.getChannel();
+            double size = Math.max(1, channel.size());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if ((++linesRead & PROGRESS_INTERVAL_MASK) == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Batch processing interrupted: " + inputPath);
+                    }
+                    progress.accept(channel.position() / size);
+                }
+                if (!filter.test(line)) continue;
+
+                String processed = transformer.apply(line);
+                if (linesWritten > 0) writer.write('\n');
+                writer.write(processed);
+                if (linesWritten < previewLines) preview.add(processed);
+                linesWritten++;
+            }
+            LoggerUtil.logInfo("Batch processed " + inputPath + " into " + outputPath + " (" + linesWritten + " lines)");
+        } catch (IOException e) {
+            LoggerUtil.logError("Batch processing failed: " + inputPath, e);
+            throw e;
+        }
+        return new BatchResult(outputPath, linesRead, linesWritten, preview);
+    }
+
+    //line-by-line batch processing between streams, e.g. stdin to stdout; every written line ends in '\n'
+    public long batchProcessStream(BufferedReader in, Writer out, Predicate<String> filter, Function<String, String> transformer) throws IOException {
+        long linesWritten = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!filter.test(line)) continue;
+            out.write(transformer.apply(line));
+            out.write('\n');
+            linesWritten++;
+        }
+        return linesWritten;
+    }
+
+    //parallel batch processing; filter and transformer must be safe to call from several threads
+    public List<String> batchProcessFileParallel(String path, Predicate<String> filter, Function<String, String> transformer,
+                                                 int parallelism, int chunkBytes) throws IOException {
+        List<String> result = new ArrayList<>();
+        batchProcessFileParallel(path, filter, transformer, parallelism, chunkBytes, result::addAll);
+        return result;
+    }
+
+    //hands each range's output to onRange in file order as soon as it and every earlier range are done;
+    //at most parallelism ranges are being processed or waiting to be handed over at any time
+    public void batchProcessFileParallel(String path, Predicate<String> filter, Function<String, String> transformer,
+                                         int parallelism, int chunkBytes, Consumer<List<String>> onRange) throws IOException {
+        if (parallelism < 1 || chunkBytes < 1) {
+            throw new IllegalArgumentException("Invalid parallelism " + parallelism + " or chunk size " + chunkBytes);
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            List<long[]> ranges = splitOnNewlines(channel, chunkBytes);
+            if (parallelism == 1 || ranges.size() <= 1) {
+                for (long[] range : ranges) {
+                    onRange.accept(processRange(channel, range[0], range[1], filter, transformer));
+                }
+                return;
+            }
+
+            Deque<Future<List<String>>> inFlight = new ArrayDeque<>(parallelism);
+            int next = 0;
+            try {
+                while (next < ranges.size() || !inFlight.isEmpty()) {
+                    while (next < ranges.size() && inFlight.size() < parallelism) {
+                        long[] range = ranges.get(next++);
+                        inFlight.add(BATCH_WORKERS.submit(() -> processRange(channel, range[0], range[1], filter, transformer)));
+                    }
+                    // the oldest range is always the next one due, so waiting on it keeps the line order
+                    onRange.accept(inFlight.remove().get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Batch processing interrupted: " + path);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                throw new IOException("Batch processing failed: " + path, e.getCause());
+            } finally {
+                for (Future<List<String>> task : inFlight) task.cancel(true);
+            }
+        }
+    }
+
+    // Cuts the file into ranges of roughly chunkBytes, each ending just after a '\n'.
+    // UTF-8 continuation bytes never equal '\n', so every range decodes on its own.
+    private static List<long[]> splitOnNewlines(FileChannel channel, int chunkBytes) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkBytes);
+            boolean aligned = end == size;
+            while (!aligned) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        end += i + 1;
+                        aligned = true;
+                        break;
+                    }
+                }
+                if (!aligned) {
+                    end += read;
+                    aligned = end >= size;
+                }
+            }
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    // Streams the range through a small buffer, so no range is held as one array and none is capped at 2 GB.
+    private static List<String> processRange(FileChannel channel, long start, long end,
+                                             Predicate<String> filter, Function<String, String> transformer) {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new RangeInputStream(channel, start, end), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                accept(line, filter, transformer, result);
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void accept(String line, Predicate<String> filter, Function<String, String> transformer, List<String> result) {
+        if (filter.test(line)) {
+            result.add(transformer.apply(line));
+        }
+    }
+
+    //read up to maxBytes appended after fromByte, stopping before any incomplete UTF-8 sequence; returns the next offset
+    public long readAppended(String path, long fromByte, int maxBytes, StringBuilder out) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long available = channel.size() - fromByte;
+            if (available <= 0) return fromByte;
+
+            ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(available, maxBytes));
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, fromByte + bytes.position()) <= 0) break;
+            }
+            int complete = completeUtf8Length(bytes.array(), bytes.position());
+            out.append(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes.array(), 0, complete)));
+            return fromByte + complete;
+        }
+    }
+
+    private static int completeUtf8Length(byte[] bytes, int length) {
+        // walk back over continuation bytes to the last lead byte and check its sequence fits
+        int lead = length - 1;
+        while (lead >= 0 && length - lead < 4 && (bytes[lead] & 0xC0) == 0x80) lead--;
+        if (lead < 0) return length;
+        int b = bytes[lead] & 0xFF;
+        int needed = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        return lead + needed <= length ? length : lead;
+    }
+
+    //search a file chunk by chunk; matches longer than maxMatchLength may be cut at a chunk boundary
+    public long searchFile(String path, Pattern pattern, int chunkSize, int maxMatchLength, Consumer<FileMatch> onMatch) throws IOException {
+        if (chunkSize < 2 || maxMatchLength < 0) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize + " or max match length " + maxMatchLength);
+        }
+        try (ChunkedTextReader reader = openWindow(Path.of(path), chunkSize, maxMatchLength)) {
+            long count = search(reader, pattern, maxMatchLength, regexBudget, onMatch);
+            LoggerUtil.logInfo(() -> "File successfully searched: " + path + " (" + count + " matches)");
+            return count;
+        } catch (IOException e) {
+            LoggerUtil.logError("Failed to search file: " + path, e);
+            throw e;
+        }
+    }
+
+    public static long search(ChunkedTextReader reader, Pattern pattern, int maxMatchLength, Consumer<FileMatch> onMatch) throws IOException {
+        return search(reader, pattern, maxMatchLength, null, onMatch);
+    }
+
+    public static long search(ChunkedTextReader reader, Pattern pattern, int maxMatchLength, Duration windowBudget,
+                              Consumer<FileMatch> onMatch) throws IOException {
+        long count = 0;
+        int from = 0;
+        // runs at least once so an empty input still sees the patterns that match empty text
+        while (true) {
+            reader.fill();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Search interrupted");
+            }
+            CharBuffer window = reader.window();
+            boolean eof = reader.isEndOfInput();
+            int cutoff = eof ? window.length() : window.length() - maxMatchLength;
+            int lastEnd = from;
+            int deferFrom = -1;
 
-}
\ No newline at end of file
+            Matcher matcher = windowMatcher(pattern, guard(window, windowBudget), from);
+            while (matcher.find()) {
+                int start = matcher.start();
+                // a match near the end of the window may still grow once more input arrives
+                if (!eof && start > from && (start >= cutoff || matcher.hitEnd())) {
+                    deferFrom = start;
+                    break;
+                }
+                long byteStart = reader.byteOffset(start);
+                onMatch.accept(new FileMatch(reader.charOffset(start), reader.charOffset(matcher.end()),
+                        byteStart, reader.byteOffset(matcher.end()), matcher.group()));
+                count++;
+                lastEnd = matcher.end();
+            }
+
+            if (eof) break;
+            from = slide(reader, lastEnd, cutoff, deferFrom);
+        }
+        return count;
+    }
+
+    //search any UTF-8 channel (stdin, a pipe) with the same windowing as searchFile; the caller closes it
+    public long searchStream(ReadableByteChannel in, Pattern pattern, Consumer<FileMatch> onMatch) throws IOException {
+        return search(openWindow(in, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_MATCH_LENGTH), pattern, DEFAULT_MAX_MATCH_LENGTH, regexBudget, onMatch);
+    }
+
+    //replace across a UTF-8 channel into out without holding the whole text; the caller closes both
+    public long replaceStream(ReadableByteChannel in, Writer out, ReplacementRuleSet rules) throws IOException {
+        return replace(openWindow(in, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_MATCH_LENGTH), rules, DEFAULT_MAX_MATCH_LENGTH, regexBudget, out);
+    }
+
+    //count words over a UTF-8 channel one window at a time, cutting each window after its last separator
+    public WordCountTable countWords(ReadableByteChannel in, WordFrequencyEngine engine) throws IOException {
+        WordCountTable total = new WordCountTable();
+        forEachWordWindow(in, engine, (window, end) -> engine.countRange(window, 0, end, total));
+        return total;
+    }
+
+    //approximate word counts over a UTF-8 channel: one sketch per window, merged as they come
+    public SpaceSavingSketch sketchWords(ReadableByteChannel in, WordFrequencyEngine engine, int capacity) throws IOException {
+        SpaceSavingSketch[] total = {new SpaceSavingSketch(capacity)};
+        forEachWordWindow(in, engine, (window, end) -> total[0] = total[0].merge(engine.sketchRange(window, 0, end, capacity)));
+        return total[0];
+    }
+
+    private static void forEachWordWindow(ReadableByteChannel in, WordFrequencyEngine engine,
+                                          ObjIntConsumer<CharBuffer> consumer) throws IOException {
+        ChunkedTextReader reader = new ChunkedTextReader(in, DEFAULT_CHUNK_SIZE);
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Word count interrupted");
+            }
+            reader.fill();
+            CharBuffer window = reader.window();
+            boolean eof = reader.isEndOfInput();
+            int cut = eof ? window.length() : engine.lastBoundary(window, 0, window.length());
+            // a single token filling the whole window is counted in pieces rather than never
+            if (cut == 0 && !eof) cut = window.length();
+            consumer.accept(window, cut);
+            if (eof) return;
+            reader.discard(cut);
+        }
+    }
+
+    //rewrite a file chunk by chunk through a temp file that atomically replaces outputPath (which may be inputPath)
+    public long replaceFile(String inputPath, String outputPath, Pattern pattern, String replacement,
+                            int chunkSize, int maxMatchLength) throws IOException {
+        return replaceFile(inputPath, outputPath, ReplacementRuleSet.single(pattern, replacement), chunkSize, maxMatchLength);
+    }
+
+    public long replaceFile(String inputPath, String outputPath, ReplacementRuleSet rules,
+                            int chunkSize, int maxMatchLength) throws IOException {
+        if (chunkSize < 2 || maxMatchLength < 0) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize + " or max match length " + maxMatchLength);
+        }
+        Path target = Path.of(outputPath).toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            long count;
+            try (ChunkedTextReader reader = openWindow(Path.of(inputPath), chunkSize, maxMatchLength);
+                 FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // lone surrogates (e.g. from empty matches between a pair) are written as '?' rather than failing the rewrite
+                Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE), STREAM_BUFFER_SIZE);
+                count = replace(reader, rules, maxMatchLength, regexBudget, writer);
+                writer.flush();
+                channel.force(true);
+            }
+            copyAttributes(Files.exists(target) ? target : Path.of(inputPath), temp);
+            moveIntoPlace(temp, target);
+            LoggerUtil.logInfo(() -> "File successfully rewritten: " + inputPath + " -> " + outputPath + " (" + count + " replacements)");
+            return count;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            LoggerUtil.logError("Failed to rewrite file: " + inputPath, e);
+            throw e;
+        }
+    }
+
+    // Same windowing as search(): unmatched text and expanded replacements go straight to out.
+    public static long replace(ChunkedTextReader reader, ReplacementRuleSet rules, int maxMatchLength, Writer out) throws IOException {
+        return replace(reader, rules, maxMatchLength, null, out);
+    }
+
+    public static long replace(ChunkedTextReader reader, ReplacementRuleSet rules, int maxMatchLength, Duration windowBudget,
+                               Writer out) throws IOException {
+        StringBuilder pending = new StringBuilder(STREAM_BUFFER_SIZE);
+        char[] spill = new char[STREAM_BUFFER_SIZE];
+        long count = 0;
+        int from = 0;
+        while (true) {
+            reader.fill();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Replace interrupted");
+            }
+            CharBuffer window = reader.window();
+            boolean eof = reader.isEndOfInput();
+            int cutoff = eof ? window.length() : window.length() - maxMatchLength;
+            int lastEnd = from;
+            int deferFrom = -1;
+
+            ReplacementRuleSet.Scan scan = rules.scan(guard(window, windowBudget), from);
+            while (scan.find()) {
+                int start = scan.start();
+                if (!eof && start > from && (start >= cutoff || scan.hitEnd())) {
+                    deferFrom = start;
+                    break;
+                }
+                appendWindow(pending, window, lastEnd, start);
+                scan.appendReplacement(pending);
+                count++;
+                lastEnd = scan.end();
+                if (pending.length() >= STREAM_BUFFER_SIZE) spill = drain(pending, spill, out);
+            }
+
+            if (eof) {
+                appendWindow(pending, window, lastEnd, window.length());
+                break;
+            }
+            int carry = carry(window, lastEnd, cutoff, deferFrom);
+            appendWindow(pending, window, lastEnd, carry);
+            spill = drain(pending, spill, out);
+            from = slide(reader, lastEnd, cutoff, deferFrom);
+        }
+        drain(pending, spill, out);
+        return count;
+    }
+
+    private static ChunkedTextReader openWindow(Path path, int chunkSize, int maxMatchLength) throws IOException {
+        return openWindow(FileChannel.open(path, StandardOpenOption.READ), chunkSize, maxMatchLength);
+    }
+
+    private static ChunkedTextReader openWindow(ReadableByteChannel channel, int chunkSize, int maxMatchLength) {
+        return new ChunkedTextReader(channel, chunkSize + maxMatchLength + LOOKBEHIND_CONTEXT);
+    }
+
+    private static CharSequence guard(CharBuffer window, Duration budget) {
+        return budget == null ? window : DeadlineCharSequence.withBudget(window, budget);
+    }
+
+    // Matches from the given window index while still letting the pattern look at the chars before it.
+    private static Matcher windowMatcher(Pattern pattern, CharSequence window, int from) {
+        return pattern.matcher(window)
+                .region(from, window.length())
+                .useTransparentBounds(true)
+                .useAnchoringBounds(false);
+    }
+
+    private static int carry(CharBuffer window, int lastEnd, int cutoff, int deferFrom) {
+        int carry = Math.max(lastEnd, cutoff);
+        if (deferFrom >= 0) carry = Math.min(carry, deferFrom);
+        // never split a surrogate pair, or the next window would match inside it
+        if (carry > lastEnd && Character.isLowSurrogate(window.get(carry)) && Character.isHighSurrogate(window.get(carry - 1))) {
+            carry--;
+        }
+        return carry;
+    }
+
+    // Discards everything before the carry point except some lookbehind context; returns where matching resumes.
+    private static int slide(ChunkedTextReader reader, int lastEnd, int cutoff, int deferFrom) {
+        int carry = carry(reader.window(), lastEnd, cutoff, deferFrom);
+        int context = Math.min(carry, LOOKBEHIND_CONTEXT);
+        reader.discard(carry - context);
+        return context;
+    }
+
+    private static void appendWindow(StringBuilder out, CharBuffer window, int from, int to) {
+        out.append(window.array(), window.arrayOffset() + window.position() + from, to - from);
+    }
+
+    private static char[] drain(StringBuilder pending, char[] spill, Writer out) throws IOException {
+        int length = pending.length();
+        if (length > spill.length) spill = new char[length];
+        pending.getChars(0, length, spill, 0);
+        out.write(spill, 0, length);
+        pending.setLength(0);
+        return spill;
+    }
+
+    // Positional reads of [position, end) from a channel shared with other ranges; closing leaves the channel open.
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= end) return -1;
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position)), position);
+            if (read < 0) return -1;
+            position += read;
+            return read;
+        }
+    }
+
+    // The temp file is created owner-only; give it the permissions, and where allowed the owner and
+    // group, of the file it replaces (or of the input when the output is new).
+    private static void copyAttributes(Path from, Path to) throws IOException {
+        PosixFileAttributeView source = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        PosixFileAttributeView target = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (source == null || target == null) return;
+        PosixFileAttributes attributes = source.readAttributes();
+        try {
+            target.setGroup(attributes.group());
+            target.setOwner(attributes.owner());
+        } catch (IOException e) {
+            // only privileged users may give a file away; the rewrite is then owned by whoever ran it
+        }
+        // after the owner change, which may clear setuid/setgid bits
+        target.setPermissions(attributes.permissions());
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package utils;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.logging.Formatter;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+// Produces exactly what SimpleFormatter does with its default format, but formats the timestamp
+// once per second instead of running String.format over every record.
+public class LogLineFormatter extends Formatter {
+    private static final String FORMAT_PROPERTY = "java.util.logging.SimpleFormatter.format";
+    private static final String TIMESTAMP_FORMAT = "%1$tb %1$td, %1$tY %1$tl:%1$tM:%1$tS %1$Tp";
+
+    private record Timestamp(long second, String text) {
+    }
+
+    private volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, "");
+
+    // Only when no custom SimpleFormatter format is configured is the output the same.
+    public static boolean matchesSimpleFormatter() {
+        return System.getProperty(FORMAT_PROPERTY) == null
+                && LogManager.getLogManager().getProperty(FORMAT_PROPERTY) == null;
+    }
+
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder line = new StringBuilder(128);
+        line.append(timestamp(record.getInstant())).append(' ');
+        if (record.getSourceClassName() != null) {
+            line.append(record.getSourceClassName());
+            if (record.getSourceMethodName() != null) line.append(' ').append(record.getSourceMethodName());
+        } else {
+            line.append(record.getLoggerName());
+        }
+        line.append(System.lineSeparator())
+                .append(record.getLevel().getLocalizedName()).append(": ")
+                .append(formatMessage(record));
+        if (record.getThrown() != null) {
+            StringWriter trace = new StringWriter();
+            try (PrintWriter out = new PrintWriter(trace)) {
+                out.println();
+                record.getThrown().printStackTrace(out);
+            }
+            line.append(trace);
+        }
+        return line.append(System.lineSeparator()).toString();
+    }
+
+    private String timestamp(Instant instant) {
+        long second = instant.getEpochSecond();
+        Timestamp cached = timestamp;
+        if (cached.second() != second) {
+            ZonedDateTime time = ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault());
+            cached = new Timestamp(second, String.format(TIMESTAMP_FORMAT, time));
+            timestamp = cached;
+        }
+        return cached.text();
+    }
+}
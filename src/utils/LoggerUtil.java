@@ -1,30 +1,86 @@
 package utils;
 
+import java.nio.file.Path;
+import java.util.function.Supplier;
 import java.util.logging.*;
 
 public class LoggerUtil {
     private static final Logger logger = Logger.getLogger("TextProcessorLogger");
+    // records carry this as their source, so the formatter never walks the stack to find it
+    private static final String SOURCE = LoggerUtil.class.getName();
+
+    // Where and how records are written. queueCapacity <= 0 writes on the calling thread.
+    public record Settings(Path file, long maxFileBytes, int backups, boolean console,
+                           int queueCapacity, RotatingLogHandler.OverflowPolicy overflow) {
+        // app.log in the working directory, echoed to the console, unless these properties say otherwise
+        public static final String FILE_PROPERTY = "textprocessor.log.file";
+        public static final String CONSOLE_PROPERTY = "textprocessor.log.console";
+
+        public static Settings defaults() {
+            return new Settings(Path.of(System.getProperty(FILE_PROPERTY, "app.log")), 10L << 20, 5,
+                    Boolean.parseBoolean(System.getProperty(CONSOLE_PROPERTY, "true")),
+                    8192, RotatingLogHandler.OverflowPolicy.BLOCK);
+        }
+    }
+
+    private static RotatingLogHandler handler;
 
     static {
+        // the root logger's console handler would print every record a second time
+        logger.setUseParentHandlers(false);
         try {
-            FileHandler fh = new FileHandler("app.log", true);
-            fh.setFormatter(new SimpleFormatter());
-            ConsoleHandler ch = new ConsoleHandler();  // ✅ New console handler
-            ch.setFormatter(new SimpleFormatter());
-            logger.addHandler(fh);
-            logger.addHandler(ch);
+            configure(Settings.defaults());
         } catch (Exception e) {
             LoggerUtil.logError("Logging setup failed", e);
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(LoggerUtil::shutdown, "log-shutdown"));
+    }
 
+    // Replaces the current handler; records already queued on it are written out first.
+    public static synchronized void configure(Settings settings) throws java.io.IOException {
+        RotatingLogHandler next = new RotatingLogHandler(settings.file(), settings.maxFileBytes(), settings.backups(),
+                settings.console(), settings.queueCapacity(), settings.overflow());
+        RotatingLogHandler previous = handler;
+        logger.addHandler(next);
+        handler = next;
+        if (previous != null) {
+            logger.removeHandler(previous);
+            previous.close();
+        }
+    }
+
+    // Blocks until everything logged so far has been written.
+    public static synchronized void flush() {
+        if (handler != null) handler.flush();
+    }
+
+    private static synchronized void shutdown() {
+        if (handler != null) handler.close();
     }
 
     //logger methods
     public static void logInfo(String message) {
-        logger.info(message);
+        logger.logp(Level.INFO, SOURCE, "logInfo", message);
+    }
+
+    // The message is only built if INFO is being logged.
+    public static void logInfo(Supplier<String> message) {
+        if (logger.isLoggable(Level.INFO)) logInfo(message.get());
+    }
+
+    public static void logWarning(String message) {
+        logger.logp(Level.WARNING, SOURCE, "logWarning", message);
+    }
+
+    public static void logWarning(Supplier<String> message) {
+        if (logger.isLoggable(Level.WARNING)) logWarning(message.get());
     }
 
     public static void logError(String message, Throwable t) {
-        logger.log(Level.SEVERE, message, t);
+        logger.logp(Level.SEVERE, SOURCE, "logError", message, t);
+    }
+
+    public static void logError(Supplier<String> message, Throwable t) {
+        if (logger.isLoggable(Level.SEVERE)) logError(message.get(), t);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,241 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+// Read-only view of a UTF-8 file as numbered lines, for displaying files far larger than the heap.
+// index() records the byte offset of every PAGE_LINES-th line, so the whole index for a file of
+// millions of lines is a few hundred KB; a page of lines is then one positional read, decoded on
+// demand and kept in a small LRU cache. Lines longer than MAX_LINE_BYTES are wrapped so that no
+// single page can grow without bound.
+public class PagedTextFile implements Closeable {
+    public static final int PAGE_LINES = 64;
+    public static final int MAX_LINE_BYTES = 16 * 1024;
+    private static final int READ_BUFFER_BYTES = 4 << 20;
+    private static final int CACHED_PAGES = 64;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+
+    // pageStarts[k] is the byte offset of line k * PAGE_LINES
+    private long[] pageStarts = new long[0];
+    private int lineCount;
+    private long indexedBytes;
+    private boolean indexed;
+
+    private final Map<Integer, String[]> pages = new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    public PagedTextFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    // One sequential pass over the file; progress gets the fraction read. Interrupting the thread aborts it.
+    public void index(DoubleConsumer progress) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_BYTES, Math.max(size, MAX_LINE_BYTES)));
+        byte[] bytes = buffer.array();
+        long base = 0;
+        int lines = 0;
+        long[] starts = new long[Math.max(16, (int) Math.min(Integer.MAX_VALUE - 8, size / (PAGE_LINES * 40) + 16))];
+        boolean eof = false;
+        while (!eof) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Indexing interrupted: " + path);
+            }
+            eof = channel.read(buffer, base + buffer.position()) < 0 || base + buffer.position() >= size;
+            int limit = buffer.position();
+            int from = 0;
+            while (from < limit) {
+                int end = lineEnd(bytes, from, limit, eof);
+                if (end < 0) break;
+                if (lines % PAGE_LINES == 0) {
+                    int page = lines / PAGE_LINES;
+                    if (page == starts.length) starts = Arrays.copyOf(starts, page * 2);
+                    starts[page] = base + from;
+                }
+                lines++;
+                from = end;
+            }
+            // keep the unfinished line for the next read
+            System.arraycopy(bytes, from, bytes, 0, limit - from);
+            buffer.position(limit - from);
+            base += from;
+            progress.accept(size == 0 ? 1.0 : (double) base / size);
+        }
+        synchronized (this) {
+            pageStarts = starts;
+            lineCount = lines;
+            indexedBytes = base;
+            indexed = true;
+            pages.clear();
+        }
+    }
+
+    public synchronized int lineCount() {
+        return lineCount;
+    }
+
+    public synchronized boolean isIndexed() {
+        return indexed;
+    }
+
+    public String line(int index) throws IOException {
+        return page(index / PAGE_LINES)[index % PAGE_LINES];
+    }
+
+    public List<String> lines(int first, int count) throws IOException {
+        int last = Math.min(lineCount(), first + count);
+        List<String> lines = new ArrayList<>(Math.max(0, last - first));
+        for (int i = Math.max(0, first); i < last; i++) lines.add(line(i));
+        return lines;
+    }
+
+    // Line that contains the given byte offset, e.g. to show where a match from searchFile() sits.
+    public int lineAt(long byteOffset) throws IOException {
+        int pageCount;
+        long[] starts;
+        synchronized (this) {
+            checkIndexed();
+            pageCount = (lineCount + PAGE_LINES - 1) / PAGE_LINES;
+            starts = pageStarts;
+        }
+        if (pageCount == 0) return 0;
+        int page = Arrays.binarySearch(starts, 0, pageCount, byteOffset);
+        if (page < 0) page = -page - 2;
+        page = Math.max(0, page);
+
+        byte[] bytes = read(starts[page], pageEnd(page));
+        int line = page * PAGE_LINES;
+        int from = 0;
+        long target = byteOffset - starts[page];
+        while (from < bytes.length) {
+            int end = lineEnd(bytes, from, bytes.length, true);
+            if (target < end) return line;
+            line++;
+            from = end;
+        }
+        return Math.max(0, line - 1);
+    }
+
+    // Decoded text of a byte range, such as a match; at most maxBytes are read.
+    public String text(long byteStart, long byteEnd, int maxBytes) throws IOException {
+        long end = Math.min(byteEnd, Math.min(size, byteStart + maxBytes));
+        if (end <= byteStart) return "";
+        return decode(read(byteStart, end), 0, (int) (end - byteStart));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String[] page(int page) throws IOException {
+        long start;
+        long end;
+        int first;
+        synchronized (this) {
+            checkIndexed();
+            String[] cached = pages.get(page);
+            if (cached != null) return cached;
+            if (page < 0 || page * PAGE_LINES >= lineCount) {
+                throw new IndexOutOfBoundsException("Line " + page * PAGE_LINES + " of " + lineCount);
+            }
+            start = pageStarts[page];
+            end = pageEnd(page);
+            first = page * PAGE_LINES;
+        }
+
+        byte[] bytes = read(start, end);
+        String[] lines = new String[Math.min(PAGE_LINES, lineCount() - first)];
+        int from = 0;
+        for (int i = 0; i < lines.length; i++) {
+            int next = lineEnd(bytes, from, bytes.length, true);
+            int textEnd = next;
+            if (textEnd > from && bytes[textEnd - 1] == '\n') {
+                textEnd--;
+                if (textEnd > from && bytes[textEnd - 1] == '\r') textEnd--;
+            }
+            lines[i] = decode(bytes, from, textEnd - from);
+            from = next;
+        }
+        synchronized (this) {
+            pages.put(page, lines);
+        }
+        return lines;
+    }
+
+    private synchronized long pageEnd(int page) {
+        return (page + 1) * PAGE_LINES < lineCount ? pageStarts[page + 1] : indexedBytes;
+    }
+
+    private byte[] read(long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) break;
+        }
+        return buffer.array();
+    }
+
+    private void checkIndexed() {
+        if (!indexed) throw new IllegalStateException("index() has not finished for " + path);
+    }
+
+    private static String decode(byte[] bytes, int offset, int length) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(ByteBuffer.wrap(bytes, offset, length))
+                    .toString();
+        } catch (IOException e) {
+            // REPLACE never reports malformed input
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // End (exclusive, after any '\n') of the line starting at from, or -1 if more input is needed.
+    // Without a newline within MAX_LINE_BYTES the line is wrapped there, on a UTF-8 character boundary.
+    static int lineEnd(byte[] bytes, int from, int limit, boolean eof) {
+        int scanEnd = Math.min(limit, from + MAX_LINE_BYTES);
+        for (int i = from; i < scanEnd; i++) {
+            if (bytes[i] == '\n') return i + 1;
+        }
+        if (scanEnd - from == MAX_LINE_BYTES) {
+            // only look backwards, so the indexer and a page read agree without seeing the next line
+            int lead = scanEnd - 1;
+            while (lead > from && (bytes[lead] & 0xC0) == 0x80) lead--;
+            int b = bytes[lead] & 0xFF;
+            int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            return lead > from && lead + length > scanEnd ? lead : scanEnd;
+        }
+        return eof ? limit : -1;
+    }
+}
@@ -0,0 +1,255 @@
+package utils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+// Writes log records to a size-rotated file (and optionally the console) in batches. In async
+// mode publish() only enqueues: the queue is a lock-free linked queue bounded by a reserved-slot
+// counter, and a background writer formats whatever has piled up and appends it in one write.
+// When the queue is full, DROP discards the record (the writer reports how many it lost) and
+// BLOCK waits for space.
+public final class RotatingLogHandler extends Handler {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Path file;
+    private final long maxBytes;
+    private final int backups;
+    private final PrintStream console;
+    private final boolean async;
+    private final int capacity;
+    private final OverflowPolicy overflow;
+
+    private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // drops already reported in the log; only the writer thread touches it
+    private long reportedDrops;
+    private volatile long written;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    private OutputStream out;
+    private long fileSize;
+
+    // maxBytes <= 0 disables rotation; capacity <= 0 makes publish() write synchronously.
+    public RotatingLogHandler(Path file, long maxBytes, int backups, boolean console,
+                              int capacity, OverflowPolicy overflow) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.backups = backups;
+        this.console = console ? System.err : null;
+        this.async = capacity > 0;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        setFormatter(LogLineFormatter.matchesSimpleFormatter() ? new LogLineFormatter() : new SimpleFormatter());
+        open();
+        if (async) {
+            writer = new Thread(this::drainLoop, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    // Records discarded by the DROP policy since the handler was created.
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        if (!async) {
+            synchronized (this) {
+                StringBuilder batch = new StringBuilder(256);
+                append(batch, record);
+                write(batch);
+            }
+            return;
+        }
+        if (!reserveSlot()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(record);
+        published.incrementAndGet();
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    // Returns once everything published before the call has been written.
+    @Override
+    public void flush() {
+        if (!async) {
+            synchronized (this) {
+                flushStreams();
+            }
+            return;
+        }
+        long target = published.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (async) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                if (out != null) out.close();
+            } catch (IOException e) {
+                reportError("Failed to close log file", e, ErrorManager.CLOSE_FAILURE);
+            }
+            out = null;
+        }
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = queued.get();
+            if (current < capacity) {
+                if (queued.compareAndSet(current, current + 1)) return true;
+                continue;
+            }
+            if (overflow == OverflowPolicy.DROP || closed) return false;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder batch = new StringBuilder(64 * 1024);
+        while (true) {
+            int count = 0;
+            LogRecord record;
+            while (count < MAX_BATCH && (record = queue.poll()) != null) {
+                append(batch, record);
+                count++;
+            }
+            if (count > 0) {
+                queued.addAndGet(-count);
+                long lost = dropped.get() - reportedDrops;
+                if (lost > 0) {
+                    reportedDrops += lost;
+                    LogRecord warning = new LogRecord(Level.WARNING, lost + " log messages dropped: queue full");
+                    warning.setSourceClassName(RotatingLogHandler.class.getName());
+                    warning.setSourceMethodName("publish");
+                    append(batch, warning);
+                }
+                synchronized (this) {
+                    write(batch);
+                    flushStreams();
+                }
+                batch.setLength(0);
+                written += count;
+                continue;
+            }
+            if (closed) return;
+            writerParked = true;
+            if (queue.isEmpty() && !closed) LockSupport.parkNanos(IDLE_PARK_NANOS);
+            writerParked = false;
+        }
+    }
+
+    private void append(StringBuilder batch, LogRecord record) {
+        try {
+            batch.append(getFormatter().format(record));
+        } catch (RuntimeException e) {
+            reportError("Failed to format log record", e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    private void write(StringBuilder batch) {
+        if (batch.isEmpty()) return;
+        String text = batch.toString();
+        if (console != null) console.print(text);
+        if (out == null) return;
+        try {
+            byte[] bytes = text.getBytes(charset());
+            out.write(bytes);
+            fileSize += bytes.length;
+            if (!async) out.flush();
+            if (maxBytes > 0 && fileSize >= maxBytes) rotate();
+        } catch (IOException e) {
+            reportError("Failed to write log file", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void flushStreams() {
+        try {
+            if (out != null) out.flush();
+        } catch (IOException e) {
+            reportError("Failed to flush log file", e, ErrorManager.FLUSH_FAILURE);
+        }
+        if (console != null) console.flush();
+    }
+
+    // app.log -> app.log.1 -> ... -> app.log.<backups>; the oldest is overwritten.
+    private void rotate() throws IOException {
+        out.close();
+        try {
+            if (backups > 0) {
+                for (int i = backups - 1; i >= 1; i--) {
+                    Path from = backup(i);
+                    if (Files.exists(from)) Files.move(from, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(file);
+            }
+        } finally {
+            // keep logging to the current file even if it could not be moved aside
+            open();
+        }
+    }
+
+    private Path backup(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        fileSize = Files.exists(file) ? Files.size(file) : 0;
+        out = new FileOutputStream(file.toFile(), true);
+    }
+
+    private Charset charset() {
+        String encoding = getEncoding();
+        return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    }
+}